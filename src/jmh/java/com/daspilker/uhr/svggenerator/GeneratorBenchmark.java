@@ -0,0 +1,178 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Measures the hot paths of the {@link Generator} for grids of different sizes. The text of the grid cycles through
+ * the letters of the alphabet, the size of the clock grows with the grid. Run with {@code gradlew jmh}, which also
+ * reports the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+    private static final double COLUMN_WIDTH = 300.0 / 11.0;
+    private static final double ROW_HEIGHT = 300.0 / 10.0;
+
+    @Param({"11x10", "25x25", "50x50", "100x100"})
+    public String grid;
+
+    private Generator generator;
+    private ClockSpec spec;
+    private Map<Character, Glyph> glyphs;
+    private Layout outlineLayout;
+    private Layout fillLayout;
+
+    @Setup
+    public void setUp() throws IOException {
+        int columns = Integer.parseInt(grid.substring(0, grid.indexOf('x')));
+        int rows = Integer.parseInt(grid.substring(grid.indexOf('x') + 1));
+        String[] text = new String[rows];
+        for (int i = 0; i < rows; i += 1) {
+            StringBuilder row = new StringBuilder();
+            for (int j = 0; j < columns; j += 1) {
+                row.append((char) ('A' + (i * columns + j) % 26));
+            }
+            text[i] = row.toString();
+        }
+
+        generator = new Generator();
+        Main.configure(generator);
+        generator.setText(text);
+        generator.setWidth(columns * COLUMN_WIDTH);
+        generator.setHeight(rows * ROW_HEIGHT);
+        generator.setOutputSink(fileName -> new NullOutputStream());
+        spec = generator.getSpec();
+        glyphs = generator.getGlyphs(spec);
+        outlineLayout = new Layout(spec.toBuilder().setFill(false).build(), glyphs);
+        fillLayout = new Layout(spec.toBuilder().setFill(true).build(), glyphs);
+    }
+
+    @Benchmark
+    public Map<Character, Glyph> getGlyphs() throws IOException {
+        return generator.getGlyphs(spec);
+    }
+
+    @Benchmark
+    public Layout computeLayout() {
+        return new Layout(spec, glyphs);
+    }
+
+    @Benchmark
+    public void drawFrontOutline(Blackhole blackhole) throws IOException {
+        Generator.drawFront(new NullRenderer(blackhole), outlineLayout, null);
+    }
+
+    @Benchmark
+    public void drawFrontFill(Blackhole blackhole) throws IOException {
+        Generator.drawFront(new NullRenderer(blackhole), fillLayout, null);
+    }
+
+    @Benchmark
+    public void drawLightShade(Blackhole blackhole) throws IOException {
+        Generator.drawLightShade(new NullRenderer(blackhole), outlineLayout, null);
+    }
+
+    @Benchmark
+    public Shape createHexagonFraction() {
+        return Generator.createHexagonFraction(5.0, new int[]{210, 270, 330, 30, 90, 150});
+    }
+
+    @Benchmark
+    public void drawLedCarrier(Blackhole blackhole) throws IOException {
+        Generator.drawLedCarrier(new NullRenderer(blackhole), outlineLayout, null);
+    }
+
+    @Benchmark
+    public boolean writeFrontStreaming() throws IOException {
+        generator.setStreaming(true);
+        return generator.generatePanel(Panel.FRONT, null, outlineLayout, new Metrics());
+    }
+
+    @Benchmark
+    public boolean writeFrontCompact() throws IOException {
+        generator.setStreaming(true);
+        generator.setPrecision(3);
+        return generator.generatePanel(Panel.FRONT, null, outlineLayout, new Metrics());
+    }
+
+    @Benchmark
+    public boolean writeFrontBatik() throws IOException {
+        generator.setStreaming(false);
+        return generator.generatePanel(Panel.FRONT, null, outlineLayout, new Metrics());
+    }
+
+    private static class NullRenderer implements Renderer {
+        private final Blackhole blackhole;
+
+        private NullRenderer(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void setColor(Color color) {
+            blackhole.consume(color);
+        }
+
+        @Override
+        public void draw(Shape shape) {
+            blackhole.consume(shape);
+        }
+
+        @Override
+        public void fill(Shape shape) {
+            blackhole.consume(shape);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
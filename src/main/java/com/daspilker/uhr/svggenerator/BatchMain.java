@@ -0,0 +1,200 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Generates many clock variants in one run. The variants are read from a CSV manifest. The first line of the manifest
+ * names the columns, each further line describes one variant. The {@code output} column is mandatory and contains the
+ * directory for the design files of the variant, all other columns are {@link Parameters generator parameters} which
+ * override the defaults from {@link Main}. Empty lines and lines starting with {@code #} are ignored. If the
+ * {@code uhr.metricsReport} system property is set, a metrics report is written to the directory of each variant.
+ *
+ * <pre>
+ * output,fontSize,width,height
+ * small,12,200,200
+ * large,20,400,400
+ * </pre>
+ */
+public class BatchMain {
+    private static final String OUTPUT_COLUMN = "output";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: BatchMain <manifest.csv> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        List<Variant> variants = readManifest(args[0]);
+        GlyphCache glyphCache = GlyphCache.getSharedInstance();
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (Variant variant : variants) {
+            tasks.add(() -> generate(variant, glyphCache));
+        }
+
+        long start = System.nanoTime();
+        List<String> failures;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            failures = Generator.awaitAll(executor, tasks);
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int failed = 0;
+        for (int i = 0; i < variants.size(); i += 1) {
+            if (failures.get(i) != null) {
+                failed += 1;
+                System.err.println(format("line %d (%s): %s", variants.get(i).line, variants.get(i).output, failures.get(i)));
+            }
+        }
+        System.out.println(format(ENGLISH, "generated %d of %d variants in %.2f s (%.1f variants/s) using %d threads",
+                variants.size() - failed, variants.size(), seconds, variants.size() / seconds, threads));
+        System.out.println(glyphCache);
+        System.out.println(OutputCache.getSharedInstance());
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns {@code null} if the variant has been generated, otherwise the reason why it failed.
+     */
+    private static String generate(Variant variant, GlyphCache glyphCache) {
+        try {
+            File directory = new File(variant.output);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("can not create directory " + directory);
+            }
+
+            Generator generator = new Generator();
+            Main.configure(generator);
+            generator.setOutputFileNameFront(new File(directory, "front.svg").getPath());
+            generator.setOutputFileNameLightShades(new File(directory, "shades.svg").getPath());
+            generator.setOutputFileNameLightShadeRaster(new File(directory, "raster.svg").getPath());
+            generator.setOutputFileNameDistanceRaster1(new File(directory, "distance1.svg").getPath());
+            generator.setOutputFileNameDistanceRaster2(new File(directory, "distance2.svg").getPath());
+            generator.setOutputFileNameLedCarrier(new File(directory, "led.svg").getPath());
+            generator.setOutputFileNameLedMaskHeader(new File(directory, "masks.h").getPath());
+            generator.setOutputFileNameLedMaskTable(new File(directory, "masks.bin").getPath());
+            generator.setGlyphCache(glyphCache);
+            generator.setOutputCache(OutputCache.getSharedInstance());
+            String metricsReport = System.getProperty("uhr.metricsReport");
+            if (metricsReport != null) {
+                generator.setMetricsReport(new File(directory, new File(metricsReport).getName()).getPath());
+            }
+            for (int i = 0; i < variant.names.size(); i += 1) {
+                Parameters.apply(generator, variant.names.get(i), variant.values.get(i));
+            }
+            generator.generate();
+            return null;
+        } catch (Exception e) {
+            return e.toString();
+        }
+    }
+
+    static List<Variant> readManifest(String fileName) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(fileName), UTF_8);
+        List<Variant> result = new ArrayList<>();
+        List<String> header = null;
+        for (int i = 0; i < lines.size(); i += 1) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> values = parseCsvLine(line);
+            if (header == null) {
+                header = values;
+                if (!header.contains(OUTPUT_COLUMN)) {
+                    throw new IOException(fileName + ": missing column " + OUTPUT_COLUMN);
+                }
+                continue;
+            }
+            if (values.size() != header.size()) {
+                throw new IOException(format("%s:%d: expected %d values, found %d", fileName, i + 1, header.size(), values.size()));
+            }
+            Variant variant = new Variant(i + 1);
+            for (int j = 0; j < header.size(); j += 1) {
+                if (header.get(j).equals(OUTPUT_COLUMN)) {
+                    variant.output = values.get(j);
+                } else {
+                    variant.names.add(header.get(j));
+                    variant.values.add(values.get(j));
+                }
+            }
+            result.add(variant);
+        }
+        return result;
+    }
+
+    /**
+     * Splits a line into comma separated values. Values may be enclosed in double quotes, a double quote within a
+     * quoted value is escaped by another double quote.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i += 1;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                result.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        result.add(value.toString().trim());
+        return result;
+    }
+
+    static class Variant {
+        final int line;
+        final List<String> names = new ArrayList<>();
+        final List<String> values = new ArrayList<>();
+        String output;
+
+        private Variant(int line) {
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import org.apache.batik.svggen.SVGGeneratorContext;
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.apache.batik.dom.GenericDOMImplementation.getDOMImplementation;
+import static org.apache.batik.util.SVGConstants.SVG_HEIGHT_ATTRIBUTE;
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+import static org.apache.batik.util.SVGConstants.SVG_SVG_TAG;
+import static org.apache.batik.util.SVGConstants.SVG_VIEW_BOX_ATTRIBUTE;
+import static org.apache.batik.util.SVGConstants.SVG_WIDTH_ATTRIBUTE;
+
+/**
+ * Builds the panel as a Batik DOM and writes it to the writer when the renderer is closed.
+ */
+class BatikRenderer implements Renderer {
+    private static final int DIGITS = 6;
+
+    private final SVGGraphics2D svgGraphics2D;
+    private final Writer writer;
+    private final double width;
+    private final double height;
+
+    /**
+     * @param precision the number of decimal digits, or a negative number for the default precision of Batik, zero is
+     *                  written with one digit
+     */
+    BatikRenderer(Writer writer, double width, double height, Stroke stroke, int precision) {
+        this.writer = writer;
+        this.width = width;
+        this.height = height;
+
+        Document document = getDOMImplementation().createDocument(SVG_NAMESPACE_URI, SVG_SVG_TAG, null);
+        SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(document);
+        ctx.setComment(null);
+        if (precision >= 0) {
+            // Batik supports one to twelve digits
+            ctx.setPrecision(Math.max(precision, 1));
+        }
+        svgGraphics2D = new SVGGraphics2D(ctx, true);
+        svgGraphics2D.setStroke(stroke);
+    }
+
+    @Override
+    public void setColor(Color color) {
+        svgGraphics2D.setColor(color);
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        svgGraphics2D.draw(shape);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        svgGraphics2D.fill(shape);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Element svgRoot = svgGraphics2D.getRoot();
+        String w = Numbers.format(width, DIGITS);
+        String h = Numbers.format(height, DIGITS);
+        svgRoot.setAttributeNS(null, SVG_WIDTH_ATTRIBUTE, w + "mm");
+        svgRoot.setAttributeNS(null, SVG_HEIGHT_ATTRIBUTE, h + "mm");
+        svgRoot.setAttributeNS(null, SVG_VIEW_BOX_ATTRIBUTE, "0 0 " + w + " " + h);
+
+        try (Writer out = writer) {
+            svgGraphics2D.stream(svgRoot, out);
+        }
+    }
+}
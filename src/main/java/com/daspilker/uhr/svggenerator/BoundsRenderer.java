@@ -0,0 +1,75 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the bounds of everything drawn or filled, without writing anything.
+ */
+class BoundsRenderer implements Renderer {
+    private final Map<String, Rectangle2D> bounds = new HashMap<>();
+    private Rectangle2D result;
+
+    @Override
+    public void setColor(Color color) {
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        add(shape.getBounds2D(), 0.0, 0.0);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        add(shape.getBounds2D(), 0.0, 0.0);
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) {
+        add(bounds.computeIfAbsent(key, k -> shape.getBounds2D()), x, y);
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) {
+        add(bounds.computeIfAbsent(key, k -> shape.getBounds2D()), x, y);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Returns the bounds of everything drawn or filled, or {@code null} if nothing has been drawn.
+     */
+    Rectangle2D getBounds() {
+        return result;
+    }
+
+    private void add(Rectangle2D shapeBounds, double x, double y) {
+        Rectangle2D translated = new Rectangle2D.Double(shapeBounds.getX() + x, shapeBounds.getY() + y,
+                shapeBounds.getWidth(), shapeBounds.getHeight());
+        if (result == null) {
+            result = translated;
+        } else {
+            result.add(translated);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes the design files one after the other to a channel, e.g. to an HTTP response or to a socket. Each file is
+ * buffered in memory until it is closed, so that files of panels which are generated in parallel are not interleaved.
+ * This is meant for a single file, e.g. one panel, or for formats which can be concatenated. The channel is closed when
+ * the sink is closed.
+ */
+public class ChannelSink implements OutputSink, Closeable {
+    private final WritableByteChannel channel;
+
+    public ChannelSink(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public OutputStream open(String fileName) {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    writeFile(ByteBuffer.wrap(buf, 0, count));
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private synchronized void writeFile(ByteBuffer content) throws IOException {
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Passes on the part of the panel within a tile, moved so that the tile starts at the origin. Shapes within the tile
+ * are passed on unchanged, including instanced ones, shapes outside of the tile are dropped. Cuts crossing the border
+ * of the tile are cut off at the border, with curves flattened. Filled shapes crossing the border are intersected with
+ * the tile.
+ */
+class ClippingRenderer implements Renderer {
+    private final Renderer delegate;
+    private final Rectangle2D tile;
+    private final double flatness;
+    private final Map<String, Rectangle2D> bounds = new HashMap<>();
+    private final double[] coords = new double[6];
+
+    ClippingRenderer(Renderer delegate, Rectangle2D tile, double flatness) {
+        this.delegate = delegate;
+        this.tile = tile;
+        this.flatness = flatness;
+    }
+
+    @Override
+    public void setColor(Color color) throws IOException {
+        delegate.setColor(color);
+    }
+
+    @Override
+    public void draw(Shape shape) throws IOException {
+        Rectangle2D shapeBounds = shape.getBounds2D();
+        if (contains(shapeBounds, 0.0, 0.0)) {
+            delegate.draw(Shapes.translate(shape, -tile.getX(), -tile.getY()));
+        } else if (intersects(shapeBounds, 0.0, 0.0)) {
+            Path2D clipped = clip(shape);
+            if (clipped != null) {
+                delegate.draw(clipped);
+            }
+        }
+    }
+
+    @Override
+    public void fill(Shape shape) throws IOException {
+        Rectangle2D shapeBounds = shape.getBounds2D();
+        if (contains(shapeBounds, 0.0, 0.0)) {
+            delegate.fill(Shapes.translate(shape, -tile.getX(), -tile.getY()));
+        } else if (intersects(shapeBounds, 0.0, 0.0)) {
+            Area area = new Area(shape);
+            area.intersect(new Area(tile));
+            if (!area.isEmpty()) {
+                delegate.fill(Shapes.translate(area, -tile.getX(), -tile.getY()));
+            }
+        }
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) throws IOException {
+        Rectangle2D shapeBounds = getBounds(key, shape);
+        if (contains(shapeBounds, x, y)) {
+            delegate.draw(key, shape, x - tile.getX(), y - tile.getY());
+        } else if (intersects(shapeBounds, x, y)) {
+            draw(Shapes.translate(shape, x, y));
+        }
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) throws IOException {
+        Rectangle2D shapeBounds = getBounds(key, shape);
+        if (contains(shapeBounds, x, y)) {
+            delegate.fill(key, shape, x - tile.getX(), y - tile.getY());
+        } else if (intersects(shapeBounds, x, y)) {
+            fill(Shapes.translate(shape, x, y));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    private Rectangle2D getBounds(String key, Shape shape) {
+        return bounds.computeIfAbsent(key, k -> shape.getBounds2D());
+    }
+
+    private boolean contains(Rectangle2D shapeBounds, double x, double y) {
+        return shapeBounds.getMinX() + x >= tile.getMinX() && shapeBounds.getMaxX() + x <= tile.getMaxX() &&
+                shapeBounds.getMinY() + y >= tile.getMinY() && shapeBounds.getMaxY() + y <= tile.getMaxY();
+    }
+
+    private boolean intersects(Rectangle2D shapeBounds, double x, double y) {
+        return shapeBounds.getMaxX() + x >= tile.getMinX() && shapeBounds.getMinX() + x <= tile.getMaxX() &&
+                shapeBounds.getMaxY() + y >= tile.getMinY() && shapeBounds.getMinY() + y <= tile.getMaxY();
+    }
+
+    /**
+     * Clips the flattened outline of the shape to the tile, or returns {@code null} if nothing is left of it.
+     */
+    private Path2D clip(Shape shape) {
+        Path2D.Double result = null;
+        double startX = 0.0;
+        double startY = 0.0;
+        double lastX = 0.0;
+        double lastY = 0.0;
+        boolean connected = false;
+        for (PathIterator iterator = shape.getPathIterator(null, flatness); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            double x;
+            double y;
+            if (type == PathIterator.SEG_MOVETO) {
+                startX = coords[0];
+                startY = coords[1];
+                lastX = startX;
+                lastY = startY;
+                connected = false;
+                continue;
+            } else if (type == PathIterator.SEG_CLOSE) {
+                x = startX;
+                y = startY;
+            } else {
+                x = coords[0];
+                y = coords[1];
+            }
+
+            // Liang-Barsky clipping of the segment from the last point to (x, y)
+            double dx = x - lastX;
+            double dy = y - lastY;
+            double[] t = {0.0, 1.0};
+            if (clip(-dx, lastX - tile.getMinX(), t) && clip(dx, tile.getMaxX() - lastX, t) &&
+                    clip(-dy, lastY - tile.getMinY(), t) && clip(dy, tile.getMaxY() - lastY, t)) {
+                if (result == null) {
+                    result = new Path2D.Double();
+                }
+                if (!connected || t[0] > 0.0) {
+                    result.moveTo(lastX + t[0] * dx - tile.getX(), lastY + t[0] * dy - tile.getY());
+                }
+                result.lineTo(lastX + t[1] * dx - tile.getX(), lastY + t[1] * dy - tile.getY());
+                connected = t[1] == 1.0;
+            } else {
+                connected = false;
+            }
+            lastX = x;
+            lastY = y;
+        }
+        return result;
+    }
+
+    private static boolean clip(double p, double q, double[] t) {
+        if (p == 0.0) {
+            return q >= 0.0;
+        }
+        double r = q / p;
+        if (p < 0.0) {
+            if (r > t[1]) {
+                return false;
+            }
+            t[0] = Math.max(t[0], r);
+        } else {
+            if (r < t[0]) {
+                return false;
+            }
+            t[1] = Math.min(t[1], r);
+        }
+        return true;
+    }
+}
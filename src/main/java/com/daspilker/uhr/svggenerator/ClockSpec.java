@@ -0,0 +1,535 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.util.Arrays;
+
+/**
+ * The immutable specification of a clock: the text and font of the front panel and all dimensions of the panels in
+ * millimetres. A specification is created by a {@link Builder}, which validates it, so it can be shared by any number of
+ * threads. The positions derived from it are computed by {@link Layout}.
+ */
+public final class ClockSpec {
+    private final String fontName;
+    private final String fontFile;
+    private final float fontSize;
+    private final String[] text;
+    private final double width;
+    private final double height;
+    private final double borderX;
+    private final double borderY;
+    private final double lightShadeExtra;
+    private final double frameWidth;
+    private final double screwDiameter;
+    private final double connectorDiameter;
+    private final double wireDiameter;
+    private final double nutSize;
+    private final double depth;
+    private final double connectorDistance;
+    private final double anodesConnectorOffsetX;
+    private final double anodesConnectorOffsetY;
+    private final double cathodesConnectorOffsetX;
+    private final double cathodesConnectorOffsetY;
+    private final double pcbScrew1X;
+    private final double pcbScrew1Y;
+    private final double pcbScrew2X;
+    private final double pcbScrew2Y;
+    private final double pcbScrew3X;
+    private final double pcbScrew3Y;
+    private final double ledPinWidth;
+    private final double ledPinHeight;
+    private final double ledPinDistanceX;
+    private final double ledPinDistanceY;
+    private final boolean fill;
+
+    private ClockSpec(Builder builder) {
+        this.fontName = builder.fontName;
+        this.fontFile = builder.fontFile;
+        this.fontSize = builder.fontSize;
+        this.text = builder.text.clone();
+        this.width = builder.width;
+        this.height = builder.height;
+        this.borderX = builder.borderX;
+        this.borderY = builder.borderY;
+        this.lightShadeExtra = builder.lightShadeExtra;
+        this.frameWidth = builder.frameWidth;
+        this.screwDiameter = builder.screwDiameter;
+        this.connectorDiameter = builder.connectorDiameter;
+        this.wireDiameter = builder.wireDiameter;
+        this.nutSize = builder.nutSize;
+        this.depth = builder.depth;
+        this.connectorDistance = builder.connectorDistance;
+        this.anodesConnectorOffsetX = builder.anodesConnectorOffsetX;
+        this.anodesConnectorOffsetY = builder.anodesConnectorOffsetY;
+        this.cathodesConnectorOffsetX = builder.cathodesConnectorOffsetX;
+        this.cathodesConnectorOffsetY = builder.cathodesConnectorOffsetY;
+        this.pcbScrew1X = builder.pcbScrew1X;
+        this.pcbScrew1Y = builder.pcbScrew1Y;
+        this.pcbScrew2X = builder.pcbScrew2X;
+        this.pcbScrew2Y = builder.pcbScrew2Y;
+        this.pcbScrew3X = builder.pcbScrew3X;
+        this.pcbScrew3Y = builder.pcbScrew3Y;
+        this.ledPinWidth = builder.ledPinWidth;
+        this.ledPinHeight = builder.ledPinHeight;
+        this.ledPinDistanceX = builder.ledPinDistanceX;
+        this.ledPinDistanceY = builder.ledPinDistanceY;
+        this.fill = builder.fill;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a builder initialized with the values of this specification, e.g. to derive a variant of it.
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.fontName = fontName;
+        builder.fontFile = fontFile;
+        builder.fontSize = fontSize;
+        builder.text = text;
+        builder.width = width;
+        builder.height = height;
+        builder.borderX = borderX;
+        builder.borderY = borderY;
+        builder.lightShadeExtra = lightShadeExtra;
+        builder.frameWidth = frameWidth;
+        builder.screwDiameter = screwDiameter;
+        builder.connectorDiameter = connectorDiameter;
+        builder.wireDiameter = wireDiameter;
+        builder.nutSize = nutSize;
+        builder.depth = depth;
+        builder.connectorDistance = connectorDistance;
+        builder.anodesConnectorOffsetX = anodesConnectorOffsetX;
+        builder.anodesConnectorOffsetY = anodesConnectorOffsetY;
+        builder.cathodesConnectorOffsetX = cathodesConnectorOffsetX;
+        builder.cathodesConnectorOffsetY = cathodesConnectorOffsetY;
+        builder.pcbScrew1X = pcbScrew1X;
+        builder.pcbScrew1Y = pcbScrew1Y;
+        builder.pcbScrew2X = pcbScrew2X;
+        builder.pcbScrew2Y = pcbScrew2Y;
+        builder.pcbScrew3X = pcbScrew3X;
+        builder.pcbScrew3Y = pcbScrew3Y;
+        builder.ledPinWidth = ledPinWidth;
+        builder.ledPinHeight = ledPinHeight;
+        builder.ledPinDistanceX = ledPinDistanceX;
+        builder.ledPinDistanceY = ledPinDistanceY;
+        builder.fill = fill;
+        return builder;
+    }
+
+    public String getFontName() {
+        return fontName;
+    }
+
+    public String getFontFile() {
+        return fontFile;
+    }
+
+    public float getFontSize() {
+        return fontSize;
+    }
+
+    public String[] getText() {
+        return text.clone();
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public double getBorderX() {
+        return borderX;
+    }
+
+    public double getBorderY() {
+        return borderY;
+    }
+
+    public double getLightShadeExtra() {
+        return lightShadeExtra;
+    }
+
+    public double getFrameWidth() {
+        return frameWidth;
+    }
+
+    public double getScrewDiameter() {
+        return screwDiameter;
+    }
+
+    public double getConnectorDiameter() {
+        return connectorDiameter;
+    }
+
+    public double getWireDiameter() {
+        return wireDiameter;
+    }
+
+    public double getNutSize() {
+        return nutSize;
+    }
+
+    public double getDepth() {
+        return depth;
+    }
+
+    public double getConnectorDistance() {
+        return connectorDistance;
+    }
+
+    public double getAnodesConnectorOffsetX() {
+        return anodesConnectorOffsetX;
+    }
+
+    public double getAnodesConnectorOffsetY() {
+        return anodesConnectorOffsetY;
+    }
+
+    public double getCathodesConnectorOffsetX() {
+        return cathodesConnectorOffsetX;
+    }
+
+    public double getCathodesConnectorOffsetY() {
+        return cathodesConnectorOffsetY;
+    }
+
+    public double getPcbScrew1X() {
+        return pcbScrew1X;
+    }
+
+    public double getPcbScrew1Y() {
+        return pcbScrew1Y;
+    }
+
+    public double getPcbScrew2X() {
+        return pcbScrew2X;
+    }
+
+    public double getPcbScrew2Y() {
+        return pcbScrew2Y;
+    }
+
+    public double getPcbScrew3X() {
+        return pcbScrew3X;
+    }
+
+    public double getPcbScrew3Y() {
+        return pcbScrew3Y;
+    }
+
+    public double getLedPinWidth() {
+        return ledPinWidth;
+    }
+
+    public double getLedPinHeight() {
+        return ledPinHeight;
+    }
+
+    public double getLedPinDistanceX() {
+        return ledPinDistanceX;
+    }
+
+    public double getLedPinDistanceY() {
+        return ledPinDistanceY;
+    }
+
+    public boolean isFill() {
+        return fill;
+    }
+
+    public int getRows() {
+        return text.length;
+    }
+
+    public int getColumns() {
+        return text[0].length();
+    }
+
+    /**
+     * Returns the character in the given row and column of the front panel.
+     */
+    public char getCharacter(int row, int column) {
+        return text[row].charAt(column);
+    }
+
+    /**
+     * Collects the values for a {@link ClockSpec}. All values except the text and the font default to zero.
+     */
+    public static final class Builder {
+        private String fontName;
+        private String fontFile;
+        private float fontSize;
+        private String[] text;
+        private double width;
+        private double height;
+        private double borderX;
+        private double borderY;
+        private double lightShadeExtra;
+        private double frameWidth;
+        private double screwDiameter;
+        private double connectorDiameter;
+        private double wireDiameter;
+        private double nutSize;
+        private double depth;
+        private double connectorDistance;
+        private double anodesConnectorOffsetX;
+        private double anodesConnectorOffsetY;
+        private double cathodesConnectorOffsetX;
+        private double cathodesConnectorOffsetY;
+        private double pcbScrew1X;
+        private double pcbScrew1Y;
+        private double pcbScrew2X;
+        private double pcbScrew2Y;
+        private double pcbScrew3X;
+        private double pcbScrew3Y;
+        private double ledPinWidth;
+        private double ledPinHeight;
+        private double ledPinDistanceX;
+        private double ledPinDistanceY;
+        private boolean fill;
+
+        private Builder() {
+        }
+
+        public Builder setFontName(String fontName) {
+            this.fontName = fontName;
+            return this;
+        }
+
+        public Builder setFontFile(String fontFile) {
+            this.fontFile = fontFile;
+            return this;
+        }
+
+        public Builder setFontSize(float fontSize) {
+            this.fontSize = fontSize;
+            return this;
+        }
+
+        public Builder setText(String[] text) {
+            this.text = text;
+            return this;
+        }
+
+        public Builder setWidth(double width) {
+            this.width = width;
+            return this;
+        }
+
+        public Builder setHeight(double height) {
+            this.height = height;
+            return this;
+        }
+
+        public Builder setBorderX(double borderX) {
+            this.borderX = borderX;
+            return this;
+        }
+
+        public Builder setBorderY(double borderY) {
+            this.borderY = borderY;
+            return this;
+        }
+
+        public Builder setLightShadeExtra(double lightShadeExtra) {
+            this.lightShadeExtra = lightShadeExtra;
+            return this;
+        }
+
+        public Builder setFrameWidth(double frameWidth) {
+            this.frameWidth = frameWidth;
+            return this;
+        }
+
+        public Builder setScrewDiameter(double screwDiameter) {
+            this.screwDiameter = screwDiameter;
+            return this;
+        }
+
+        public Builder setConnectorDiameter(double connectorDiameter) {
+            this.connectorDiameter = connectorDiameter;
+            return this;
+        }
+
+        public Builder setWireDiameter(double wireDiameter) {
+            this.wireDiameter = wireDiameter;
+            return this;
+        }
+
+        public Builder setNutSize(double nutSize) {
+            this.nutSize = nutSize;
+            return this;
+        }
+
+        public Builder setDepth(double depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        public Builder setConnectorDistance(double connectorDistance) {
+            this.connectorDistance = connectorDistance;
+            return this;
+        }
+
+        public Builder setAnodesConnectorOffsetX(double anodesConnectorOffsetX) {
+            this.anodesConnectorOffsetX = anodesConnectorOffsetX;
+            return this;
+        }
+
+        public Builder setAnodesConnectorOffsetY(double anodesConnectorOffsetY) {
+            this.anodesConnectorOffsetY = anodesConnectorOffsetY;
+            return this;
+        }
+
+        public Builder setCathodesConnectorOffsetX(double cathodesConnectorOffsetX) {
+            this.cathodesConnectorOffsetX = cathodesConnectorOffsetX;
+            return this;
+        }
+
+        public Builder setCathodesConnectorOffsetY(double cathodesConnectorOffsetY) {
+            this.cathodesConnectorOffsetY = cathodesConnectorOffsetY;
+            return this;
+        }
+
+        public Builder setPcbScrew1X(double pcbScrew1X) {
+            this.pcbScrew1X = pcbScrew1X;
+            return this;
+        }
+
+        public Builder setPcbScrew1Y(double pcbScrew1Y) {
+            this.pcbScrew1Y = pcbScrew1Y;
+            return this;
+        }
+
+        public Builder setPcbScrew2X(double pcbScrew2X) {
+            this.pcbScrew2X = pcbScrew2X;
+            return this;
+        }
+
+        public Builder setPcbScrew2Y(double pcbScrew2Y) {
+            this.pcbScrew2Y = pcbScrew2Y;
+            return this;
+        }
+
+        public Builder setPcbScrew3X(double pcbScrew3X) {
+            this.pcbScrew3X = pcbScrew3X;
+            return this;
+        }
+
+        public Builder setPcbScrew3Y(double pcbScrew3Y) {
+            this.pcbScrew3Y = pcbScrew3Y;
+            return this;
+        }
+
+        public Builder setLedPinWidth(double ledPinWidth) {
+            this.ledPinWidth = ledPinWidth;
+            return this;
+        }
+
+        public Builder setLedPinHeight(double ledPinHeight) {
+            this.ledPinHeight = ledPinHeight;
+            return this;
+        }
+
+        public Builder setLedPinDistanceX(double ledPinDistanceX) {
+            this.ledPinDistanceX = ledPinDistanceX;
+            return this;
+        }
+
+        public Builder setLedPinDistanceY(double ledPinDistanceY) {
+            this.ledPinDistanceY = ledPinDistanceY;
+            return this;
+        }
+
+        public Builder setFill(boolean fill) {
+            this.fill = fill;
+            return this;
+        }
+
+        /**
+         * Creates the specification. Throws an {@link IllegalArgumentException} if a value is missing or out of range.
+         */
+        public ClockSpec build() {
+            if (fontName == null && fontFile == null) {
+                throw new IllegalArgumentException("either fontName or fontFile must be set");
+            }
+            if (text == null || text.length < 2) {
+                throw new IllegalArgumentException("text must have at least two rows");
+            }
+            for (String row : text) {
+                if (row == null || row.length() != text[0].length()) {
+                    throw new IllegalArgumentException("all rows of the text must have the same length: " +
+                            Arrays.toString(text));
+                }
+            }
+            if (text[0].length() < 2) {
+                throw new IllegalArgumentException("text must have at least two columns");
+            }
+            requirePositive("fontSize", fontSize);
+            requirePositive("width", width);
+            requirePositive("height", height);
+            requireNonNegative("borderX", borderX);
+            requireNonNegative("borderY", borderY);
+            requireNonNegative("lightShadeExtra", lightShadeExtra);
+            requireNonNegative("frameWidth", frameWidth);
+            requireNonNegative("screwDiameter", screwDiameter);
+            requireNonNegative("connectorDiameter", connectorDiameter);
+            requireNonNegative("wireDiameter", wireDiameter);
+            requireNonNegative("nutSize", nutSize);
+            requireNonNegative("depth", depth);
+            requireNonNegative("connectorDistance", connectorDistance);
+            requireNonNegative("anodesConnectorOffsetX", anodesConnectorOffsetX);
+            requireNonNegative("anodesConnectorOffsetY", anodesConnectorOffsetY);
+            requireNonNegative("cathodesConnectorOffsetX", cathodesConnectorOffsetX);
+            requireNonNegative("cathodesConnectorOffsetY", cathodesConnectorOffsetY);
+            requireNonNegative("pcbScrew1X", pcbScrew1X);
+            requireNonNegative("pcbScrew1Y", pcbScrew1Y);
+            requireNonNegative("pcbScrew2X", pcbScrew2X);
+            requireNonNegative("pcbScrew2Y", pcbScrew2Y);
+            requireNonNegative("pcbScrew3X", pcbScrew3X);
+            requireNonNegative("pcbScrew3Y", pcbScrew3Y);
+            requireNonNegative("ledPinWidth", ledPinWidth);
+            requireNonNegative("ledPinHeight", ledPinHeight);
+            requireNonNegative("ledPinDistanceX", ledPinDistanceX);
+            requireNonNegative("ledPinDistanceY", ledPinDistanceY);
+            if (2.0 * borderX >= width || 2.0 * borderY >= height) {
+                throw new IllegalArgumentException("the borders leave no room for the text");
+            }
+            if (2.0 * frameWidth >= width || 2.0 * frameWidth >= height) {
+                throw new IllegalArgumentException("the frame leaves no room for the panels");
+            }
+            return new ClockSpec(this);
+        }
+
+        private static void requirePositive(String name, double value) {
+            if (!(value > 0.0) || Double.isInfinite(value)) {
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            }
+        }
+
+        private static void requireNonNegative(String name, double value) {
+            if (!(value >= 0.0) || Double.isInfinite(value)) {
+                throw new IllegalArgumentException(name + " must not be negative: " + value);
+            }
+        }
+    }
+}
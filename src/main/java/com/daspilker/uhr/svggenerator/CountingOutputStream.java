@@ -0,0 +1,65 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written to the underlying stream, optionally failing when a limit would be exceeded, so that
+ * parameters like the number of laser passes cannot produce files which do not fit into memory.
+ */
+class CountingOutputStream extends FilterOutputStream {
+    private final long limit;
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+        this(out, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param limit the maximum number of bytes, more throw an {@link IllegalArgumentException}
+     */
+    CountingOutputStream(OutputStream out, long limit) {
+        super(out);
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkLimit(1);
+        out.write(b);
+        count += 1;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkLimit(len);
+        out.write(b, off, len);
+        count += len;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    private void checkLimit(int len) {
+        if (len > limit - count) {
+            throw new IllegalArgumentException("output exceeds " + limit + " bytes");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+
+/**
+ * Counts the shapes and path segments which are drawn or filled, before passing them on.
+ */
+class CountingRenderer implements Renderer {
+    private final Renderer delegate;
+    private final double[] coords = new double[6];
+    private long shapes;
+    private long segments;
+
+    CountingRenderer(Renderer delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void setColor(Color color) throws IOException {
+        delegate.setColor(color);
+    }
+
+    @Override
+    public void draw(Shape shape) throws IOException {
+        count(shape);
+        delegate.draw(shape);
+    }
+
+    @Override
+    public void fill(Shape shape) throws IOException {
+        count(shape);
+        delegate.fill(shape);
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) throws IOException {
+        count(shape);
+        delegate.draw(key, shape, x, y);
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) throws IOException {
+        count(shape);
+        delegate.fill(key, shape, x, y);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    long getShapes() {
+        return shapes;
+    }
+
+    long getSegments() {
+        return segments;
+    }
+
+    private void count(Shape shape) {
+        shapes += 1;
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            if (iterator.currentSegment(coords) != PathIterator.SEG_MOVETO) {
+                segments += 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.floor;
+import static java.lang.Math.hypot;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Checks the cuts of a panel for collisions. Each subpath of a cut is a separate contour. Two contours which cross
+ * each other are reported as intersection, two contours which come closer than the minimum distance without touching
+ * are reported as thin bridge, e.g. a wall which would burn away in the kerf of the laser. Contours which touch or
+ * share edges, like neighbouring hexagons, are cut as one and are not reported. Filled shapes are engraved and not
+ * checked.
+ * <p>
+ * Curves are flattened and all segments are indexed in a uniform grid, so that only segments in neighbouring cells are
+ * compared. At most one violation is reported for each pair of contours, at the place where they come closest.
+ */
+class CutValidator implements Renderer {
+    // points closer than a nanometre are treated as equal, to allow for rounding errors of the coordinates
+    private static final double TOLERANCE = 1e-6;
+
+    private final double minimumDistance;
+    private final double flatness;
+    private final Map<String, double[]> flattened = new HashMap<>();
+    private final double[] coords = new double[6];
+    private double[] segments = new double[1024];
+    private int[] contours = new int[256];
+    private int count;
+    private int contour = -1;
+
+    CutValidator(double minimumDistance, double flatness) {
+        this.minimumDistance = minimumDistance;
+        this.flatness = flatness;
+    }
+
+    @Override
+    public void setColor(Color color) {
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        add(flatten(shape), 0.0, 0.0);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) {
+        add(flattened.computeIfAbsent(key, k -> flatten(shape)), x, y);
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    int getSegments() {
+        return count;
+    }
+
+    /**
+     * Returns the collisions of the cuts drawn so far.
+     */
+    List<Violation> validate() {
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        double length = 0.0;
+        for (int i = 0; i < count; i += 1) {
+            minX = min(minX, min(segments[i * 4], segments[i * 4 + 2]));
+            minY = min(minY, min(segments[i * 4 + 1], segments[i * 4 + 3]));
+            maxX = max(maxX, max(segments[i * 4], segments[i * 4 + 2]));
+            maxY = max(maxY, max(segments[i * 4 + 1], segments[i * 4 + 3]));
+            length += hypot(segments[i * 4 + 2] - segments[i * 4], segments[i * 4 + 3] - segments[i * 4 + 1]);
+        }
+        // cells of about the length of a segment hold few segments, but there should not be many more cells than
+        // segments
+        double cellSize = max(max(minimumDistance, length / count), TOLERANCE);
+        double area = (maxX - minX + minimumDistance) * (maxY - minY + minimumDistance);
+        cellSize = max(cellSize, sqrt(area / (4.0 * count)));
+        int columns = (int) floor((maxX - minX + minimumDistance) / cellSize) + 1;
+        int rows = (int) floor((maxY - minY + minimumDistance) / cellSize) + 1;
+
+        // the cells each segment overlaps, extended by half the minimum distance
+        int[] cellRanges = new int[count * 4];
+        int[] cellCounts = new int[columns * rows + 1];
+        double margin = minimumDistance / 2.0;
+        for (int i = 0; i < count; i += 1) {
+            int x0 = cell(min(segments[i * 4], segments[i * 4 + 2]) - margin - minX, cellSize, columns);
+            int y0 = cell(min(segments[i * 4 + 1], segments[i * 4 + 3]) - margin - minY, cellSize, rows);
+            int x1 = cell(max(segments[i * 4], segments[i * 4 + 2]) + margin - minX, cellSize, columns);
+            int y1 = cell(max(segments[i * 4 + 1], segments[i * 4 + 3]) + margin - minY, cellSize, rows);
+            cellRanges[i * 4] = x0;
+            cellRanges[i * 4 + 1] = y0;
+            cellRanges[i * 4 + 2] = x1;
+            cellRanges[i * 4 + 3] = y1;
+            for (int y = y0; y <= y1; y += 1) {
+                for (int x = x0; x <= x1; x += 1) {
+                    cellCounts[y * columns + x + 1] += 1;
+                }
+            }
+        }
+        for (int i = 1; i < cellCounts.length; i += 1) {
+            cellCounts[i] += cellCounts[i - 1];
+        }
+        int[] cells = new int[cellCounts[cellCounts.length - 1]];
+        int[] next = Arrays.copyOf(cellCounts, cellCounts.length - 1);
+        for (int i = 0; i < count; i += 1) {
+            for (int y = cellRanges[i * 4 + 1]; y <= cellRanges[i * 4 + 3]; y += 1) {
+                for (int x = cellRanges[i * 4]; x <= cellRanges[i * 4 + 2]; x += 1) {
+                    cells[next[y * columns + x]++] = i;
+                }
+            }
+        }
+
+        Set<Long> touching = new HashSet<>();
+        Map<Long, Violation> violations = new LinkedHashMap<>();
+        for (int y = 0; y < rows; y += 1) {
+            for (int x = 0; x < columns; x += 1) {
+                int start = cellCounts[y * columns + x];
+                int end = cellCounts[y * columns + x + 1];
+                for (int i = start; i < end; i += 1) {
+                    int a = cells[i];
+                    for (int j = i + 1; j < end; j += 1) {
+                        int b = cells[j];
+                        // each pair is compared only in the first cell both segments overlap
+                        if (contours[a] != contours[b] &&
+                                x == max(cellRanges[a * 4], cellRanges[b * 4]) &&
+                                y == max(cellRanges[a * 4 + 1], cellRanges[b * 4 + 1])) {
+                            compare(a, b, touching, violations);
+                        }
+                    }
+                }
+            }
+        }
+        List<Violation> result = new ArrayList<>();
+        for (Map.Entry<Long, Violation> entry : violations.entrySet()) {
+            if (entry.getValue().isIntersection() || !touching.contains(entry.getKey())) {
+                result.add(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private void compare(int a, int b, Set<Long> touching, Map<Long, Violation> violations) {
+        double ax = segments[a * 4];
+        double ay = segments[a * 4 + 1];
+        double bx = segments[a * 4 + 2];
+        double by = segments[a * 4 + 3];
+        double cx = segments[b * 4];
+        double cy = segments[b * 4 + 1];
+        double dx = segments[b * 4 + 2];
+        double dy = segments[b * 4 + 3];
+        long pair = (long) min(contours[a], contours[b]) << 32 | max(contours[a], contours[b]);
+
+        double o1 = orientation(ax, ay, bx, by, cx, cy);
+        double o2 = orientation(ax, ay, bx, by, dx, dy);
+        double o3 = orientation(cx, cy, dx, dy, ax, ay);
+        double o4 = orientation(cx, cy, dx, dy, bx, by);
+        if (o1 * o2 < 0.0 && o3 * o4 < 0.0) {
+            touching.add(pair);
+            Violation violation = violations.get(pair);
+            if (violation == null || !violation.isIntersection()) {
+                double t = o3 / (o3 - o4);
+                violations.put(pair, new Violation(ax + (bx - ax) * t, ay + (by - ay) * t, 0.0));
+            }
+            return;
+        }
+
+        double distance = Double.MAX_VALUE;
+        double x = 0.0;
+        double y = 0.0;
+        double[][] candidates = {{ax, ay, cx, cy, dx, dy}, {bx, by, cx, cy, dx, dy}, {cx, cy, ax, ay, bx, by},
+                {dx, dy, ax, ay, bx, by}};
+        for (double[] candidate : candidates) {
+            double d = distance(candidate[0], candidate[1], candidate[2], candidate[3], candidate[4], candidate[5]);
+            if (d < distance) {
+                distance = d;
+                x = candidate[0];
+                y = candidate[1];
+            }
+        }
+        if (distance <= TOLERANCE) {
+            touching.add(pair);
+        } else if (distance < minimumDistance) {
+            Violation violation = violations.get(pair);
+            if (violation == null || !violation.isIntersection() && distance < violation.getDistance()) {
+                violations.put(pair, new Violation(x, y, distance));
+            }
+        }
+    }
+
+    /**
+     * Returns a positive number if the point is left of the line, a negative number if it is right of the line and
+     * zero if it is on the line, within the tolerance.
+     */
+    private static double orientation(double ax, double ay, double bx, double by, double px, double py) {
+        double result = (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+        return abs(result) <= TOLERANCE * hypot(bx - ax, by - ay) ? 0.0 : result;
+    }
+
+    private static double distance(double px, double py, double ax, double ay, double bx, double by) {
+        double lx = bx - ax;
+        double ly = by - ay;
+        double lengthSquared = lx * lx + ly * ly;
+        double t = lengthSquared == 0.0 ? 0.0 : max(0.0, min(1.0, ((px - ax) * lx + (py - ay) * ly) / lengthSquared));
+        return hypot(ax + lx * t - px, ay + ly * t - py);
+    }
+
+    private static int cell(double value, double cellSize, int cells) {
+        return max(0, min(cells - 1, (int) floor(value / cellSize)));
+    }
+
+    /**
+     * Flattens the shape into segments, each given as four coordinates followed by the index of its subpath.
+     */
+    private double[] flatten(Shape shape) {
+        double[] result = new double[40];
+        int n = 0;
+        int subpath = -1;
+        double startX = 0.0;
+        double startY = 0.0;
+        double lastX = 0.0;
+        double lastY = 0.0;
+        for (PathIterator iterator = shape.getPathIterator(null, flatness); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO) {
+                subpath += 1;
+                startX = coords[0];
+                startY = coords[1];
+                lastX = startX;
+                lastY = startY;
+                continue;
+            }
+            double x = type == PathIterator.SEG_CLOSE ? startX : coords[0];
+            double y = type == PathIterator.SEG_CLOSE ? startY : coords[1];
+            if (x != lastX || y != lastY) {
+                if (n + 5 > result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+                result[n] = lastX;
+                result[n + 1] = lastY;
+                result[n + 2] = x;
+                result[n + 3] = y;
+                result[n + 4] = max(subpath, 0);
+                n += 5;
+            }
+            lastX = x;
+            lastY = y;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private void add(double[] flattenedSegments, double x, double y) {
+        int firstContour = contour + 1;
+        for (int i = 0; i < flattenedSegments.length; i += 5) {
+            if (count * 4 + 4 > segments.length) {
+                segments = Arrays.copyOf(segments, segments.length * 2);
+            }
+            if (count + 1 > contours.length) {
+                contours = Arrays.copyOf(contours, contours.length * 2);
+            }
+            segments[count * 4] = flattenedSegments[i] + x;
+            segments[count * 4 + 1] = flattenedSegments[i + 1] + y;
+            segments[count * 4 + 2] = flattenedSegments[i + 2] + x;
+            segments[count * 4 + 3] = flattenedSegments[i + 3] + y;
+            contours[count] = firstContour + (int) flattenedSegments[i + 4];
+            contour = max(contour, contours[count]);
+            count += 1;
+        }
+    }
+
+    /**
+     * Two contours which cross each other or come closer than the minimum distance.
+     */
+    static final class Violation {
+        private final double x;
+        private final double y;
+        private final double distance;
+
+        private Violation(double x, double y, double distance) {
+            this.x = x;
+            this.y = y;
+            this.distance = distance;
+        }
+
+        boolean isIntersection() {
+            return distance == 0.0;
+        }
+
+        double getX() {
+            return x;
+        }
+
+        double getY() {
+            return y;
+        }
+
+        double getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return isIntersection() ? format(ENGLISH, "cuts intersect at (%.2f, %.2f)", x, y) :
+                    format(ENGLISH, "cuts %.3f mm apart at (%.2f, %.2f)", distance, x, y);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes design files to a directory. Relative file names are resolved against the directory, absolute ones are used
+ * as they are. Files are written through a buffered file channel.
+ */
+public class DirectorySink implements OutputSink {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    public DirectorySink(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public OutputStream open(String fileName) throws IOException {
+        return new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(directory.resolve(fileName), CREATE,
+                TRUNCATE_EXISTING, WRITE)), BUFFER_SIZE);
+    }
+
+    /**
+     * Closes the stream and deletes the incomplete file.
+     */
+    @Override
+    public void discard(String fileName, OutputStream out) throws IOException {
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(directory.resolve(fileName));
+        }
+    }
+}
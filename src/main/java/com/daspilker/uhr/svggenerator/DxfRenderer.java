@@ -0,0 +1,167 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the panel as DXF R12 file while it is drawn. Cuts are written to the {@code CUT} layer and the outlines of
+ * filled shapes to the {@code ENGRAVE} layer. Circles are written as circles, all other shapes as polylines with
+ * flattened curves. The y axis points upwards in DXF, so all coordinates are flipped.
+ */
+class DxfRenderer implements Renderer {
+    private static final String LAYER_CUT = "CUT";
+    private static final String LAYER_ENGRAVE = "ENGRAVE";
+    private static final int DIGITS = 6;
+
+    private final Writer writer;
+    private final double height;
+    private final double flatness;
+    private final double[] coords = new double[6];
+    private final StringBuilder number = new StringBuilder();
+
+    DxfRenderer(Writer writer, double height, double flatness) throws IOException {
+        this.writer = writer;
+        this.height = height;
+        this.flatness = flatness;
+
+        writeGroup(0, "SECTION");
+        writeGroup(2, "HEADER");
+        writeGroup(9, "$ACADVER");
+        writeGroup(1, "AC1009");
+        writeGroup(0, "ENDSEC");
+        writeGroup(0, "SECTION");
+        writeGroup(2, "ENTITIES");
+    }
+
+    @Override
+    public void setColor(Color color) {
+        // the layer determines how a shape is processed, not its color
+    }
+
+    @Override
+    public void draw(Shape shape) throws IOException {
+        writeShape(shape, LAYER_CUT);
+    }
+
+    @Override
+    public void fill(Shape shape) throws IOException {
+        writeShape(shape, LAYER_ENGRAVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeGroup(0, "ENDSEC");
+            writeGroup(0, "EOF");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeShape(Shape shape, String layer) throws IOException {
+        if (shape instanceof Ellipse2D && ((Ellipse2D) shape).getWidth() == ((Ellipse2D) shape).getHeight()) {
+            Ellipse2D circle = (Ellipse2D) shape;
+            writeGroup(0, "CIRCLE");
+            writeGroup(8, layer);
+            writeGroup(10, circle.getCenterX());
+            writeGroup(20, height - circle.getCenterY());
+            writeGroup(30, 0.0);
+            writeGroup(40, circle.getWidth() / 2.0);
+            return;
+        }
+
+        boolean open = false;
+        double startX = 0.0;
+        double startY = 0.0;
+        for (PathIterator iterator = shape.getPathIterator(null, flatness); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO) {
+                if (open) {
+                    writePolylineEnd(layer);
+                }
+                startX = coords[0];
+                startY = coords[1];
+                writePolylineStart(layer, startX, startY);
+                open = true;
+            } else if (type == PathIterator.SEG_CLOSE) {
+                if (open) {
+                    // whether a polyline is closed is not known at its start, so it is closed by an explicit vertex
+                    writeVertex(layer, startX, startY);
+                    writePolylineEnd(layer);
+                    open = false;
+                }
+            } else {
+                if (!open) {
+                    // a segment after a close starts at the start point of the closed subpath
+                    writePolylineStart(layer, startX, startY);
+                    open = true;
+                }
+                writeVertex(layer, coords[0], coords[1]);
+            }
+        }
+        if (open) {
+            writePolylineEnd(layer);
+        }
+    }
+
+    private void writePolylineStart(String layer, double x, double y) throws IOException {
+        writeGroup(0, "POLYLINE");
+        writeGroup(8, layer);
+        writeGroup(66, 1);
+        // R12 readers expect a dummy point on the polyline itself
+        writeGroup(10, 0.0);
+        writeGroup(20, 0.0);
+        writeGroup(30, 0.0);
+        writeGroup(70, 0);
+        writeVertex(layer, x, y);
+    }
+
+    private void writeVertex(String layer, double x, double y) throws IOException {
+        writeGroup(0, "VERTEX");
+        writeGroup(8, layer);
+        writeGroup(10, x);
+        writeGroup(20, height - y);
+        writeGroup(30, 0.0);
+    }
+
+    private void writePolylineEnd(String layer) throws IOException {
+        writeGroup(0, "SEQEND");
+        writeGroup(8, layer);
+    }
+
+    private void writeGroup(int code, CharSequence value) throws IOException {
+        writer.write(Integer.toString(code));
+        writer.write('\n');
+        writer.append(value);
+        writer.write('\n');
+    }
+
+    private void writeGroup(int code, int value) throws IOException {
+        writeGroup(code, Integer.toString(value));
+    }
+
+    private void writeGroup(int code, double value) throws IOException {
+        number.setLength(0);
+        Numbers.append(number, value, DIGITS);
+        writeGroup(code, number);
+    }
+}
@@ -0,0 +1,355 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.round;
+
+/**
+ * Removes cuts which coincide, e.g. the shared edges of neighbouring hexagons. All end points are snapped to a grid
+ * with the given tolerance. Straight segments on the same line are merged where they overlap, and the remaining
+ * segments are joined into polylines which are passed on when the renderer is closed.
+ * <p>
+ * Only shapes which consist of straight segments are deduplicated. Shapes with curves and all filled shapes are passed
+ * on unchanged.
+ */
+class EdgeDeduplicator implements Renderer {
+    private final Renderer renderer;
+    private final double tolerance;
+    private final Map<Color, Map<Line, List<long[]>>> segments = new LinkedHashMap<>();
+    private final double[] coords = new double[6];
+    private Color color;
+    private int segmentsBefore;
+    private int segmentsAfter;
+    private int polylines;
+
+    EdgeDeduplicator(Renderer renderer, double tolerance) {
+        this.renderer = renderer;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public void setColor(Color color) throws IOException {
+        this.color = color;
+        renderer.setColor(color);
+    }
+
+    @Override
+    public void draw(Shape shape) throws IOException {
+        if (isStraight(shape)) {
+            addSegments(shape, 0.0, 0.0);
+        } else {
+            renderer.draw(shape);
+        }
+    }
+
+    @Override
+    public void fill(Shape shape) throws IOException {
+        renderer.fill(shape);
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) throws IOException {
+        if (isStraight(shape)) {
+            addSegments(shape, x, y);
+        } else {
+            renderer.draw(key, shape, x, y);
+        }
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) throws IOException {
+        renderer.fill(key, shape, x, y);
+    }
+
+    /**
+     * Returns the number of straight segments which have been drawn.
+     */
+    int getSegmentsBefore() {
+        return segmentsBefore;
+    }
+
+    /**
+     * Returns the number of straight segments which remained after merging.
+     */
+    int getSegmentsAfter() {
+        return segmentsAfter;
+    }
+
+    /**
+     * Returns the number of polylines the remaining segments have been joined into.
+     */
+    int getPolylines() {
+        return polylines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Map.Entry<Color, Map<Line, List<long[]>>> entry : segments.entrySet()) {
+                renderer.setColor(entry.getKey());
+                List<long[]> merged = new ArrayList<>();
+                for (Map.Entry<Line, List<long[]>> line : entry.getValue().entrySet()) {
+                    merge(line.getKey(), line.getValue(), merged);
+                }
+                segmentsAfter += merged.size();
+                for (Path2D polyline : join(merged)) {
+                    renderer.draw(polyline);
+                    polylines += 1;
+                }
+            }
+        } finally {
+            renderer.close();
+        }
+    }
+
+    private void addSegments(Shape shape, double x, double y) {
+        Map<Line, List<long[]>> lines = segments.computeIfAbsent(color, c -> new HashMap<>());
+        long startX = 0;
+        long startY = 0;
+        long lastX = 0;
+        long lastY = 0;
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO) {
+                startX = snap(coords[0] + x);
+                startY = snap(coords[1] + y);
+                lastX = startX;
+                lastY = startY;
+                continue;
+            }
+            long nextX = type == PathIterator.SEG_CLOSE ? startX : snap(coords[0] + x);
+            long nextY = type == PathIterator.SEG_CLOSE ? startY : snap(coords[1] + y);
+            if (nextX != lastX || nextY != lastY) {
+                segmentsBefore += 1;
+                Line line = new Line(lastX, lastY, nextX, nextY);
+                lines.computeIfAbsent(line, l -> new ArrayList<>()).add(new long[]{lastX, lastY, nextX, nextY});
+            }
+            lastX = nextX;
+            lastY = nextY;
+        }
+    }
+
+    private long snap(double value) {
+        return round(value / tolerance);
+    }
+
+    /**
+     * Merges overlapping segments on the same line and adds the resulting segments to the result.
+     */
+    private static void merge(Line line, List<long[]> segments, List<long[]> result) {
+        // the position along the line of each end point, which are the only candidates for merged end points
+        int count = segments.size();
+        long[][] intervals = new long[count][];
+        for (int i = 0; i < count; i += 1) {
+            long[] segment = segments.get(i);
+            long t0 = line.project(segment[0], segment[1]);
+            long t1 = line.project(segment[2], segment[3]);
+            intervals[i] = t0 <= t1 ? new long[]{t0, t1, i, 0} : new long[]{t1, t0, i, 2};
+        }
+        Arrays.sort(intervals, (a, b) -> Long.compare(a[0], b[0]));
+
+        long[] start = null;
+        long end = 0;
+        long[] endPoint = null;
+        for (long[] interval : intervals) {
+            long[] segment = segments.get((int) interval[2]);
+            int first = (int) interval[3];
+            if (start != null && interval[0] <= end) {
+                if (interval[1] > end) {
+                    end = interval[1];
+                    endPoint = new long[]{segment[2 - first], segment[3 - first]};
+                }
+                continue;
+            }
+            if (start != null) {
+                result.add(new long[]{start[0], start[1], endPoint[0], endPoint[1]});
+            }
+            start = new long[]{segment[first], segment[first + 1]};
+            end = interval[1];
+            endPoint = new long[]{segment[2 - first], segment[3 - first]};
+        }
+        if (start != null) {
+            result.add(new long[]{start[0], start[1], endPoint[0], endPoint[1]});
+        }
+    }
+
+    /**
+     * Joins segments which share end points into polylines. Walks start at points with an odd number of segments, so
+     * that the open ends of the drawing become the ends of the polylines.
+     */
+    private List<Path2D> join(List<long[]> segments) {
+        Map<Point, List<Integer>> adjacency = new HashMap<>();
+        for (int i = 0; i < segments.size(); i += 1) {
+            long[] segment = segments.get(i);
+            adjacency.computeIfAbsent(new Point(segment[0], segment[1]), p -> new ArrayList<>(2)).add(i);
+            adjacency.computeIfAbsent(new Point(segment[2], segment[3]), p -> new ArrayList<>(2)).add(i);
+        }
+
+        List<Point> starts = new ArrayList<>();
+        for (Map.Entry<Point, List<Integer>> entry : adjacency.entrySet()) {
+            if (entry.getValue().size() % 2 == 1) {
+                starts.add(entry.getKey());
+            }
+        }
+        for (long[] segment : segments) {
+            starts.add(new Point(segment[0], segment[1]));
+        }
+
+        boolean[] used = new boolean[segments.size()];
+        List<Path2D> result = new ArrayList<>();
+        for (Point start : starts) {
+            Point current = start;
+            Path2D path = null;
+            while (true) {
+                int next = -1;
+                for (int candidate : adjacency.get(current)) {
+                    if (!used[candidate]) {
+                        next = candidate;
+                        break;
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                used[next] = true;
+                if (path == null) {
+                    path = new Path2D.Double();
+                    path.moveTo(current.x * tolerance, current.y * tolerance);
+                }
+                long[] segment = segments.get(next);
+                current = segment[0] == current.x && segment[1] == current.y ?
+                        new Point(segment[2], segment[3]) : new Point(segment[0], segment[1]);
+                if (current.equals(start) && !hasUnused(adjacency.get(current), used)) {
+                    path.closePath();
+                } else {
+                    path.lineTo(current.x * tolerance, current.y * tolerance);
+                }
+            }
+            if (path != null) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasUnused(List<Integer> segments, boolean[] used) {
+        for (int segment : segments) {
+            if (!used[segment]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStraight(Shape shape) {
+        if (shape instanceof Ellipse2D) {
+            return false;
+        }
+        double[] coords = new double[6];
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            if (type == PathIterator.SEG_QUADTO || type == PathIterator.SEG_CUBICTO) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A line through two snapped points, identified by its reduced direction and its offset from the origin.
+     */
+    private static final class Line {
+        private final long directionX;
+        private final long directionY;
+        private final long offset;
+
+        private Line(long x0, long y0, long x1, long y1) {
+            long dx = x1 - x0;
+            long dy = y1 - y0;
+            long gcd = gcd(abs(dx), abs(dy));
+            dx /= gcd;
+            dy /= gcd;
+            if (dx < 0 || dx == 0 && dy < 0) {
+                dx = -dx;
+                dy = -dy;
+            }
+            directionX = dx;
+            directionY = dy;
+            offset = dy * x0 - dx * y0;
+        }
+
+        private static long gcd(long a, long b) {
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        private long project(long x, long y) {
+            return directionX * x + directionY * y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Line)) {
+                return false;
+            }
+            Line other = (Line) o;
+            return directionX == other.directionX && directionY == other.directionY && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (31 * (31 * directionX + directionY) + offset);
+        }
+    }
+
+    private static final class Point {
+        private final long x;
+        private final long y;
+
+        private Point(long x, long y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Point && x == ((Point) o).x && y == ((Point) o).y;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (x * 31 + y);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Fits the font size, the borders and the extra size of the light shades of the default clock from {@link Main} and
+ * prints the best values found as {@link Parameters generator parameters}. The objective is either {@code font} for
+ * the largest letters or {@code wall} for the thickest walls between the light shades.
+ */
+public class FitMain {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 4 || args.length > 0 && !args[0].matches("font|wall")) {
+            System.err.println("usage: FitMain [font|wall] [seconds] [minimumWallWidth] [minimumClearance]");
+            System.exit(2);
+        }
+        Generator generator = new Generator();
+        Main.configure(generator);
+        LayoutOptimizer optimizer = new LayoutOptimizer(generator);
+        if (args.length > 0) {
+            optimizer.setObjective(args[0].equals("font") ? LayoutOptimizer.Objective.FONT_SIZE :
+                    LayoutOptimizer.Objective.WALL_WIDTH);
+        }
+        if (args.length > 1) {
+            optimizer.setTimeBudget((long) (Double.parseDouble(args[1]) * 1000.0));
+        }
+        if (args.length > 2) {
+            optimizer.setMinimumWallWidth(Double.parseDouble(args[2]));
+        }
+        if (args.length > 3) {
+            optimizer.setMinimumClearance(Double.parseDouble(args[3]));
+        }
+
+        LayoutOptimizer.Result result = optimizer.optimize();
+        if (result == null) {
+            System.err.println("no valid layout found");
+            System.exit(1);
+        }
+        ClockSpec spec = result.getSpec();
+        System.out.println(format(ENGLISH, "wall width %.3f mm, clearance %.3f mm", result.getWallWidth(),
+                result.getClearance()));
+        System.out.println(format(ENGLISH, "%d layouts evaluated in %.0f ms", result.getEvaluations(),
+                result.getNanos() / 1e6));
+        System.out.println(format(ENGLISH, "fontSize=%.1f", spec.getFontSize()));
+        System.out.println(format(ENGLISH, "borderX=%.2f", spec.getBorderX()));
+        System.out.println(format(ENGLISH, "borderY=%.2f", spec.getBorderY()));
+        System.out.println(format(ENGLISH, "lightShadeExtra=%.2f", spec.getLightShadeExtra()));
+    }
+}
@@ -0,0 +1,877 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads glyph outlines from a TrueType or OpenType font file without the AWT font stack, so that fonts do not have to
+ * be installed and no font configuration is needed. The file is memory-mapped and only read with absolute positions,
+ * so a font can be used by several threads at the same time.
+ * <p>
+ * Outlines are read from the {@code glyf} table, including composite glyphs, or from the {@code CFF} table, including
+ * CID-keyed fonts. Characters are mapped to glyphs by a format 4 or format 12 {@code cmap} subtable. Characters which
+ * are not in the font are mapped to the missing glyph, like AWT does. Hinting is not applied.
+ */
+final class FontFile {
+    private static final int TAG_TTCF = 0x74746366;
+    private static final int TAG_HEAD = 0x68656164;
+    private static final int TAG_MAXP = 0x6D617870;
+    private static final int TAG_CMAP = 0x636D6170;
+    private static final int TAG_LOCA = 0x6C6F6361;
+    private static final int TAG_GLYF = 0x676C7966;
+    private static final int TAG_CFF = 0x43464620;
+    private static final int MAXIMUM_COMPONENT_DEPTH = 8;
+    private static final int MAXIMUM_SUBROUTINE_DEPTH = 10;
+
+    private final String id;
+    private final ByteBuffer data;
+    private final int unitsPerEm;
+    private final int numGlyphs;
+    private final int cmap;
+    private final boolean symbolCmap;
+    private final int loca;
+    private final boolean longLoca;
+    private final int glyf;
+    private final Cff cff;
+
+    private FontFile(Path path, ByteBuffer data) throws IOException {
+        this.id = getId(path);
+        this.data = data;
+
+        int directory = data.getInt(0) == TAG_TTCF ? data.getInt(12) : 0;
+        int head = findTable(directory, TAG_HEAD);
+        int maxp = findTable(directory, TAG_MAXP);
+        int cmapTable = findTable(directory, TAG_CMAP);
+        int glyfTable = findTable(directory, TAG_GLYF);
+        int cffTable = findTable(directory, TAG_CFF);
+        if (head < 0 || maxp < 0 || cmapTable < 0 || (glyfTable < 0 && cffTable < 0)) {
+            throw new IOException("not a TrueType or OpenType font: " + path);
+        }
+        unitsPerEm = getUnsignedShort(head + 18);
+        numGlyphs = getUnsignedShort(maxp + 4);
+        if (glyfTable >= 0) {
+            loca = findTable(directory, TAG_LOCA);
+            if (loca < 0) {
+                throw new IOException("missing loca table: " + path);
+            }
+            longLoca = data.getShort(head + 50) != 0;
+            glyf = glyfTable;
+            cff = null;
+        } else {
+            loca = -1;
+            longLoca = false;
+            glyf = -1;
+            cff = new Cff(cffTable);
+        }
+
+        int bestSubtable = -1;
+        int bestPriority = 0;
+        boolean symbol = false;
+        int count = getUnsignedShort(cmapTable + 2);
+        for (int i = 0; i < count; i += 1) {
+            int record = cmapTable + 4 + i * 8;
+            int platform = getUnsignedShort(record);
+            int encoding = getUnsignedShort(record + 2);
+            int subtable = cmapTable + data.getInt(record + 4);
+            int format = getUnsignedShort(subtable);
+            int priority = 0;
+            if (format == 12 && (platform == 0 || platform == 3 && encoding == 10)) {
+                priority = 3;
+            } else if (format == 4 && (platform == 0 || platform == 3 && encoding == 1)) {
+                priority = 2;
+            } else if (format == 4 && platform == 3 && encoding == 0) {
+                priority = 1;
+            }
+            if (priority > bestPriority) {
+                bestSubtable = subtable;
+                bestPriority = priority;
+                symbol = priority == 1;
+            }
+        }
+        if (bestSubtable < 0) {
+            throw new IOException("no Unicode character map: " + path);
+        }
+        cmap = bestSubtable;
+        symbolCmap = symbol;
+    }
+
+    /**
+     * Memory-maps the font file. For font collections, the first font is used.
+     */
+    static FontFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            ByteBuffer data = channel.map(READ_ONLY, 0, channel.size());
+            if (data.capacity() < 12) {
+                throw new IOException("not a TrueType or OpenType font: " + path);
+            }
+            return new FontFile(path, data);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("malformed font: " + path, e);
+        }
+    }
+
+    /**
+     * Identifies the file and its version, so that cached glyphs are not used after the file has been changed.
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the identifier of the current version of the file without reading it.
+     */
+    static String getId(Path path) throws IOException {
+        return "file:" + path.toAbsolutePath() + ':' + Files.size(path) + ':' + Files.getLastModifiedTime(path).toMillis();
+    }
+
+    /**
+     * Returns the outline of the character scaled to the font size, with the baseline at zero and the y axis pointing
+     * downwards like in outlines from AWT.
+     */
+    Path2D getOutline(char c, float fontSize) {
+        Path2D.Float outline = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        int glyph = getGlyphIndex(c);
+        double scale = fontSize / (double) unitsPerEm;
+        AffineTransform transform = AffineTransform.getScaleInstance(scale, -scale);
+        try {
+            if (cff != null) {
+                cff.appendGlyph(outline, glyph, transform);
+            } else {
+                appendGlyph(outline, glyph, transform, 0);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalStateException(String.format("malformed glyph %d for %s in %s", glyph, c, id), e);
+        }
+        return outline;
+    }
+
+    private int findTable(int directory, int tag) {
+        int count = getUnsignedShort(directory + 4);
+        for (int i = 0; i < count; i += 1) {
+            int record = directory + 12 + i * 16;
+            if (data.getInt(record) == tag) {
+                return data.getInt(record + 8);
+            }
+        }
+        return -1;
+    }
+
+    private int getGlyphIndex(char c) {
+        int glyph = lookUp(c);
+        if (glyph == 0 && symbolCmap) {
+            // symbol fonts map their characters to the private use area
+            glyph = lookUp(0xF000 + (c & 0xFF));
+        }
+        return glyph < numGlyphs ? glyph : 0;
+    }
+
+    private int lookUp(int c) {
+        if (getUnsignedShort(cmap) == 12) {
+            int groups = data.getInt(cmap + 12);
+            for (int i = 0; i < groups; i += 1) {
+                int group = cmap + 16 + i * 12;
+                if (c >= data.getInt(group) && c <= data.getInt(group + 4)) {
+                    return data.getInt(group + 8) + c - data.getInt(group);
+                }
+            }
+            return 0;
+        }
+
+        int segments = getUnsignedShort(cmap + 6) / 2;
+        int endCodes = cmap + 14;
+        int startCodes = endCodes + segments * 2 + 2;
+        int idDeltas = startCodes + segments * 2;
+        int idRangeOffsets = idDeltas + segments * 2;
+        for (int i = 0; i < segments; i += 1) {
+            if (c > getUnsignedShort(endCodes + i * 2)) {
+                continue;
+            }
+            int start = getUnsignedShort(startCodes + i * 2);
+            if (c < start) {
+                return 0;
+            }
+            int idDelta = data.getShort(idDeltas + i * 2);
+            int idRangeOffset = getUnsignedShort(idRangeOffsets + i * 2);
+            if (idRangeOffset == 0) {
+                return (c + idDelta) & 0xFFFF;
+            }
+            int glyph = getUnsignedShort(idRangeOffsets + i * 2 + idRangeOffset + (c - start) * 2);
+            return glyph == 0 ? 0 : (glyph + idDelta) & 0xFFFF;
+        }
+        return 0;
+    }
+
+    private int getGlyphOffset(int glyph) {
+        return longLoca ? data.getInt(loca + glyph * 4) : getUnsignedShort(loca + glyph * 2) * 2;
+    }
+
+    private void appendGlyph(Path2D outline, int glyph, AffineTransform transform, int depth) {
+        int start = glyf + getGlyphOffset(glyph);
+        if (getGlyphOffset(glyph + 1) == getGlyphOffset(glyph)) {
+            // glyphs without outline, e.g. the space
+            return;
+        }
+        int contours = data.getShort(start);
+        if (contours >= 0) {
+            appendSimpleGlyph(outline, start, contours, transform);
+        } else if (depth < MAXIMUM_COMPONENT_DEPTH) {
+            appendCompositeGlyph(outline, start, transform, depth);
+        }
+    }
+
+    private void appendSimpleGlyph(Path2D outline, int start, int contours, AffineTransform transform) {
+        if (contours == 0) {
+            return;
+        }
+        int[] endPoints = new int[contours];
+        for (int i = 0; i < contours; i += 1) {
+            endPoints[i] = getUnsignedShort(start + 10 + i * 2);
+        }
+        int pointCount = endPoints[contours - 1] + 1;
+        int position = start + 10 + contours * 2;
+        position += 2 + getUnsignedShort(position);
+
+        byte[] flags = new byte[pointCount];
+        for (int i = 0; i < pointCount; i += 1) {
+            byte flag = data.get(position++);
+            flags[i] = flag;
+            if ((flag & 0x08) != 0) {
+                int repeat = data.get(position++) & 0xFF;
+                for (int j = 0; j < repeat && i + 1 < pointCount; j += 1) {
+                    i += 1;
+                    flags[i] = flag;
+                }
+            }
+        }
+        double[] points = new double[pointCount * 2];
+        int value = 0;
+        for (int i = 0; i < pointCount; i += 1) {
+            if ((flags[i] & 0x02) != 0) {
+                int delta = data.get(position++) & 0xFF;
+                value += (flags[i] & 0x10) != 0 ? delta : -delta;
+            } else if ((flags[i] & 0x10) == 0) {
+                value += data.getShort(position);
+                position += 2;
+            }
+            points[i * 2] = value;
+        }
+        value = 0;
+        for (int i = 0; i < pointCount; i += 1) {
+            if ((flags[i] & 0x04) != 0) {
+                int delta = data.get(position++) & 0xFF;
+                value += (flags[i] & 0x20) != 0 ? delta : -delta;
+            } else if ((flags[i] & 0x20) == 0) {
+                value += data.getShort(position);
+                position += 2;
+            }
+            points[i * 2 + 1] = value;
+        }
+        transform.transform(points, 0, points, 0, pointCount);
+
+        int first = 0;
+        for (int endPoint : endPoints) {
+            appendContour(outline, points, flags, first, endPoint);
+            first = endPoint + 1;
+        }
+    }
+
+    /**
+     * Appends a contour of quadratic curves. Between two off-curve points lies an implied on-curve point in the
+     * middle. The contour starts at its first on-curve point, like in outlines from FreeType.
+     */
+    private static void appendContour(Path2D outline, double[] points, byte[] flags, int first, int last) {
+        if (last < first) {
+            return;
+        }
+        double startX;
+        double startY;
+        int begin = first;
+        int end = last;
+        if ((flags[first] & 0x01) != 0) {
+            startX = points[first * 2];
+            startY = points[first * 2 + 1];
+            begin = first + 1;
+        } else if ((flags[last] & 0x01) != 0) {
+            startX = points[last * 2];
+            startY = points[last * 2 + 1];
+            end = last - 1;
+        } else {
+            startX = (points[first * 2] + points[last * 2]) / 2.0;
+            startY = (points[first * 2 + 1] + points[last * 2 + 1]) / 2.0;
+        }
+        outline.moveTo(startX, startY);
+        boolean control = false;
+        double controlX = 0.0;
+        double controlY = 0.0;
+        for (int i = begin; i <= end; i += 1) {
+            double x = points[i * 2];
+            double y = points[i * 2 + 1];
+            if ((flags[i] & 0x01) != 0) {
+                if (control) {
+                    outline.quadTo(controlX, controlY, x, y);
+                } else {
+                    outline.lineTo(x, y);
+                }
+                control = false;
+            } else {
+                if (control) {
+                    outline.quadTo(controlX, controlY, (controlX + x) / 2.0, (controlY + y) / 2.0);
+                }
+                control = true;
+                controlX = x;
+                controlY = y;
+            }
+        }
+        if (control) {
+            outline.quadTo(controlX, controlY, startX, startY);
+        } else {
+            outline.lineTo(startX, startY);
+        }
+        outline.closePath();
+    }
+
+    private void appendCompositeGlyph(Path2D outline, int start, AffineTransform transform, int depth) {
+        int position = start + 10;
+        int flags;
+        do {
+            flags = getUnsignedShort(position);
+            int glyph = getUnsignedShort(position + 2);
+            position += 4;
+            double dx;
+            double dy;
+            if ((flags & 0x0001) != 0) {
+                dx = data.getShort(position);
+                dy = data.getShort(position + 2);
+                position += 4;
+            } else {
+                dx = data.get(position);
+                dy = data.get(position + 1);
+                position += 2;
+            }
+            if ((flags & 0x0002) == 0) {
+                // components aligned by matching points are rare, they are placed without offset
+                dx = 0.0;
+                dy = 0.0;
+            }
+            double a = 1.0;
+            double b = 0.0;
+            double c = 0.0;
+            double d = 1.0;
+            if ((flags & 0x0008) != 0) {
+                a = getF2Dot14(position);
+                d = a;
+                position += 2;
+            } else if ((flags & 0x0040) != 0) {
+                a = getF2Dot14(position);
+                d = getF2Dot14(position + 2);
+                position += 4;
+            } else if ((flags & 0x0080) != 0) {
+                a = getF2Dot14(position);
+                b = getF2Dot14(position + 2);
+                c = getF2Dot14(position + 4);
+                d = getF2Dot14(position + 6);
+                position += 8;
+            }
+            AffineTransform componentTransform = new AffineTransform(transform);
+            componentTransform.concatenate(new AffineTransform(a, b, c, d, dx, dy));
+            if (glyph < numGlyphs) {
+                appendGlyph(outline, glyph, componentTransform, depth + 1);
+            }
+        } while ((flags & 0x0020) != 0);
+    }
+
+    private double getF2Dot14(int position) {
+        return data.getShort(position) / 16384.0;
+    }
+
+    private int getUnsignedShort(int position) {
+        return data.getShort(position) & 0xFFFF;
+    }
+
+    private int getUnsignedByte(int position) {
+        return data.get(position) & 0xFF;
+    }
+
+    /**
+     * The Compact Font Format table of OpenType fonts with cubic outlines.
+     */
+    private final class Cff {
+        private final int[] charStrings;
+        private final int[] globalSubrs;
+        private final int[][] localSubrs;
+        private final int fdSelect;
+
+        private Cff(int start) throws IOException {
+            // the header is followed by the name, top DICT, string and global subroutine indexes
+            int position = start + getUnsignedByte(start + 2);
+            position = getIndexEnd(position);
+            int[] topDicts = readIndex(position);
+            position = getIndexEnd(getIndexEnd(position));
+            globalSubrs = readIndex(position);
+            if (topDicts.length < 2) {
+                throw new IOException("CFF table without font");
+            }
+
+            Dict topDict = new Dict(topDicts[0], topDicts[1]);
+            if (topDict.charStrings < 0) {
+                throw new IOException("CFF font without charstrings");
+            }
+            charStrings = readIndex(start + topDict.charStrings);
+            if (topDict.fdArray >= 0) {
+                int[] fontDicts = readIndex(start + topDict.fdArray);
+                localSubrs = new int[Math.max(fontDicts.length - 1, 0)][];
+                for (int i = 0; i + 1 < fontDicts.length; i += 1) {
+                    localSubrs[i] = readPrivateSubrs(start, new Dict(fontDicts[i], fontDicts[i + 1]));
+                }
+                fdSelect = start + topDict.fdSelect;
+            } else {
+                localSubrs = new int[][]{readPrivateSubrs(start, topDict)};
+                fdSelect = -1;
+            }
+        }
+
+        private int[] readPrivateSubrs(int start, Dict dict) {
+            if (dict.privateOffset < 0) {
+                return new int[0];
+            }
+            int privateStart = start + dict.privateOffset;
+            Dict privateDict = new Dict(privateStart, privateStart + dict.privateSize);
+            return privateDict.subrs < 0 ? new int[0] : readIndex(privateStart + privateDict.subrs);
+        }
+
+        /**
+         * Returns the start of each object of the index followed by the end of the last object.
+         */
+        private int[] readIndex(int position) {
+            int count = getUnsignedShort(position);
+            if (count == 0) {
+                return new int[]{position + 2};
+            }
+            int offSize = getUnsignedByte(position + 2);
+            int base = position + 3 + (count + 1) * offSize - 1;
+            int[] result = new int[count + 1];
+            for (int i = 0; i <= count; i += 1) {
+                int offset = 0;
+                for (int j = 0; j < offSize; j += 1) {
+                    offset = (offset << 8) | getUnsignedByte(position + 3 + i * offSize + j);
+                }
+                result[i] = base + offset;
+            }
+            return result;
+        }
+
+        private int getIndexEnd(int position) {
+            int[] index = readIndex(position);
+            return index.length == 1 ? position + 2 : index[index.length - 1];
+        }
+
+        private int getFontDict(int glyph) {
+            if (fdSelect < 0) {
+                return 0;
+            }
+            if (getUnsignedByte(fdSelect) == 0) {
+                return getUnsignedByte(fdSelect + 1 + glyph);
+            }
+            int ranges = getUnsignedShort(fdSelect + 1);
+            for (int i = 0; i < ranges; i += 1) {
+                int range = fdSelect + 3 + i * 3;
+                if (glyph < getUnsignedShort(range + 3)) {
+                    return getUnsignedByte(range + 2);
+                }
+            }
+            return 0;
+        }
+
+        private void appendGlyph(Path2D outline, int glyph, AffineTransform transform) {
+            if (glyph + 1 >= charStrings.length) {
+                return;
+            }
+            int fontDict = getFontDict(glyph);
+            int[] subrs = fontDict < localSubrs.length ? localSubrs[fontDict] : new int[0];
+            new CharString(outline, transform, subrs).run(charStrings[glyph], charStrings[glyph + 1], 0);
+        }
+    }
+
+    /**
+     * The operators of a top, font or private DICT which are needed to find the charstrings and subroutines.
+     */
+    private final class Dict {
+        private int charStrings = -1;
+        private int privateSize = -1;
+        private int privateOffset = -1;
+        private int fdArray = -1;
+        private int fdSelect = -1;
+        private int subrs = -1;
+
+        private Dict(int position, int end) {
+            double[] operands = new double[48];
+            int count = 0;
+            while (position < end) {
+                int b0 = getUnsignedByte(position);
+                if (b0 <= 21) {
+                    int operator = b0;
+                    position += 1;
+                    if (b0 == 12) {
+                        operator = 1200 + getUnsignedByte(position);
+                        position += 1;
+                    }
+                    setOperator(operator, operands, count);
+                    count = 0;
+                    continue;
+                }
+                double operand;
+                if (b0 == 28) {
+                    operand = data.getShort(position + 1);
+                    position += 3;
+                } else if (b0 == 29) {
+                    operand = data.getInt(position + 1);
+                    position += 5;
+                } else if (b0 == 30) {
+                    // real numbers are only skipped, none of the operators needed here takes one
+                    operand = 0.0;
+                    position += 1;
+                    while (position < end && (getUnsignedByte(position) & 0x0F) != 0x0F &&
+                            (getUnsignedByte(position) & 0xF0) != 0xF0) {
+                        position += 1;
+                    }
+                    position += 1;
+                } else if (b0 <= 246) {
+                    operand = b0 - 139;
+                    position += 1;
+                } else if (b0 <= 250) {
+                    operand = (b0 - 247) * 256 + getUnsignedByte(position + 1) + 108;
+                    position += 2;
+                } else if (b0 <= 254) {
+                    operand = -(b0 - 251) * 256 - getUnsignedByte(position + 1) - 108;
+                    position += 2;
+                } else {
+                    throw new IndexOutOfBoundsException("reserved DICT byte " + b0);
+                }
+                if (count < operands.length) {
+                    operands[count++] = operand;
+                }
+            }
+        }
+
+        private void setOperator(int operator, double[] operands, int count) {
+            switch (operator) {
+                case 17:
+                    charStrings = (int) operands[0];
+                    break;
+                case 18:
+                    if (count >= 2) {
+                        privateSize = (int) operands[0];
+                        privateOffset = (int) operands[1];
+                    }
+                    break;
+                case 19:
+                    subrs = (int) operands[0];
+                    break;
+                case 1236:
+                    fdArray = (int) operands[0];
+                    break;
+                case 1237:
+                    fdSelect = (int) operands[0];
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Interprets a Type 2 charstring. Hints are skipped, the width is ignored.
+     */
+    private final class CharString {
+        private final Path2D outline;
+        private final AffineTransform transform;
+        private final int[] localSubrs;
+        private final double[] stack = new double[48];
+        private int count;
+        private int stems;
+        private boolean widthParsed;
+        private boolean open;
+        private boolean ended;
+        private double x;
+        private double y;
+        private double startX;
+        private double startY;
+
+        private CharString(Path2D outline, AffineTransform transform, int[] localSubrs) {
+            this.outline = outline;
+            this.transform = transform;
+            this.localSubrs = localSubrs;
+        }
+
+        private void run(int position, int end, int depth) {
+            while (position < end && !ended) {
+                int b0 = getUnsignedByte(position);
+                if (b0 >= 32 || b0 == 28) {
+                    double operand;
+                    if (b0 == 28) {
+                        operand = data.getShort(position + 1);
+                        position += 3;
+                    } else if (b0 <= 246) {
+                        operand = b0 - 139;
+                        position += 1;
+                    } else if (b0 <= 250) {
+                        operand = (b0 - 247) * 256 + getUnsignedByte(position + 1) + 108;
+                        position += 2;
+                    } else if (b0 <= 254) {
+                        operand = -(b0 - 251) * 256 - getUnsignedByte(position + 1) - 108;
+                        position += 2;
+                    } else {
+                        operand = data.getInt(position + 1) / 65536.0;
+                        position += 5;
+                    }
+                    if (count < stack.length) {
+                        stack[count++] = operand;
+                    }
+                    continue;
+                }
+
+                position += 1;
+                int i = 0;
+                switch (b0) {
+                    case 1:
+                    case 3:
+                    case 18:
+                    case 23:
+                        parseWidth(count % 2 != 0);
+                        stems += count / 2;
+                        break;
+                    case 19:
+                    case 20:
+                        // stems before a hint mask may omit the vstem operator
+                        parseWidth(count % 2 != 0);
+                        stems += count / 2;
+                        position += (stems + 7) / 8;
+                        break;
+                    case 21:
+                        i = parseWidth(count > 2);
+                        moveTo(stack[i], stack[i + 1]);
+                        break;
+                    case 22:
+                        i = parseWidth(count > 1);
+                        moveTo(stack[i], 0.0);
+                        break;
+                    case 4:
+                        i = parseWidth(count > 1);
+                        moveTo(0.0, stack[i]);
+                        break;
+                    case 5:
+                        for (; i + 1 < count; i += 2) {
+                            lineTo(stack[i], stack[i + 1]);
+                        }
+                        break;
+                    case 6:
+                    case 7:
+                        for (boolean horizontal = b0 == 6; i < count; i += 1, horizontal = !horizontal) {
+                            lineTo(horizontal ? stack[i] : 0.0, horizontal ? 0.0 : stack[i]);
+                        }
+                        break;
+                    case 8:
+                        for (; i + 5 < count; i += 6) {
+                            curveTo(stack[i], stack[i + 1], stack[i + 2], stack[i + 3], stack[i + 4], stack[i + 5]);
+                        }
+                        break;
+                    case 24:
+                        for (; i + 5 < count - 2; i += 6) {
+                            curveTo(stack[i], stack[i + 1], stack[i + 2], stack[i + 3], stack[i + 4], stack[i + 5]);
+                        }
+                        lineTo(stack[i], stack[i + 1]);
+                        break;
+                    case 25:
+                        for (; i + 1 < count - 6; i += 2) {
+                            lineTo(stack[i], stack[i + 1]);
+                        }
+                        curveTo(stack[i], stack[i + 1], stack[i + 2], stack[i + 3], stack[i + 4], stack[i + 5]);
+                        break;
+                    case 26:
+                        double dx1 = 0.0;
+                        if (count % 2 != 0) {
+                            dx1 = stack[0];
+                            i = 1;
+                        }
+                        for (; i + 3 < count; i += 4) {
+                            curveTo(dx1, stack[i], stack[i + 1], stack[i + 2], 0.0, stack[i + 3]);
+                            dx1 = 0.0;
+                        }
+                        break;
+                    case 27:
+                        double dy1 = 0.0;
+                        if (count % 2 != 0) {
+                            dy1 = stack[0];
+                            i = 1;
+                        }
+                        for (; i + 3 < count; i += 4) {
+                            curveTo(stack[i], dy1, stack[i + 1], stack[i + 2], stack[i + 3], 0.0);
+                            dy1 = 0.0;
+                        }
+                        break;
+                    case 30:
+                    case 31:
+                        for (boolean horizontal = b0 == 31; i + 3 < count; i += 4, horizontal = !horizontal) {
+                            double last = count - i == 5 ? stack[i + 4] : 0.0;
+                            if (horizontal) {
+                                curveTo(stack[i], 0.0, stack[i + 1], stack[i + 2], last, stack[i + 3]);
+                            } else {
+                                curveTo(0.0, stack[i], stack[i + 1], stack[i + 2], stack[i + 3], last);
+                            }
+                        }
+                        break;
+                    case 10:
+                    case 29:
+                        if (count > 0 && depth < MAXIMUM_SUBROUTINE_DEPTH) {
+                            int[] subrs = b0 == 10 ? localSubrs : cff.globalSubrs;
+                            int subr = (int) stack[--count] + getBias(subrs.length - 1);
+                            if (subr >= 0 && subr + 1 < subrs.length) {
+                                run(subrs[subr], subrs[subr + 1], depth + 1);
+                            }
+                        }
+                        // the operands are left on the stack for the subroutine
+                        continue;
+                    case 11:
+                        return;
+                    case 14:
+                        parseWidth(count == 1 || count == 5);
+                        closeContour();
+                        ended = true;
+                        break;
+                    case 12:
+                        runEscape(getUnsignedByte(position));
+                        position += 1;
+                        break;
+                    default:
+                        break;
+                }
+                count = 0;
+            }
+        }
+
+        private void runEscape(int operator) {
+            switch (operator) {
+                case 35:
+                    if (count >= 12) {
+                        curveTo(stack[0], stack[1], stack[2], stack[3], stack[4], stack[5]);
+                        curveTo(stack[6], stack[7], stack[8], stack[9], stack[10], stack[11]);
+                    }
+                    break;
+                case 34:
+                    if (count >= 7) {
+                        curveTo(stack[0], 0.0, stack[1], stack[2], stack[3], 0.0);
+                        curveTo(stack[4], 0.0, stack[5], -stack[2], stack[6], 0.0);
+                    }
+                    break;
+                case 36:
+                    if (count >= 9) {
+                        curveTo(stack[0], stack[1], stack[2], stack[3], stack[4], 0.0);
+                        curveTo(stack[5], 0.0, stack[6], stack[7], stack[8], -(stack[1] + stack[3] + stack[7]));
+                    }
+                    break;
+                case 37:
+                    if (count >= 11) {
+                        double dx = stack[0] + stack[2] + stack[4] + stack[6] + stack[8];
+                        double dy = stack[1] + stack[3] + stack[5] + stack[7] + stack[9];
+                        curveTo(stack[0], stack[1], stack[2], stack[3], stack[4], stack[5]);
+                        if (Math.abs(dx) > Math.abs(dy)) {
+                            curveTo(stack[6], stack[7], stack[8], stack[9], stack[10], -dy);
+                        } else {
+                            curveTo(stack[6], stack[7], stack[8], stack[9], -dx, stack[10]);
+                        }
+                    }
+                    break;
+                default:
+                    // arithmetic and storage operators are not used by fonts in practice
+                    break;
+            }
+        }
+
+        /**
+         * The first operator which clears the stack may be preceded by the width. Returns the index of the first
+         * operand after the width.
+         */
+        private int parseWidth(boolean hasWidth) {
+            if (widthParsed) {
+                return 0;
+            }
+            widthParsed = true;
+            return hasWidth ? 1 : 0;
+        }
+
+        private int getBias(int subrCount) {
+            return subrCount < 1240 ? 107 : subrCount < 33900 ? 1131 : 32768;
+        }
+
+        private void moveTo(double dx, double dy) {
+            closeContour();
+            x += dx;
+            y += dy;
+            startX = x;
+            startY = y;
+            outline.moveTo(transformX(x, y), transformY(x, y));
+            open = true;
+        }
+
+        private void lineTo(double dx, double dy) {
+            x += dx;
+            y += dy;
+            outline.lineTo(transformX(x, y), transformY(x, y));
+        }
+
+        private void curveTo(double dx1, double dy1, double dx2, double dy2, double dx3, double dy3) {
+            double x1 = x + dx1;
+            double y1 = y + dy1;
+            double x2 = x1 + dx2;
+            double y2 = y1 + dy2;
+            x = x2 + dx3;
+            y = y2 + dy3;
+            outline.curveTo(transformX(x1, y1), transformY(x1, y1), transformX(x2, y2), transformY(x2, y2),
+                    transformX(x, y), transformY(x, y));
+        }
+
+        private double transformX(double x, double y) {
+            return transform.getScaleX() * x + transform.getShearX() * y + transform.getTranslateX();
+        }
+
+        private double transformY(double x, double y) {
+            return transform.getShearY() * x + transform.getScaleY() * y + transform.getTranslateY();
+        }
+
+        /**
+         * Closes the contour with a line back to its start, like FreeType does.
+         */
+        private void closeContour() {
+            if (open) {
+                if (x != startX || y != startY) {
+                    outline.lineTo(transformX(startX, startY), transformY(startX, startY));
+                }
+                outline.closePath();
+                open = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes the cuts of the panel as G-code for GRBL based laser cutters while they are drawn. The laser runs in dynamic
+ * power mode ({@code M4}), so that it is off during rapid moves. Circles are cut as full arcs, all other shapes as line
+ * segments with flattened curves. Each contour is cut the configured number of passes before moving on to the next
+ * one, open contours are cut back and forth.
+ * <p>
+ * Filled shapes would have to be engraved line by line, which is not supported, so they are skipped. The origin of the
+ * machine is at the lower left corner of the panel, so all y coordinates are flipped.
+ */
+class GcodeRenderer implements Renderer {
+    private static final int DIGITS = 4;
+
+    private final Writer writer;
+    private final double height;
+    private final double flatness;
+    private final String feed;
+    private final int passes;
+    private final StringBuilder buffer = new StringBuilder();
+    private final double[] coords = new double[6];
+    private double[] points = new double[64];
+    private int pointCount;
+    private int skippedFills;
+
+    /**
+     * @param feed   the feed rate for cuts in mm/min
+     * @param power  the laser power as spindle speed, 1000 is full power with the default GRBL settings
+     * @param passes the number of times each contour is cut
+     */
+    GcodeRenderer(Writer writer, double height, double flatness, double feed, int power, int passes) throws IOException {
+        if (passes < 1) {
+            throw new IllegalArgumentException("passes must be positive");
+        }
+        this.writer = writer;
+        this.height = height;
+        this.flatness = flatness;
+        this.feed = formatNumber(feed);
+        this.passes = passes;
+
+        buffer.append("G21\nG90\nM4 S").append(power).append('\n');
+        flush();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        // all cuts use the same feed and power
+    }
+
+    @Override
+    public void draw(Shape shape) throws IOException {
+        if (shape instanceof Ellipse2D && ((Ellipse2D) shape).getWidth() == ((Ellipse2D) shape).getHeight()) {
+            appendCircle((Ellipse2D) shape);
+        } else {
+            double startX = 0.0;
+            double startY = 0.0;
+            for (PathIterator iterator = shape.getPathIterator(null, flatness); !iterator.isDone(); iterator.next()) {
+                int type = iterator.currentSegment(coords);
+                if (type == PathIterator.SEG_MOVETO) {
+                    appendContour();
+                    startX = coords[0];
+                    startY = coords[1];
+                    addPoint(startX, startY);
+                } else if (type == PathIterator.SEG_CLOSE) {
+                    addPoint(startX, startY);
+                    appendContour();
+                    // a segment after a close starts at the start point of the closed subpath
+                    addPoint(startX, startY);
+                } else {
+                    addPoint(coords[0], coords[1]);
+                }
+            }
+            appendContour();
+        }
+        flush();
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        skippedFills += 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (skippedFills > 0) {
+                buffer.append("; skipped ").append(skippedFills).append(" filled shapes\n");
+            }
+            buffer.append("M5\nG0 X0 Y0\nM2\n");
+            flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void appendCircle(Ellipse2D circle) {
+        String x = formatNumber(circle.getMaxX());
+        String y = formatNumber(height - circle.getCenterY());
+        String i = formatNumber(-circle.getWidth() / 2.0);
+        buffer.append("G0 X").append(x).append(" Y").append(y).append('\n');
+        for (int pass = 0; pass < passes; pass += 1) {
+            // a full circle, the center is given relative to the start point on its right
+            buffer.append("G2 X").append(x).append(" Y").append(y).append(" I").append(i).append(" J0");
+            if (pass == 0) {
+                buffer.append(" F").append(feed);
+            }
+            buffer.append('\n');
+        }
+    }
+
+    private void addPoint(double x, double y) {
+        if (pointCount * 2 == points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = height - y;
+        pointCount += 1;
+    }
+
+    private void appendContour() {
+        if (pointCount > 1) {
+            boolean closed = points[0] == points[pointCount * 2 - 2] && points[1] == points[pointCount * 2 - 1];
+            appendMove("G0", 0);
+            for (int pass = 0; pass < passes; pass += 1) {
+                boolean forward = closed || pass % 2 == 0;
+                for (int i = 1; i < pointCount; i += 1) {
+                    appendMove("G1", forward ? i : pointCount - 1 - i);
+                    if (pass == 0 && i == 1) {
+                        buffer.insert(buffer.length() - 1, " F" + feed);
+                    }
+                }
+            }
+        }
+        pointCount = 0;
+    }
+
+    private void appendMove(String command, int point) {
+        buffer.append(command);
+        buffer.append(" X");
+        Numbers.append(buffer, points[point * 2], DIGITS);
+        buffer.append(" Y");
+        Numbers.append(buffer, points[point * 2 + 1], DIGITS);
+        buffer.append('\n');
+    }
+
+    private void flush() throws IOException {
+        writer.append(buffer);
+        buffer.setLength(0);
+    }
+
+    private static String formatNumber(double value) {
+        return Numbers.format(value, DIGITS);
+    }
+}
@@ -15,211 +15,226 @@
 */
 package com.daspilker.uhr.svggenerator;
 
-import org.apache.batik.svggen.SVGGeneratorContext;
-import org.apache.batik.svggen.SVGGraphics2D;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
 import java.awt.BasicStroke;
 import java.awt.Color;
-import java.awt.Font;
-import java.awt.Graphics2D;
 import java.awt.Shape;
-import java.awt.Stroke;
-import java.awt.font.FontRenderContext;
-import java.awt.font.GlyphVector;
 import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 import static java.awt.Color.BLACK;
 import static java.awt.Color.BLUE;
+import static java.awt.Color.RED;
 import static java.awt.Color.WHITE;
-import static java.awt.geom.AffineTransform.getTranslateInstance;
 import static java.awt.geom.Arc2D.OPEN;
+import static java.lang.Math.ceil;
 import static java.lang.Math.cos;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.Math.sin;
 import static java.lang.Math.sqrt;
 import static java.lang.Math.toRadians;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.Arrays.copyOfRange;
+import static java.util.Collections.frequency;
 import static java.util.Locale.ENGLISH;
-import static org.apache.batik.dom.GenericDOMImplementation.getDOMImplementation;
-import static org.apache.batik.util.SVGConstants.SVG_HEIGHT_ATTRIBUTE;
-import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
-import static org.apache.batik.util.SVGConstants.SVG_SVG_TAG;
-import static org.apache.batik.util.SVGConstants.SVG_VIEW_BOX_ATTRIBUTE;
-import static org.apache.batik.util.SVGConstants.SVG_WIDTH_ATTRIBUTE;
 
 public class Generator {
-    private static final Stroke STROKE_CUT = new BasicStroke(0.01f);
+    private static final Logger LOGGER = Logger.getLogger(Generator.class.getName());
+    static final BasicStroke STROKE_CUT = new BasicStroke(0.01f);
     private static final Color COLOR_CUT = BLUE;
     private static final Color COLOR_BACKGROUND = BLACK;
     private static final Color COLOR_GLYPHS = WHITE;
-
-    private String fontName;
-    private float fontSize;
-    private String[] text;
-    private double width;
-    private double height;
-    private double borderX;
-    private double borderY;
-    private double lightShadeExtra;
-    private double frameWidth;
-    private double screwDiameter;
-    private double connectorDiameter;
-    private double wireDiameter;
-    private double nutSize;
-    private double depth;
-    private double connectorDistance;
-    private double anodesConnectorOffsetX;
-    private double anodesConnectorOffsetY;
-    private double cathodesConnectorOffsetX;
-    private double cathodesConnectorOffsetY;
-    private double pcbScrew1X;
-    private double pcbScrew1Y;
-    private double pcbScrew2X;
-    private double pcbScrew2Y;
-    private double pcbScrew3X;
-    private double pcbScrew3Y;
-    private double ledPinWidth;
-    private double ledPinHeight;
-    private double ledPinDistanceX;
-    private double ledPinDistanceY;
+    private static final Color COLOR_MARK = RED;
+    private static final double MARK_SIZE = 5.0;
+    private static final double MARK_WIDTH = 0.2;
+    private static final double FLATNESS = 0.01;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final int MAXIMUM_LOGGED_COLLISIONS = 10;
+    private static final double MAXIMUM_PREVIEW_DPI = 1200.0;
+    private static final double MINIMUM_TILE_SIZE = 10.0;
+    private static final int MAXIMUM_TILES = 100;
+    private static final double MINIMUM_DEDUPLICATION_TOLERANCE = 1e-6;
+    private static final double MAXIMUM_DEDUPLICATION_TOLERANCE = 1.0;
+    private static final int MAXIMUM_LASER_PASSES = 100;
+    // part of the output cache keys, must be incremented whenever the drawing code changes the output
+    private static final int OUTPUT_FORMAT_VERSION = 4;
+
+    private ClockSpec.Builder spec = ClockSpec.builder();
     private String outputFileNameFront;
     private String outputFileNameLightShades;
     private String outputFileNameLightShadeRaster;
     private String outputFileNameDistanceRaster1;
     private String outputFileNameDistanceRaster2;
     private String outputFileNameLedCarrier;
-    private boolean fill;
-
-    private int rows;
-    private int columns;
-    private double maxCharacterHeight;
-    private double firstColumnWidth;
-    private double lastColumnWidth;
-    private double factorX;
-    private double factorY;
-    private double innerWidth;
-    private double innerHeight;
-    private double size;
+    private String outputFileNameLedMaskHeader;
+    private String outputFileNameLedMaskTable;
+    private Language language;
+    private boolean streaming;
+    private boolean symbols;
+    private int precision = -1;
+    private boolean optimizeTravel;
+    private double deduplicationTolerance;
+    private ExecutorService executor;
+    private GlyphCache glyphCache;
+    private double laserFeed = 600.0;
+    private int laserPower = 1000;
+    private int laserPasses = 1;
+    private long maximumFileSize = Long.MAX_VALUE;
+    private double previewDpi = 48.0;
+    private double chordTolerance;
+    private OutputSink outputSink = new DirectorySink(Paths.get(""));
+    private OutputCache outputCache;
+    private String metricsReport;
+    private double minimumCutDistance = -1.0;
+    private boolean failOnCollisions;
+    private double tileWidth;
+    private double tileHeight;
+
 
     public void setFontName(String fontName) {
-        this.fontName = fontName;
+        spec.setFontName(fontName);
+    }
+
+    /**
+     * Reads the glyphs from a TrueType or OpenType font file instead of the installed font named by
+     * {@link #setFontName(String)}. The font does not have to be installed and AWT is not needed to read it.
+     */
+    public void setFontFile(String fontFile) {
+        spec.setFontFile(fontFile);
     }
 
     public void setFontSize(float fontSize) {
-        this.fontSize = fontSize;
+        spec.setFontSize(fontSize);
     }
 
     public void setText(String[] text) {
-        this.text = text;
+        spec.setText(text);
     }
 
     public void setWidth(double width) {
-        this.width = width;
+        spec.setWidth(width);
     }
 
     public void setHeight(double height) {
-        this.height = height;
+        spec.setHeight(height);
     }
 
     public void setBorderX(double borderX) {
-        this.borderX = borderX;
+        spec.setBorderX(borderX);
     }
 
     public void setBorderY(double borderY) {
-        this.borderY = borderY;
+        spec.setBorderY(borderY);
     }
 
     public void setScrewDiameter(double screwDiameter) {
-        this.screwDiameter = screwDiameter;
+        spec.setScrewDiameter(screwDiameter);
     }
 
     public void setConnectorDiameter(double connectorDiameter) {
-        this.connectorDiameter = connectorDiameter;
+        spec.setConnectorDiameter(connectorDiameter);
     }
 
     public void setWireDiameter(double wireDiameter) {
-        this.wireDiameter = wireDiameter;
+        spec.setWireDiameter(wireDiameter);
     }
 
     public void setNutSize(double nutSize) {
-        this.nutSize = nutSize;
+        spec.setNutSize(nutSize);
     }
 
     public void setDepth(double depth) {
-        this.depth = depth;
+        spec.setDepth(depth);
     }
 
     public void setConnectorDistance(double connectorDistance) {
-        this.connectorDistance = connectorDistance;
+        spec.setConnectorDistance(connectorDistance);
     }
 
     public void setAnodesConnectorOffsetX(double anodesConnectorOffsetX) {
-        this.anodesConnectorOffsetX = anodesConnectorOffsetX;
+        spec.setAnodesConnectorOffsetX(anodesConnectorOffsetX);
     }
 
     public void setAnodesConnectorOffsetY(double anodesConnectorOffsetY) {
-        this.anodesConnectorOffsetY = anodesConnectorOffsetY;
+        spec.setAnodesConnectorOffsetY(anodesConnectorOffsetY);
     }
 
     public void setCathodesConnectorOffsetX(double cathodesConnectorOffsetX) {
-        this.cathodesConnectorOffsetX = cathodesConnectorOffsetX;
+        spec.setCathodesConnectorOffsetX(cathodesConnectorOffsetX);
     }
 
     public void setCathodesConnectorOffsetY(double cathodesConnectorOffsetY) {
-        this.cathodesConnectorOffsetY = cathodesConnectorOffsetY;
+        spec.setCathodesConnectorOffsetY(cathodesConnectorOffsetY);
     }
 
     public void setPcbScrew1X(double pcbScrew1X) {
-        this.pcbScrew1X = pcbScrew1X;
+        spec.setPcbScrew1X(pcbScrew1X);
     }
 
     public void setPcbScrew1Y(double pcbScrew1Y) {
-        this.pcbScrew1Y = pcbScrew1Y;
+        spec.setPcbScrew1Y(pcbScrew1Y);
     }
 
     public void setPcbScrew2X(double pcbScrew2X) {
-        this.pcbScrew2X = pcbScrew2X;
+        spec.setPcbScrew2X(pcbScrew2X);
     }
 
     public void setPcbScrew2Y(double pcbScrew2Y) {
-        this.pcbScrew2Y = pcbScrew2Y;
+        spec.setPcbScrew2Y(pcbScrew2Y);
     }
 
     public void setPcbScrew3X(double pcbScrew3X) {
-        this.pcbScrew3X = pcbScrew3X;
+        spec.setPcbScrew3X(pcbScrew3X);
     }
 
     public void setPcbScrew3Y(double pcbScrew3Y) {
-        this.pcbScrew3Y = pcbScrew3Y;
+        spec.setPcbScrew3Y(pcbScrew3Y);
     }
 
     public void setLedPinWidth(double ledPinWidth) {
-        this.ledPinWidth = ledPinWidth;
+        spec.setLedPinWidth(ledPinWidth);
     }
 
     public void setLedPinHeight(double ledPinHeight) {
-        this.ledPinHeight = ledPinHeight;
+        spec.setLedPinHeight(ledPinHeight);
     }
 
     public void setLedPinDistanceX(double ledPinDistanceX) {
-        this.ledPinDistanceX = ledPinDistanceX;
+        spec.setLedPinDistanceX(ledPinDistanceX);
     }
 
     public void setLedPinDistanceY(double ledPinDistanceY) {
-        this.ledPinDistanceY = ledPinDistanceY;
+        spec.setLedPinDistanceY(ledPinDistanceY);
     }
 
     public void setOutputFileNameFront(String outputFileNameFront) {
@@ -246,340 +261,1070 @@ public class Generator {
         this.outputFileNameLedCarrier = outputFileNameLedCarrier;
     }
 
+    /**
+     * Sets the C header for the firmware, which contains the LEDs to light at each time as one bit mask per row. The
+     * header is only written if a {@link #setLanguage(Language) language} is set.
+     */
+    public void setOutputFileNameLedMaskHeader(String outputFileNameLedMaskHeader) {
+        this.outputFileNameLedMaskHeader = outputFileNameLedMaskHeader;
+    }
+
+    /**
+     * Sets the binary file with the same bit masks as the {@link #setOutputFileNameLedMaskHeader(String) C header}.
+     */
+    public void setOutputFileNameLedMaskTable(String outputFileNameLedMaskTable) {
+        this.outputFileNameLedMaskTable = outputFileNameLedMaskTable;
+    }
+
+    /**
+     * Sets the language of the text, which defines the words to light at each time.
+     */
+    public void setLanguage(Language language) {
+        this.language = language;
+    }
+
     public void setLightShadeExtra(double lightShadeExtra) {
-        this.lightShadeExtra = lightShadeExtra;
+        spec.setLightShadeExtra(lightShadeExtra);
     }
 
     public void setFrameWidth(double frameWidth) {
-        this.frameWidth = frameWidth;
+        spec.setFrameWidth(frameWidth);
     }
 
     public void setFill(boolean fill) {
-        this.fill = fill;
+        spec.setFill(fill);
+    }
+
+    /**
+     * Writes the SVG files directly while the panels are drawn instead of building a Batik DOM first.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Defines shapes which are placed several times only once and references them for each placement. This is only
+     * supported by the streaming writer and reduces the file size considerably, but not all laser software supports
+     * it.
+     */
+    public void setSymbols(boolean symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Rounds all numbers in SVG files to the given number of decimal digits, e.g. 3 for a precision of 0.001 mm. The
+     * streaming writer then also writes path data with relative commands and without redundant separators, which makes
+     * panels with many glyphs considerably smaller. A negative precision, the default, writes numbers exactly. Batik
+     * writes at least one digit, so without {@link #setStreaming(boolean) streaming} a precision of zero rounds to
+     * 0.1 mm instead of whole millimetres.
+     */
+    public void setPrecision(int precision) {
+        if (precision > Numbers.MAXIMUM_DIGITS) {
+            throw new IllegalArgumentException("precision must not exceed " + Numbers.MAXIMUM_DIGITS + " digits");
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * Reorders the cuts of each panel to reduce the travel of the laser head. Inner contours are always cut before
+     * the contours enclosing them.
+     */
+    public void setOptimizeTravel(boolean optimizeTravel) {
+        this.optimizeTravel = optimizeTravel;
+    }
+
+    /**
+     * Removes coinciding cuts, e.g. shared edges of neighbouring hexagons, and joins the remaining straight cuts into
+     * polylines. End points closer than the tolerance are treated as equal. A tolerance of zero, the default, disables
+     * the deduplication. Other tolerances must be between 0.000001 mm and 1 mm, as points are snapped to a grid of
+     * that size.
+     */
+    public void setDeduplicationTolerance(double deduplicationTolerance) {
+        if (deduplicationTolerance != 0.0 && !(deduplicationTolerance >= MINIMUM_DEDUPLICATION_TOLERANCE &&
+                deduplicationTolerance <= MAXIMUM_DEDUPLICATION_TOLERANCE)) {
+            throw new IllegalArgumentException("deduplicationTolerance must be zero or between " +
+                    MINIMUM_DEDUPLICATION_TOLERANCE + " and " + MAXIMUM_DEDUPLICATION_TOLERANCE + " mm: " +
+                    deduplicationTolerance);
+        }
+        this.deduplicationTolerance = deduplicationTolerance;
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the cache for glyph outlines. By default, the {@link GlyphCache#getSharedInstance() shared cache} is used.
+     */
+    public void setGlyphCache(GlyphCache glyphCache) {
+        this.glyphCache = glyphCache;
+    }
+
+    /**
+     * Sets the feed rate in mm/min for G-code output. The default is 600 mm/min.
+     */
+    public void setLaserFeed(double laserFeed) {
+        if (!(laserFeed > 0.0) || laserFeed == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("laserFeed must be positive and finite: " + laserFeed);
+        }
+        this.laserFeed = laserFeed;
+    }
+
+    /**
+     * Sets the laser power as spindle speed for G-code output. The default is 1000, which is full power with the
+     * default GRBL settings.
+     */
+    public void setLaserPower(int laserPower) {
+        if (laserPower < 0) {
+            throw new IllegalArgumentException("laserPower must not be negative: " + laserPower);
+        }
+        this.laserPower = laserPower;
+    }
+
+    /**
+     * Sets how many times each contour is cut in G-code output, at most 100 times. The default is one pass.
+     */
+    public void setLaserPasses(int laserPasses) {
+        if (laserPasses < 1 || laserPasses > MAXIMUM_LASER_PASSES) {
+            throw new IllegalArgumentException("laserPasses must be between 1 and " + MAXIMUM_LASER_PASSES + ": " +
+                    laserPasses);
+        }
+        this.laserPasses = laserPasses;
+    }
+
+    /**
+     * Fails generation with an {@link IllegalArgumentException} as soon as a design file would exceed the given number
+     * of bytes, e.g. to bound the memory of a server which buffers the files. By default, files are not limited.
+     */
+    public void setMaximumFileSize(long maximumFileSize) {
+        if (maximumFileSize < 0) {
+            throw new IllegalArgumentException("maximumFileSize must not be negative");
+        }
+        this.maximumFileSize = maximumFileSize;
+    }
+
+    /**
+     * Sets the resolution of PNG previews in dots per inch, at most 1200 dpi. The default of 48 dpi gives thumbnails of
+     * a few hundred pixels. Previews of more than 16 million pixels are rejected before any file is written.
+     */
+    public void setPreviewDpi(double previewDpi) {
+        if (!(previewDpi > 0.0) || previewDpi > MAXIMUM_PREVIEW_DPI) {
+            throw new IllegalArgumentException("previewDpi must be positive and at most " + MAXIMUM_PREVIEW_DPI + ": " +
+                    previewDpi);
+        }
+        this.previewDpi = previewDpi;
+    }
+
+    /**
+     * Replaces the curves of the glyph outlines by straight segments and drops the corners which are not needed to keep
+     * within the given tolerance in mm, so that the front has fewer nodes to cut. Each distinct glyph is simplified
+     * once. Zero, the default, keeps the outlines as they are.
+     */
+    public void setChordTolerance(double chordTolerance) {
+        if (chordTolerance < 0.0) {
+            throw new IllegalArgumentException("chordTolerance must not be negative");
+        }
+        this.chordTolerance = chordTolerance;
+    }
+
+    /**
+     * Sets the sink which receives the design files. By default, the files are written relative to the working
+     * directory.
+     */
+    public void setOutputSink(OutputSink outputSink) {
+        this.outputSink = outputSink;
+    }
+
+    /**
+     * Sets the cache for design files. If set, a panel is only drawn if it is not cached for its current inputs. By
+     * default, no cache is used.
+     */
+    public void setOutputCache(OutputCache outputCache) {
+        this.outputCache = outputCache;
+    }
+
+    /**
+     * Writes a JSON report to the given file after each run. The report lists the wall time, allocated bytes, shape and
+     * path segment counts and output size of each phase and panel. The same data is recorded as flight recorder events.
+     */
+    public void setMetricsReport(String metricsReport) {
+        this.metricsReport = metricsReport;
+    }
+
+    /**
+     * Checks the cuts of each panel before it is written for cuts which intersect and for contours which are closer
+     * than the given distance without touching, e.g. walls which are thinner than the kerf of the laser. A distance of
+     * zero only checks for intersections. A negative distance, the default, disables the check.
+     */
+    public void setMinimumCutDistance(double minimumCutDistance) {
+        this.minimumCutDistance = minimumCutDistance;
+    }
+
+    /**
+     * Fails generation with a {@link CollisionException} if the check enabled by {@link #setMinimumCutDistance(double)}
+     * finds any collision, before any file is written. Otherwise collisions are only logged.
+     */
+    public void setFailOnCollisions(boolean failOnCollisions) {
+        this.failOnCollisions = failOnCollisions;
+    }
+
+    /**
+     * Splits each panel into tiles of the given size, e.g. the size of the laser bed, for panels which are too large to
+     * be cut in one piece. Each tile is written to a file of its own, named after the output file name of the panel
+     * followed by the row and column of the tile, e.g. {@code front-0-1.svg}. Registration marks are drawn at the
+     * corners of each tile to align the tiles. Tiles are generated in parallel if an executor is set. A size of zero,
+     * the default, disables tiling. Tiles must be at least 10 mm in each direction, and a panel which would be split
+     * into more than 100 tiles is rejected before any file is written.
+     */
+    public void setTileSize(double tileWidth, double tileHeight) {
+        if ((tileWidth != 0.0 || tileHeight != 0.0) && !(tileWidth >= MINIMUM_TILE_SIZE &&
+                tileHeight >= MINIMUM_TILE_SIZE && tileWidth < Double.POSITIVE_INFINITY &&
+                tileHeight < Double.POSITIVE_INFINITY)) {
+            throw new IllegalArgumentException("tile size must be zero or at least " + MINIMUM_TILE_SIZE + " mm: " +
+                    tileWidth + "x" + tileHeight);
+        }
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    /**
+     * Returns whether the panels are split into tiles, so that each panel is written to several files.
+     */
+    boolean isTiled() {
+        return tileWidth > 0.0 && tileHeight > 0.0;
     }
 
     public void generate() throws IOException {
-        Font font = Font.decode(fontName).deriveFont(fontSize);
-
-        SVGGraphics2D svgGraphics2D = createSVGGraphics2D();
-        Map<Character, Path2D> glyphOutlines = getGlyphOutlines(font, svgGraphics2D.getFontRenderContext());
-        computeDerivedValues(glyphOutlines);
-        drawFront(svgGraphics2D, glyphOutlines);
-        writeToFile(svgGraphics2D, outputFileNameFront);
-
-        svgGraphics2D = createSVGGraphics2D();
-        drawLightShade(svgGraphics2D);
-        writeToFile(svgGraphics2D, outputFileNameLightShades);
-
-        svgGraphics2D = createSVGGraphics2D();
-        drawLightShadeRaster(svgGraphics2D);
-        writeToFile(svgGraphics2D, outputFileNameLightShadeRaster);
-
-        svgGraphics2D = createSVGGraphics2D();
-        drawDistanceRaster1(svgGraphics2D);
-        writeToFile(svgGraphics2D, outputFileNameDistanceRaster1);
-
-        svgGraphics2D = createSVGGraphics2D();
-        drawDistanceRaster2(svgGraphics2D);
-        writeToFile(svgGraphics2D, outputFileNameDistanceRaster2);
-
-        svgGraphics2D = createSVGGraphics2D();
-        drawLedCarrier(svgGraphics2D);
-        writeToFile(svgGraphics2D, outputFileNameLedCarrier);
-    }
-
-    private void computeDerivedValues(Map<Character, Path2D> glyphOutlines) {
-        maxCharacterHeight = computeMaxGlyphHeight(glyphOutlines);
-        firstColumnWidth = computeFirstColumnWidth(glyphOutlines);
-        lastColumnWidth = computeLastColumnWidth(glyphOutlines);
-        factorX = (width - 2.0 * borderX - firstColumnWidth / 2.0 - lastColumnWidth / 2.0) / (text[0].length() - 1.0);
-        factorY = maxCharacterHeight + (height - 2.0 * borderY - text.length * maxCharacterHeight) / (text.length - 1.0);
-        innerWidth = width - 2.0 * frameWidth;
-        innerHeight = height - 2.0 * frameWidth;
-        size = max(maxCharacterHeight, computeMaxGlyphWidth(glyphOutlines)) + lightShadeExtra;
-        rows = text.length;
-        columns = text[0].length();
-    }
-
-    private SVGGraphics2D createSVGGraphics2D() {
-        Document document = getDOMImplementation().createDocument(SVG_NAMESPACE_URI, SVG_SVG_TAG, null);
-        SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(document);
-        ctx.setComment(null);
-        SVGGraphics2D svgGraphics2D = new SVGGraphics2D(ctx, true);
-        svgGraphics2D.setStroke(STROKE_CUT);
-        return svgGraphics2D;
-    }
-
-    private Map<Character, Path2D> getGlyphOutlines(Font font, FontRenderContext fontRenderContext) {
-        Set<Character> letters = new HashSet<>();
-        for (String line : text) {
-            for (int j = 0; j < line.length(); j += 1) {
-                letters.add(line.charAt(j));
+        generate(EnumSet.allOf(Panel.class));
+    }
+
+    public void generate(Set<Panel> panels) throws IOException {
+        Metrics metrics = new Metrics();
+        ClockSpec clockSpec = spec.build();
+        Layout layout = createLayout(clockSpec, metrics);
+        if (minimumCutDistance >= 0.0) {
+            checkCollisions(panels, layout, metrics);
+        }
+
+        List<Panel> filePanels = new ArrayList<>();
+        List<Tile> fileTiles = new ArrayList<>();
+        for (Panel panel : panels) {
+            if (isTiled()) {
+                for (Tile tile : getTiles(panel, layout)) {
+                    filePanels.add(panel);
+                    fileTiles.add(tile);
+                }
+            } else {
+                filePanels.add(panel);
+                fileTiles.add(null);
             }
         }
+        for (int i = 0; i < filePanels.size(); i += 1) {
+            if (getExtension(getOutputFileName(filePanels.get(i))).equals("png")) {
+                Rectangle2D size = getOutputSize(fileTiles.get(i), clockSpec);
+                PngRenderer.checkSize(size.getWidth(), size.getHeight(), previewDpi);
+            }
+        }
+        List<Boolean> cached = new ArrayList<>();
+        if (executor == null) {
+            for (int i = 0; i < filePanels.size(); i += 1) {
+                cached.add(generatePanel(filePanels.get(i), fileTiles.get(i), layout, metrics));
+            }
+        } else {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 0; i < filePanels.size(); i += 1) {
+                Panel panel = filePanels.get(i);
+                Tile tile = fileTiles.get(i);
+                tasks.add(() -> generatePanel(panel, tile, layout, metrics));
+            }
+            cached = awaitAll(executor, tasks);
+        }
+        if (language != null && (outputFileNameLedMaskHeader != null || outputFileNameLedMaskTable != null)) {
+            writeLedMasks(clockSpec, metrics);
+        }
+        metrics.end();
+        if (outputCache != null) {
+            LOGGER.info(format("%d of %d files served from output cache", frequency(cached, true), cached.size()));
+        }
+        if (metricsReport != null) {
+            Files.write(Paths.get(metricsReport), metrics.toJson().getBytes(UTF_8));
+        }
+    }
+
+    /**
+     * Checks the cuts of all panels for collisions, see {@link CutValidator}.
+     */
+    private void checkCollisions(Set<Panel> panels, Layout layout, Metrics metrics) throws IOException {
+        List<List<CutValidator.Violation>> violations = new ArrayList<>();
+        if (executor == null) {
+            for (Panel panel : panels) {
+                violations.add(findCollisions(panel, layout, metrics));
+            }
+        } else {
+            List<Callable<List<CutValidator.Violation>>> tasks = new ArrayList<>();
+            for (Panel panel : panels) {
+                tasks.add(() -> findCollisions(panel, layout, metrics));
+            }
+            violations = awaitAll(executor, tasks);
+        }
 
-        Map<Character, Path2D> result = new HashMap<>();
-        for (char c : letters) {
-            GlyphVector glyphVector = font.createGlyphVector(fontRenderContext, new char[]{c});
-            Path2D glyphOutline = (Path2D) glyphVector.getGlyphOutline(0);
-            glyphOutline.transform(getTranslateInstance(-glyphOutline.getBounds2D().getX(), 0.0));
-            result.put(c, glyphOutline);
+        StringBuilder message = new StringBuilder();
+        int index = 0;
+        for (Panel panel : panels) {
+            List<CutValidator.Violation> panelViolations = violations.get(index);
+            index += 1;
+            if (panelViolations.isEmpty()) {
+                continue;
+            }
+            String summary = format(ENGLISH, "%s: %d collisions, %s", panel, panelViolations.size(),
+                    panelViolations.get(0));
+            message.append(message.length() == 0 ? "" : "; ").append(summary);
+            for (int i = 0; i < min(panelViolations.size(), MAXIMUM_LOGGED_COLLISIONS); i += 1) {
+                LOGGER.warning(format("%s: %s", panel, panelViolations.get(i)));
+            }
+        }
+        if (failOnCollisions && message.length() > 0) {
+            throw new CollisionException(message.toString());
         }
+    }
+
+    private List<CutValidator.Violation> findCollisions(Panel panel, Layout layout, Metrics metrics)
+            throws IOException {
+        Metrics.Phase phase = metrics.start("validate", panel);
+        CutValidator validator = new CutValidator(minimumCutDistance, FLATNESS);
+        drawPanel(panel, validator, layout);
+        List<CutValidator.Violation> result = validator.validate();
+        phase.addSegments(validator.getSegments());
+        phase.end();
         return result;
     }
 
-    private void drawFront(Graphics2D graphics2D, Map<Character, Path2D> glyphOutlines) {
-        double offsetX = borderX + firstColumnWidth / 2.0;
-        double offsetY = borderY + maxCharacterHeight;
+    /**
+     * Writes the LEDs to light at each time. The table is small and fast to compute, so it is not cached.
+     */
+    private void writeLedMasks(ClockSpec clockSpec, Metrics metrics) throws IOException {
+        Metrics.Phase phase = metrics.start("masks", null);
+        LedMasks ledMasks = new LedMasks(language, clockSpec);
+        if (outputFileNameLedMaskHeader != null) {
+            try (CountingOutputStream out = new CountingOutputStream(outputSink.open(outputFileNameLedMaskHeader))) {
+                ledMasks.writeHeader(openWriter(out));
+                phase.addOutputBytes(out.getCount());
+            }
+        }
+        if (outputFileNameLedMaskTable != null) {
+            try (CountingOutputStream out = new CountingOutputStream(outputSink.open(outputFileNameLedMaskTable))) {
+                ledMasks.writeTable(out);
+                phase.addOutputBytes(out.getCount());
+            }
+        }
+        phase.end();
+    }
 
-        if (fill) {
-            graphics2D.setColor(COLOR_BACKGROUND);
-            graphics2D.fill(new Rectangle2D.Double(0.0, 0.0, width, height));
-        } else {
-            graphics2D.setColor(COLOR_CUT);
-            graphics2D.draw(new Rectangle2D.Double(0.0, 0.0, width, height));
+    /**
+     * Loads the glyphs, simplifies them if a chord tolerance is set and computes the layout.
+     */
+    private Layout createLayout(ClockSpec clockSpec, Metrics metrics) throws IOException {
+        Metrics.Phase phase = metrics.start("glyphs", null);
+        Map<Character, Glyph> glyphs = getGlyphs(clockSpec);
+        phase.end();
+        if (chordTolerance > 0.0) {
+            phase = metrics.start("simplify", null);
+            glyphs = simplifyGlyphs(glyphs);
+            phase.end();
+        }
+        phase = metrics.start("layout", null);
+        Layout layout = new Layout(clockSpec, glyphs);
+        phase.end();
+        return layout;
+    }
+
+    /**
+     * Draws all panels into recordings instead of writing them, e.g. to place them on sheets of stock material.
+     */
+    Map<Panel, RecordingRenderer> record() throws IOException {
+        Layout layout = createLayout(spec.build(), new Metrics());
+        Map<Panel, RecordingRenderer> result = new EnumMap<>(Panel.class);
+        for (Panel panel : Panel.values()) {
+            RecordingRenderer renderer = new RecordingRenderer();
+            drawPanel(panel, renderer, layout);
+            result.put(panel, renderer);
+        }
+        return result;
+    }
+
+    /**
+     * Generates the panel, or one tile of it if a tile is given. Returns whether the file has been served from the
+     * output cache.
+     */
+    boolean generatePanel(Panel panel, Tile tile, Layout layout, Metrics metrics) throws IOException {
+        String outputFileName = getOutputFileName(panel);
+        String extension = getExtension(outputFileName);
+        if (tile != null) {
+            int dot = getExtensionIndex(outputFileName);
+            outputFileName = outputFileName.substring(0, dot) + "-" + tile.row + "-" + tile.column +
+                    outputFileName.substring(dot);
+        }
+        if (outputCache == null) {
+            OutputStream file = outputSink.open(outputFileName);
+            CountingOutputStream out = new CountingOutputStream(file, maximumFileSize);
+            try {
+                renderPanel(panel, tile, layout, createRenderer(extension, out, tile, layout.getSpec()), out, metrics);
+            } catch (IOException | RuntimeException e) {
+                // closing the file would complete it, e.g. send it as response
+                try {
+                    outputSink.discard(outputFileName, file);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            return false;
+        }
+
+        List<Object> inputs = getInputs(panel, extension, layout);
+        if (tile != null) {
+            inputs.addAll(asList(tile.row, tile.column, tile.bounds));
         }
+        String key = OutputCache.computeKey(inputs.toArray());
+        byte[] content = outputCache.get(key);
+        boolean cached = content != null;
+        if (!cached) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            CountingOutputStream out = new CountingOutputStream(buffer, maximumFileSize);
+            renderPanel(panel, tile, layout, createRenderer(extension, out, tile, layout.getSpec()), out, metrics);
+            content = buffer.toByteArray();
+            outputCache.put(key, content);
+        }
+        Metrics.Phase phase = metrics.start("output", panel);
+        try (OutputStream out = outputSink.open(outputFileName)) {
+            out.write(content);
+        }
+        phase.addOutputBytes(content.length);
+        phase.end();
+        return cached;
+    }
 
+    /**
+     * Divides the bounds of the panel into tiles.
+     */
+    private List<Tile> getTiles(Panel panel, Layout layout) {
+        Rectangle2D bounds = getPanelBounds(panel, layout);
+        List<Tile> result = new ArrayList<>();
+        int rows = max(1, (int) ceil(bounds.getHeight() / tileHeight));
+        int columns = max(1, (int) ceil(bounds.getWidth() / tileWidth));
+        if ((long) rows * columns > MAXIMUM_TILES) {
+            throw new IllegalArgumentException(format("%s would be split into %d x %d tiles, at most %d are allowed",
+                    panel, rows, columns, MAXIMUM_TILES));
+        }
         for (int i = 0; i < rows; i += 1) {
-            double ty = i * factorY + offsetY;
             for (int j = 0; j < columns; j += 1) {
-                Path2D glyphOutline = glyphOutlines.get(text[i].charAt(j));
-                Rectangle2D bounds = glyphOutline.getBounds2D();
-                double tx = j * factorX + offsetX - bounds.getWidth() / 2.0;
-                Path2D transformedShape = (Path2D) glyphOutline.createTransformedShape(getTranslateInstance(tx, ty));
+                result.add(new Tile(i, j, new Rectangle2D.Double(bounds.getX() + j * tileWidth,
+                        bounds.getY() + i * tileHeight, tileWidth, tileHeight)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bounds of the panel, computed from the layout: the outer size of the clock for the front panel, the
+     * hexagons for the light shades and the size within the frame for the inner panels, plus the sides of the light
+     * shade raster.
+     */
+    private static Rectangle2D getPanelBounds(Panel panel, Layout layout) {
+        ClockSpec spec = layout.getSpec();
+        double innerWidth = layout.getInnerWidth();
+        double innerHeight = layout.getInnerHeight();
+        switch (panel) {
+            case FRONT:
+                return new Rectangle2D.Double(0.0, 0.0, spec.getWidth(), spec.getHeight());
+            case LIGHT_SHADES:
+                // see drawLightShade, the odd columns are shifted down by half a hexagon
+                double size = layout.getSize();
+                double radius = size / sqrt(3.0);
+                double rows = layout.getColumns() > 1 ? layout.getRows() - 0.5 : layout.getRows() - 1.0;
+                return new Rectangle2D.Double(-radius, -size / 2.0,
+                        (layout.getColumns() - 1) * size * sin(toRadians(60)) + 2.0 * radius, rows * size + size);
+            case LIGHT_SHADE_RASTER:
+                return new Rectangle2D.Double(0.0, 0.0, innerWidth + 2.0 * spec.getDepth(),
+                        innerHeight + 2.0 * max(spec.getDepth(), spec.getFrameWidth()));
+            default:
+                return new Rectangle2D.Double(0.0, 0.0, innerWidth, innerHeight);
+        }
+    }
+
+    /**
+     * Draws the panel and closes the renderer, which writes the output. Drawing and writing are measured as separate
+     * phases, as some renderers only write when they are closed. The renderer is not closed if drawing fails, so that
+     * an incomplete panel is never finished as if it was complete.
+     */
+    private void renderPanel(Panel panel, Tile tile, Layout layout, Renderer renderer,
+                             CountingOutputStream out, Metrics metrics) throws IOException {
+        TravelOptimizer travelOptimizer = null;
+        if (optimizeTravel) {
+            travelOptimizer = new TravelOptimizer(renderer);
+            renderer = travelOptimizer;
+        }
+        EdgeDeduplicator edgeDeduplicator = null;
+        if (deduplicationTolerance > 0.0) {
+            edgeDeduplicator = new EdgeDeduplicator(renderer, deduplicationTolerance);
+            renderer = edgeDeduplicator;
+        }
+        if (tile != null) {
+            renderer = new ClippingRenderer(renderer, tile.bounds, FLATNESS);
+        }
+        CountingRenderer countingRenderer = new CountingRenderer(renderer);
+        Metrics.Phase phase = metrics.start("draw", panel);
+        drawPanel(panel, countingRenderer, layout, tile == null ? null : tile.bounds);
+        if (tile != null) {
+            drawRegistrationMarks(countingRenderer, tile.bounds);
+        }
+        phase.addShapes(countingRenderer.getShapes());
+        phase.addSegments(countingRenderer.getSegments());
+        phase.end();
+        phase = metrics.start("write", panel);
+        countingRenderer.close();
+        phase.addOutputBytes(out.getCount());
+        phase.end();
+        if (edgeDeduplicator != null && edgeDeduplicator.getSegmentsBefore() > 0) {
+            LOGGER.info(format(ENGLISH, "%s: merged %d straight segments into %d segments in %d polylines", panel,
+                    edgeDeduplicator.getSegmentsBefore(), edgeDeduplicator.getSegmentsAfter(),
+                    edgeDeduplicator.getPolylines()));
+        }
+        if (travelOptimizer != null && travelOptimizer.getTravelBefore() > 0.0) {
+            LOGGER.info(format(ENGLISH, "%s: travel distance reduced from %.1f mm to %.1f mm", panel,
+                    travelOptimizer.getTravelBefore(), travelOptimizer.getTravelAfter()));
+        }
+    }
+
+    private static void drawPanel(Panel panel, Renderer renderer, Layout layout) throws IOException {
+        drawPanel(panel, renderer, layout, null);
+    }
+
+    /**
+     * Draws the panel, skipping the cells which do not touch the given area, e.g. a tile. Everything else is drawn
+     * regardless of the area. A {@code null} area draws all cells.
+     */
+    private static void drawPanel(Panel panel, Renderer renderer, Layout layout, Rectangle2D area)
+            throws IOException {
+        switch (panel) {
+            case FRONT:
+                drawFront(renderer, layout, area);
+                break;
+            case LIGHT_SHADES:
+                drawLightShade(renderer, layout, area);
+                break;
+            case LIGHT_SHADE_RASTER:
+                drawLightShadeRaster(renderer, layout, area);
+                break;
+            case DISTANCE_RASTER_1:
+                drawDistanceRaster1(renderer, layout, area);
+                break;
+            case DISTANCE_RASTER_2:
+                drawDistanceRaster2(renderer, layout, area);
+                break;
+            case LED_CARRIER:
+                drawLedCarrier(renderer, layout, area);
+                break;
+        }
+    }
+
+    /**
+     * Returns whether a shape with the given bounds, placed at the given position, touches the area. This is the same
+     * test as {@link ClippingRenderer} does, so skipped shapes would have been dropped anyway.
+     */
+    private static boolean isVisible(Rectangle2D area, Rectangle2D bounds, double x, double y) {
+        return area == null || isVisibleX(area, bounds, x) && isVisibleY(area, bounds, y);
+    }
+
+    private static boolean isVisibleX(Rectangle2D area, Rectangle2D bounds, double x) {
+        return area == null || bounds.getMaxX() + x >= area.getMinX() && bounds.getMinX() + x <= area.getMaxX();
+    }
+
+    private static boolean isVisibleY(Rectangle2D area, Rectangle2D bounds, double y) {
+        return area == null || bounds.getMaxY() + y >= area.getMinY() && bounds.getMinY() + y <= area.getMaxY();
+    }
+
+    /**
+     * Selects the output format by the extension of the file name. Files ending with {@code .dxf} are written as DXF,
+     * files ending with {@code .gcode}, {@code .nc} or {@code .ngc} as G-code, files ending with {@code .png} as
+     * preview image, files ending with {@code .svgz} as gzip compressed SVG and all other files as SVG.
+     */
+    private Renderer createRenderer(String extension, OutputStream out, Tile tile, ClockSpec clockSpec)
+            throws IOException {
+        Rectangle2D size = getOutputSize(tile, clockSpec);
+        double width = size.getWidth();
+        double height = size.getHeight();
+        if (extension.equals("svgz")) {
+            out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        }
+        switch (extension) {
+            case "dxf":
+                return new DxfRenderer(openWriter(out), height, FLATNESS);
+            case "gcode":
+            case "nc":
+            case "ngc":
+                return new GcodeRenderer(openWriter(out), height, FLATNESS, laserFeed, laserPower, laserPasses);
+            case "png":
+                return new PngRenderer(out, width, height, previewDpi);
+            default:
+                if (streaming) {
+                    return new SvgRenderer(openWriter(out), width, height, STROKE_CUT.getLineWidth(), symbols,
+                            precision);
+                }
+                // Batik declares the encoding of an OutputStreamWriter, but not of a BufferedWriter
+                return new BatikRenderer(new OutputStreamWriter(out, UTF_8), width, height, STROKE_CUT, precision);
+        }
+    }
+
+    /**
+     * Returns the area of a file, which is the tile if one is given and the outer size of the clock otherwise.
+     */
+    private static Rectangle2D getOutputSize(Tile tile, ClockSpec clockSpec) {
+        return tile == null ? new Rectangle2D.Double(0.0, 0.0, clockSpec.getWidth(), clockSpec.getHeight()) :
+                tile.bounds;
+    }
+
+    private static Writer openWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+    }
+
+    /**
+     * Returns the lower case extension of the file name, or an empty string if it has none, which selects the output
+     * format, see {@link #createRenderer(String, OutputStream, Tile, ClockSpec)}.
+     */
+    private static String getExtension(String fileName) {
+        int dot = getExtensionIndex(fileName);
+        return dot == fileName.length() ? "" : fileName.substring(dot + 1).toLowerCase(ENGLISH);
+    }
+
+    /**
+     * Returns the index of the dot before the extension of the file name, or the length of the name if it has no
+     * extension. Dots in directory names do not count.
+     */
+    private static int getExtensionIndex(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > max(fileName.lastIndexOf('/'), fileName.lastIndexOf(File.separatorChar)) ? dot :
+                fileName.length();
+    }
+
+    /**
+     * Returns all values a panel depends on, including the output format and the layout. Panels are only drawn again if
+     * one of these values has changed, so each draw method must declare every value it reads here.
+     */
+    private List<Object> getInputs(Panel panel, String extension, Layout layout) throws IOException {
+        ClockSpec s = layout.getSpec();
+        List<Object> result = new ArrayList<>(asList(OUTPUT_FORMAT_VERSION, panel, extension, s.getWidth(),
+                s.getHeight(), streaming, symbols, precision, optimizeTravel, deduplicationTolerance));
+        if (extension.equals("png")) {
+            result.add(previewDpi);
+        } else if (!extension.equals("svg") && !extension.equals("dxf")) {
+            result.addAll(asList(laserFeed, laserPower, laserPasses));
+        }
+        switch (panel) {
+            case FRONT:
+                result.addAll(asList(s.isFill(), getFontId(s), s.getFontSize(), chordTolerance, s.getText(),
+                        s.getBorderX(), s.getBorderY(), layout.getFirstColumnWidth(), layout.getMaxCharacterHeight(),
+                        layout.getFactorX(), layout.getFactorY()));
+                break;
+            case LIGHT_SHADES:
+                result.addAll(asList(layout.getRows(), layout.getColumns(), layout.getSize()));
+                break;
+            case LIGHT_SHADE_RASTER:
+                addLedHoleInputs(result, layout);
+                result.addAll(asList(layout.getSize(), layout.getInnerWidth(), layout.getInnerHeight(), s.getDepth(),
+                        s.getFrameWidth()));
+                break;
+            case DISTANCE_RASTER_1:
+                addLedHoleInputs(result, layout);
+                addScrewHoleInputs(result, layout);
+                result.addAll(asList(layout.getSize(), s.getLightShadeExtra(), s.getConnectorDistance(),
+                        s.getLedPinDistanceX(), s.getLedPinDistanceY(), layout.getLastColumnWidth(), s.getNutSize(),
+                        s.getAnodesConnectorOffsetX(), s.getAnodesConnectorOffsetY(), s.getPcbScrew2X(),
+                        s.getPcbScrew2Y(), s.getCathodesConnectorOffsetY()));
+                break;
+            case DISTANCE_RASTER_2:
+                addLedHoleInputs(result, layout);
+                addPcbHoleInputs(result, layout);
+                result.addAll(asList(layout.getSize(), s.getNutSize()));
+                break;
+            case LED_CARRIER:
+                addScrewHoleInputs(result, layout);
+                addPcbHoleInputs(result, layout);
+                result.addAll(asList(layout.getLastColumnWidth(), layout.getRows(), layout.getColumns(),
+                        s.getLedPinWidth(), s.getLedPinHeight(), s.getLedPinDistanceX(), s.getLedPinDistanceY(),
+                        s.getAnodesConnectorOffsetX(), s.getAnodesConnectorOffsetY(), s.getCathodesConnectorOffsetX(),
+                        s.getCathodesConnectorOffsetY(), s.getConnectorDistance(), s.getConnectorDiameter(),
+                        s.getWireDiameter()));
+                break;
+        }
+        return result;
+    }
+
+    private static void addLedHoleInputs(List<Object> inputs, Layout layout) {
+        ClockSpec s = layout.getSpec();
+        inputs.addAll(asList(s.getBorderX(), s.getBorderY(), layout.getFirstColumnWidth(),
+                layout.getMaxCharacterHeight(), s.getFrameWidth(), layout.getRows(), layout.getColumns(),
+                layout.getFactorX(), layout.getFactorY()));
+    }
+
+    private static void addScrewHoleInputs(List<Object> inputs, Layout layout) {
+        ClockSpec s = layout.getSpec();
+        inputs.addAll(asList(s.getBorderX(), s.getBorderY(), layout.getFirstColumnWidth(),
+                layout.getMaxCharacterHeight(), s.getFrameWidth(), layout.getFactorX(), layout.getFactorY(),
+                layout.getInnerWidth(), layout.getInnerHeight(), s.getScrewDiameter()));
+    }
+
+    private static void addPcbHoleInputs(List<Object> inputs, Layout layout) {
+        ClockSpec s = layout.getSpec();
+        inputs.addAll(asList(s.getPcbScrew1X(), s.getPcbScrew1Y(), s.getPcbScrew2X(), s.getPcbScrew2Y(),
+                s.getPcbScrew3X(), s.getPcbScrew3Y(), layout.getInnerHeight(), s.getScrewDiameter()));
+    }
+
+    private String getOutputFileName(Panel panel) {
+        switch (panel) {
+            case FRONT:
+                return outputFileNameFront;
+            case LIGHT_SHADES:
+                return outputFileNameLightShades;
+            case LIGHT_SHADE_RASTER:
+                return outputFileNameLightShadeRaster;
+            case DISTANCE_RASTER_1:
+                return outputFileNameDistanceRaster1;
+            case DISTANCE_RASTER_2:
+                return outputFileNameDistanceRaster2;
+            default:
+                return outputFileNameLedCarrier;
+        }
+    }
+
+    /**
+     * Replaces all values of the clock specification. The setters for single values are a shortcut for changing the
+     * specification, which is validated when the generation starts.
+     */
+    public void setSpec(ClockSpec spec) {
+        this.spec = spec.toBuilder();
+    }
+
+    /**
+     * Returns a snapshot of the current clock specification.
+     *
+     * @throws IllegalArgumentException if the specification is invalid
+     */
+    public ClockSpec getSpec() {
+        return spec.build();
+    }
+
+    Map<Character, Glyph> getGlyphs(ClockSpec clockSpec) throws IOException {
+        GlyphCache cache = getGlyphCache();
+        FontFile font = clockSpec.getFontFile() == null ? null : cache.getFontFile(Paths.get(clockSpec.getFontFile()));
+        Map<Character, Glyph> result = new HashMap<>();
+        for (int i = 0; i < clockSpec.getRows(); i += 1) {
+            for (int j = 0; j < clockSpec.getColumns(); j += 1) {
+                char c = clockSpec.getCharacter(i, j);
+                if (!result.containsKey(c)) {
+                    result.put(c, font == null ? cache.getGlyph(clockSpec.getFontName(), clockSpec.getFontSize(), c) :
+                            cache.getGlyph(font, clockSpec.getFontSize(), c));
+                }
+            }
+        }
+        return result;
+    }
+
+    private GlyphCache getGlyphCache() {
+        return glyphCache == null ? GlyphCache.getSharedInstance() : glyphCache;
+    }
+
+    /**
+     * Returns the identifier of the installed font found for the name or of the current version of the font file.
+     */
+    private String getFontId(ClockSpec clockSpec) throws IOException {
+        return clockSpec.getFontFile() == null ? getGlyphCache().getFontId(clockSpec.getFontName()) :
+                getGlyphCache().getFontFile(Paths.get(clockSpec.getFontFile())).getId();
+    }
+
+    private Map<Character, Glyph> simplifyGlyphs(Map<Character, Glyph> glyphs) {
+        Map<Character, Glyph> result = new HashMap<>();
+        int before = 0;
+        int after = 0;
+        for (Map.Entry<Character, Glyph> entry : glyphs.entrySet()) {
+            Glyph glyph = PathSimplifier.simplify(entry.getValue(), chordTolerance);
+            before += PathSimplifier.countNodes(entry.getValue().getOutline());
+            after += PathSimplifier.countNodes(glyph.getOutline());
+            result.put(entry.getKey(), glyph);
+        }
+        LOGGER.info(format(ENGLISH, "simplified %d glyphs from %d to %d nodes with a tolerance of %s mm",
+                glyphs.size(), before, after, chordTolerance));
+        return result;
+    }
+
+    static void drawFront(Renderer renderer, Layout layout, Rectangle2D area) throws IOException {
+        ClockSpec spec = layout.getSpec();
+        boolean fill = spec.isFill();
+        if (fill) {
+            renderer.setColor(COLOR_BACKGROUND);
+            renderer.fill(new Rectangle2D.Double(0.0, 0.0, spec.getWidth(), spec.getHeight()));
+        } else {
+            renderer.setColor(COLOR_CUT);
+            renderer.draw(new Rectangle2D.Double(0.0, 0.0, spec.getWidth(), spec.getHeight()));
+        }
+
+        for (int i = 0; i < layout.getRows(); i += 1) {
+            double ty = layout.getGlyphY(i);
+            for (int j = 0; j < layout.getColumns(); j += 1) {
+                Glyph glyph = layout.getGlyph(i, j);
+                double tx = layout.getGlyphX(i, j);
+                if (!isVisible(area, glyph.getBounds(), tx, ty)) {
+                    continue;
+                }
+                String key = "glyph-" + spec.getCharacter(i, j);
                 if (fill) {
-                    graphics2D.setColor(COLOR_GLYPHS);
-                    graphics2D.fill(transformedShape);
+                    renderer.setColor(COLOR_GLYPHS);
+                    renderer.fill(key, glyph.getOutline(), tx, ty);
                 } else {
-                    graphics2D.setColor(COLOR_CUT);
-                    graphics2D.draw(transformedShape);
+                    renderer.setColor(COLOR_CUT);
+                    renderer.draw(key, glyph.getOutline(), tx, ty);
                 }
             }
         }
     }
 
-    private void drawLightShade(Graphics2D graphics2D) {
-        graphics2D.setColor(COLOR_CUT);
+    static void drawLightShade(Renderer renderer, Layout layout, Rectangle2D area) throws IOException {
+        renderer.setColor(COLOR_CUT);
+        double size = layout.getSize();
         double incircleRadius = size / 2.0;
-        for (int i = 0; i < columns; i += 1) {
+        int rows = layout.getRows();
+        // all parts of a hexagon lie within the whole hexagon
+        Rectangle2D bounds = createHexagon(incircleRadius).getBounds2D();
+        for (int i = 0; i < layout.getColumns(); i += 1) {
             double centerX = i * size * sin(toRadians(60));
+            if (!isVisibleX(area, bounds, centerX)) {
+                continue;
+            }
             for (int j = 0; j < rows; j += 1) {
+                if (!isVisibleY(area, bounds, (i % 2 == 0 ? j : j + 0.5) * size)) {
+                    continue;
+                }
                 if (i % 2 == 0) {
                     if (j == 0) {
-                        graphics2D.draw(createHexagon(centerX, j * size, incircleRadius));
+                        drawHexagon(renderer, centerX, j * size, incircleRadius);
                     } else {
-                        graphics2D.draw(createHexagonFraction(centerX, j * size, incircleRadius, new int[]{210, 270, 330, 30, 90, 150}));
+                        drawHexagonFraction(renderer, centerX, j * size, incircleRadius, new int[]{210, 270, 330, 30, 90, 150});
                     }
                 } else {
-                    graphics2D.draw(createHexagonFraction(centerX, (j + 0.5) * size, incircleRadius, new int[]{150, 210}));
-                    if (j == text.length - 1) {
-                        graphics2D.draw(createHexagonFraction(centerX, (j + 0.5) * size, incircleRadius, new int[]{270, 330, 30, 90}));
+                    drawHexagonFraction(renderer, centerX, (j + 0.5) * size, incircleRadius, new int[]{150, 210});
+                    if (j == rows - 1) {
+                        drawHexagonFraction(renderer, centerX, (j + 0.5) * size, incircleRadius, new int[]{270, 330, 30, 90});
                     }
                 }
             }
         }
     }
 
-    private void drawLightShadeRaster(Graphics2D graphics2D) {
-        graphics2D.setColor(COLOR_CUT);
-        graphics2D.draw(new Rectangle2D.Double(0.0, 0.0, innerWidth, innerHeight));
-        drawLedHoles(graphics2D, size);
-        graphics2D.draw(new Line2D.Double(0.0, innerHeight, 0.0, innerHeight + depth * 2.0));
-        graphics2D.draw(new Line2D.Double(0.0, innerHeight + depth * 2.0, innerWidth, innerHeight + depth * 2.0));
-        graphics2D.draw(new Line2D.Double(innerWidth, innerHeight + depth * 2.0, innerWidth, innerHeight));
-        graphics2D.draw(new Line2D.Double(0.0, innerHeight + depth, innerWidth, innerHeight + depth));
-        graphics2D.draw(new Line2D.Double(innerWidth, 0.0, innerWidth + 2.0 * depth, 0.0));
-        graphics2D.draw(new Line2D.Double(innerWidth + 2.0 * depth, 0.0, innerWidth + 2.0 * depth, innerHeight + 2.0 * frameWidth));
-        graphics2D.draw(new Line2D.Double(innerWidth + 2.0 * depth, innerHeight + 2.0 * frameWidth, innerWidth, innerHeight + 2.0 * frameWidth));
-        graphics2D.draw(new Line2D.Double(innerWidth + depth, 0.0, innerWidth + depth, innerHeight + 2.0 * frameWidth));
+    private static void drawLightShadeRaster(Renderer renderer, Layout layout, Rectangle2D area) throws IOException {
+        double innerWidth = layout.getInnerWidth();
+        double innerHeight = layout.getInnerHeight();
+        double depth = layout.getSpec().getDepth();
+        double frameWidth = layout.getSpec().getFrameWidth();
+
+        renderer.setColor(COLOR_CUT);
+        renderer.draw(new Rectangle2D.Double(0.0, 0.0, innerWidth, innerHeight));
+        drawLedHoles(renderer, layout, layout.getSize(), area);
+        renderer.draw(new Line2D.Double(0.0, innerHeight, 0.0, innerHeight + depth * 2.0));
+        renderer.draw(new Line2D.Double(0.0, innerHeight + depth * 2.0, innerWidth, innerHeight + depth * 2.0));
+        renderer.draw(new Line2D.Double(innerWidth, innerHeight + depth * 2.0, innerWidth, innerHeight));
+        renderer.draw(new Line2D.Double(0.0, innerHeight + depth, innerWidth, innerHeight + depth));
+        renderer.draw(new Line2D.Double(innerWidth, 0.0, innerWidth + 2.0 * depth, 0.0));
+        renderer.draw(new Line2D.Double(innerWidth + 2.0 * depth, 0.0, innerWidth + 2.0 * depth, innerHeight + 2.0 * frameWidth));
+        renderer.draw(new Line2D.Double(innerWidth + 2.0 * depth, innerHeight + 2.0 * frameWidth, innerWidth, innerHeight + 2.0 * frameWidth));
+        renderer.draw(new Line2D.Double(innerWidth + depth, 0.0, innerWidth + depth, innerHeight + 2.0 * frameWidth));
     }
 
-    private void drawDistanceRaster1(Graphics2D graphics2D) {
-        double extra = connectorDistance * 0.5;
-        double offsetX = innerWidth - borderX + frameWidth + (connectorDistance + ledPinDistanceX - lastColumnWidth) / 2.0;
-        double offsetY = borderY - frameWidth - (connectorDistance - ledPinDistanceY - maxCharacterHeight) / 2.0;
-        double nutExtra = nutSize / sqrt(3.0) + extra;
+    private static void drawDistanceRaster1(Renderer renderer, Layout layout, Rectangle2D area) throws IOException {
+        ClockSpec spec = layout.getSpec();
+        double innerWidth = layout.getInnerWidth();
+        double innerHeight = layout.getInnerHeight();
+        Layout.Point pcbScrew2 = layout.getPcbScrews().get(1);
+        double nutExtra = layout.getPcbNutChannelRadius();
 
-        graphics2D.setColor(COLOR_CUT);
-        drawLedHoles(graphics2D, size - lightShadeExtra);
-        drawScrewHoles(graphics2D);
+        renderer.setColor(COLOR_CUT);
+        drawLedHoles(renderer, layout, layout.getSize() - spec.getLightShadeExtra(), area);
+        drawScrewHoles(renderer, layout);
         Path2D.Double path = new Path2D.Double();
         path.moveTo(0.0, 0.0);
-        path.lineTo(0.0, offsetY);
-        path.lineTo(anodesConnectorOffsetX + connectorDistance * 0.5, offsetY);
-        for (int i = 1; i < rows - 2; i += 1) {
-            path.lineTo(anodesConnectorOffsetX + connectorDistance * (i - 0.5), offsetY + factorY * i);
-            path.lineTo(anodesConnectorOffsetX + connectorDistance * (i + 0.5), offsetY + factorY * i);
-        }
-        path.lineTo(anodesConnectorOffsetX + connectorDistance * (rows - 2.5), innerHeight - anodesConnectorOffsetY - extra);
-        path.lineTo(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra, innerHeight - anodesConnectorOffsetY - extra);
-        path.lineTo(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra, innerHeight - pcbScrew2Y - nutExtra);
-        path.append(new Arc2D.Double(pcbScrew2X - nutExtra, innerHeight - pcbScrew2Y - nutExtra, 2.0 * nutExtra, 2.0 * nutExtra, 90.0, -180.0, OPEN), true);
-        path.lineTo(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra, innerHeight - pcbScrew2Y + nutExtra);
-        path.lineTo(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra, innerHeight - cathodesConnectorOffsetY - connectorDistance * (columns - 0.5));
-        for (int i = columns - 1; i > 0; i -= 1) {
-            path.lineTo(offsetX - factorX * i, innerHeight - cathodesConnectorOffsetY - connectorDistance * (i + 0.5));
-            path.lineTo(offsetX - factorX * i, innerHeight - cathodesConnectorOffsetY - connectorDistance * (i - 0.5));
-        }
-        path.lineTo(offsetX, innerHeight - cathodesConnectorOffsetY - connectorDistance * 0.5);
-        path.lineTo(offsetX, innerHeight);
+        for (Layout.Point point : layout.getAnodeChannel()) {
+            path.lineTo(point.getX(), point.getY());
+        }
+        path.append(new Arc2D.Double(pcbScrew2.getX() - nutExtra, pcbScrew2.getY() - nutExtra, 2.0 * nutExtra, 2.0 * nutExtra, 90.0, -180.0, OPEN), true);
+        for (Layout.Point point : layout.getCathodeChannel()) {
+            path.lineTo(point.getX(), point.getY());
+        }
         path.lineTo(innerWidth, innerHeight);
         path.lineTo(innerWidth, 0.0);
         path.closePath();
-        graphics2D.draw(path);
-    }
-
-    private void drawDistanceRaster2(Graphics2D graphics2D) {
-        double offsetX = borderX + firstColumnWidth / 2.0 - frameWidth;
-        double offsetY = borderY + maxCharacterHeight / 2.0 - frameWidth;
-        double screwDistanceX1 = offsetX + 0.5 * factorX;
-        double screwDistanceY1 = offsetY + 0.5 * factorY;
-        double screwDistanceX2 = offsetX + 3.5 * factorX;
-        double screwDistanceY2 = offsetY + 2.5 * factorY;
-
-        graphics2D.setColor(COLOR_CUT);
-        graphics2D.draw(new Rectangle2D.Double(0.0, 0.0, innerWidth, innerHeight));
-        drawLedHoles(graphics2D, size);
-        drawPcbHoles(graphics2D);
-        graphics2D.draw(createHexagon(screwDistanceX1, screwDistanceY1, nutSize / 2.0));
-        graphics2D.draw(createHexagon(innerWidth - screwDistanceX1, screwDistanceY1, nutSize / 2.0));
-        graphics2D.draw(createHexagon(screwDistanceX1, innerHeight - screwDistanceY1, nutSize / 2.0));
-        graphics2D.draw(createHexagon(innerWidth - screwDistanceX1, innerHeight - screwDistanceY1, nutSize / 2.0));
-        graphics2D.draw(createHexagon(screwDistanceX2, screwDistanceY2, nutSize / 2.0));
-        graphics2D.draw(createHexagon(innerWidth - screwDistanceX2, screwDistanceY2, nutSize / 2.0));
-        graphics2D.draw(createHexagon(screwDistanceX2, innerHeight - screwDistanceY2, nutSize / 2.0));
-        graphics2D.draw(createHexagon(innerWidth - screwDistanceX2, innerHeight - screwDistanceY2, nutSize / 2.0));
-    }
-
-    private void drawLedCarrier(Graphics2D graphics2D) {
-        double offsetXLeft = borderX + firstColumnWidth / 2.0 - frameWidth;
-        double offsetXRight = borderX + lastColumnWidth / 2.0 - frameWidth;
-        double offsetY = borderY + maxCharacterHeight / 2.0 - frameWidth;
-
-        graphics2D.setColor(COLOR_CUT);
-        graphics2D.draw(new Rectangle2D.Double(0.0, 0.0, innerWidth, innerHeight));
-        for (int i = 0; i < rows; i += 1) {
-            double ty = i * factorY + offsetY;
-            for (int j = 0; j < columns; j += 1) {
-                double tx = j * factorX + offsetXLeft;
-                graphics2D.draw(createLedFootPrint(tx, ty));
+        renderer.draw(path);
+    }
+
+    private static void drawDistanceRaster2(Renderer renderer, Layout layout, Rectangle2D area) throws IOException {
+        renderer.setColor(COLOR_CUT);
+        renderer.draw(new Rectangle2D.Double(0.0, 0.0, layout.getInnerWidth(), layout.getInnerHeight()));
+        drawLedHoles(renderer, layout, layout.getSize(), area);
+        drawPcbHoles(renderer, layout);
+        double nutRadius = layout.getSpec().getNutSize() / 2.0;
+        for (Layout.Point screw : layout.getScrews()) {
+            drawHexagon(renderer, screw.getX(), screw.getY(), nutRadius);
+        }
+    }
+
+    static void drawLedCarrier(Renderer renderer, Layout layout, Rectangle2D area) throws IOException {
+        ClockSpec spec = layout.getSpec();
+        renderer.setColor(COLOR_CUT);
+        renderer.draw(new Rectangle2D.Double(0.0, 0.0, layout.getInnerWidth(), layout.getInnerHeight()));
+        Shape ledFootPrint = createLedFootPrint(spec);
+        Rectangle2D bounds = ledFootPrint.getBounds2D();
+        for (int i = 0; i < layout.getRows(); i += 1) {
+            double ty = layout.getCellY(i);
+            if (!isVisibleY(area, bounds, ty)) {
+                continue;
+            }
+            for (int j = 0; j < layout.getColumns(); j += 1) {
+                if (isVisibleX(area, bounds, layout.getCellX(j))) {
+                    renderer.draw("led-footprint", ledFootPrint, layout.getCellX(j), ty);
+                }
             }
         }
-        drawScrewHoles(graphics2D);
+        drawScrewHoles(renderer, layout);
 
-        for (int i = 0; i < rows; i += 1) {
-            graphics2D.draw(new Ellipse2D.Double(anodesConnectorOffsetX + connectorDistance * i - connectorDiameter / 2.0, innerHeight - anodesConnectorOffsetY - connectorDiameter / 2.0, connectorDiameter, connectorDiameter));
-            graphics2D.draw(new Ellipse2D.Double(anodesConnectorOffsetX + connectorDistance * i - wireDiameter / 2.0, offsetY + factorY * i - (wireDiameter - ledPinDistanceY) / 2.0, wireDiameter, wireDiameter));
+        for (int i = 0; i < layout.getRows(); i += 1) {
+            drawCircle(renderer, layout.getAnodeConnectors().get(i), spec.getConnectorDiameter());
+            drawCircle(renderer, layout.getAnodeWires().get(i), spec.getWireDiameter());
         }
-        for (int i = 0; i < columns; i += 1) {
-            graphics2D.draw(new Ellipse2D.Double(cathodesConnectorOffsetX - connectorDiameter / 2.0, innerHeight - cathodesConnectorOffsetY - connectorDistance * i - connectorDiameter / 2.0, connectorDiameter, connectorDiameter));
-            graphics2D.draw(new Ellipse2D.Double(innerWidth - offsetXRight - factorX * i - (wireDiameter - ledPinDistanceX) / 2.0, innerHeight - cathodesConnectorOffsetY - connectorDistance * i - wireDiameter / 2.0, wireDiameter, wireDiameter));
+        for (int i = 0; i < layout.getColumns(); i += 1) {
+            drawCircle(renderer, layout.getCathodeConnectors().get(i), spec.getConnectorDiameter());
+            drawCircle(renderer, layout.getCathodeWires().get(i), spec.getWireDiameter());
         }
-        drawPcbHoles(graphics2D);
+        drawPcbHoles(renderer, layout);
     }
 
-    private void drawPcbHoles(Graphics2D graphics2D) {
-        graphics2D.draw(new Ellipse2D.Double(pcbScrew1X - screwDiameter / 2.0, innerHeight - pcbScrew1Y - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(pcbScrew2X - screwDiameter / 2.0, innerHeight - pcbScrew2Y - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(pcbScrew3X - screwDiameter / 2.0, innerHeight - pcbScrew3Y - screwDiameter / 2.0, screwDiameter, screwDiameter));
+    /**
+     * Draws the outline of a narrow cross at each corner of the tile, in a color of its own, so that the marks can be
+     * scored with other settings than the cuts. G-code and DXF files, which do not keep colors, cut them. Only the
+     * quarter within the tile is visible, neighbouring tiles are aligned by completing the crosses.
+     */
+    private static void drawRegistrationMarks(Renderer renderer, Rectangle2D tile) throws IOException {
+        Area mark = new Area(new Rectangle2D.Double(-MARK_SIZE / 2.0, -MARK_WIDTH / 2.0, MARK_SIZE, MARK_WIDTH));
+        mark.add(new Area(new Rectangle2D.Double(-MARK_WIDTH / 2.0, -MARK_SIZE / 2.0, MARK_WIDTH, MARK_SIZE)));
+        renderer.setColor(COLOR_MARK);
+        renderer.draw("registration-mark", mark, tile.getMinX(), tile.getMinY());
+        renderer.draw("registration-mark", mark, tile.getMaxX(), tile.getMinY());
+        renderer.draw("registration-mark", mark, tile.getMinX(), tile.getMaxY());
+        renderer.draw("registration-mark", mark, tile.getMaxX(), tile.getMaxY());
     }
 
-    private void drawLedHoles(Graphics2D graphics2D, double incircleDiameter) {
-        double offsetX = borderX + firstColumnWidth / 2.0 - frameWidth;
-        double offsetY = borderY + maxCharacterHeight / 2.0 - frameWidth;
+    private static void drawPcbHoles(Renderer renderer, Layout layout) throws IOException {
+        for (Layout.Point pcbScrew : layout.getPcbScrews()) {
+            drawCircle(renderer, pcbScrew, layout.getSpec().getScrewDiameter());
+        }
+    }
 
-        for (int i = 0; i < rows; i += 1) {
-            double ty = i * factorY + offsetY;
-            for (int j = 0; j < columns; j += 1) {
-                double tx = j * factorX + offsetX;
-                graphics2D.draw(createHexagon(tx, ty, incircleDiameter / 2.0));
+    private static void drawLedHoles(Renderer renderer, Layout layout, double incircleDiameter, Rectangle2D area)
+            throws IOException {
+        Rectangle2D bounds = createHexagon(incircleDiameter / 2.0).getBounds2D();
+        for (int i = 0; i < layout.getRows(); i += 1) {
+            double ty = layout.getCellY(i);
+            if (!isVisibleY(area, bounds, ty)) {
+                continue;
+            }
+            for (int j = 0; j < layout.getColumns(); j += 1) {
+                if (isVisibleX(area, bounds, layout.getCellX(j))) {
+                    drawHexagon(renderer, layout.getCellX(j), ty, incircleDiameter / 2.0);
+                }
             }
         }
     }
 
-    private void drawScrewHoles(Graphics2D graphics2D) {
-        double offsetX = borderX + firstColumnWidth / 2.0 - frameWidth;
-        double offsetY = borderY + maxCharacterHeight / 2.0 - frameWidth;
-        double screwDistanceX1 = offsetX + 0.5 * factorX;
-        double screwDistanceY1 = offsetY + 0.5 * factorY;
-        double screwDistanceX2 = offsetX + 3.5 * factorX;
-        double screwDistanceY2 = offsetY + 2.5 * factorY;
-
-        graphics2D.draw(new Ellipse2D.Double(screwDistanceX1 - screwDiameter / 2.0, screwDistanceY1 - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(innerWidth - screwDistanceX1 - screwDiameter / 2.0, screwDistanceY1 - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(screwDistanceX1 - screwDiameter / 2.0, innerHeight - screwDistanceY1 - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(innerWidth - screwDistanceX1 - screwDiameter / 2.0, innerHeight - screwDistanceY1 - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(screwDistanceX2 - screwDiameter / 2.0, screwDistanceY2 - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(innerWidth - screwDistanceX2 - screwDiameter / 2.0, screwDistanceY2 - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(screwDistanceX2 - screwDiameter / 2.0, innerHeight - screwDistanceY2 - screwDiameter / 2.0, screwDiameter, screwDiameter));
-        graphics2D.draw(new Ellipse2D.Double(innerWidth - screwDistanceX2 - screwDiameter / 2.0, innerHeight - screwDistanceY2 - screwDiameter / 2.0, screwDiameter, screwDiameter));
+    private static void drawScrewHoles(Renderer renderer, Layout layout) throws IOException {
+        for (Layout.Point screw : layout.getScrews()) {
+            drawCircle(renderer, screw, layout.getSpec().getScrewDiameter());
+        }
     }
 
-    private double computeFirstColumnWidth(Map<Character, Path2D> glyphOutlines) {
-        double result = 0.0;
-        for (String line : text) {
-            Path2D glyphOutline = glyphOutlines.get(line.charAt(0));
-            result = max(result, glyphOutline.getBounds2D().getWidth());
+    /**
+     * Runs all tasks on the given executor and waits for them. The first failure is rethrown after all tasks have
+     * completed, so that no task is still writing when the caller continues. Results are returned in task order.
+     */
+    static <T> List<T> awaitAll(ExecutorService executor, List<? extends Callable<T>> tasks) throws IOException {
+        List<Future<T>> futures;
+        try {
+            futures = executor.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
         }
-        return result;
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+        return results;
     }
 
-    private double computeLastColumnWidth(Map<Character, Path2D> glyphOutlines) {
-        double result = 0.0;
-        for (String line : text) {
-            Path2D glyphOutline = glyphOutlines.get(line.charAt(line.length() - 1));
-            result = max(result, glyphOutline.getBounds2D().getWidth());
-        }
-        return result;
+    private static void drawHexagon(Renderer renderer, double centerX, double centerY, double incircleRadius)
+            throws IOException {
+        renderer.draw("hexagon-" + incircleRadius, createHexagon(incircleRadius), centerX, centerY);
+    }
+
+    private static void drawHexagonFraction(Renderer renderer, double centerX, double centerY, double incircleRadius,
+                                            int[] angles) throws IOException {
+        Shape hexagonFraction = createHexagonFraction(incircleRadius, angles);
+        renderer.draw("hexagon-" + incircleRadius + Arrays.toString(angles), hexagonFraction, centerX, centerY);
     }
 
-    private void writeToFile(SVGGraphics2D svgGraphics2D, String outputFileName) throws IOException {
-        Element svgRoot = svgGraphics2D.getRoot();
-        svgRoot.setAttributeNS(null, SVG_WIDTH_ATTRIBUTE, format(ENGLISH, "%fmm", width));
-        svgRoot.setAttributeNS(null, SVG_HEIGHT_ATTRIBUTE, format(ENGLISH, "%fmm", height));
-        svgRoot.setAttributeNS(null, SVG_VIEW_BOX_ATTRIBUTE, format(ENGLISH, "%f %f %f %f", 0.0, 0.0, width, height));
+    private static void drawCircle(Renderer renderer, Layout.Point center, double diameter) throws IOException {
+        drawCircle(renderer, center.getX(), center.getY(), diameter);
+    }
 
-        try (FileWriter writer = new FileWriter(outputFileName)) {
-            svgGraphics2D.stream(svgRoot, writer);
-        }
+    private static void drawCircle(Renderer renderer, double centerX, double centerY, double diameter)
+            throws IOException {
+        Shape circle = new Ellipse2D.Double(-diameter / 2.0, -diameter / 2.0, diameter, diameter);
+        renderer.draw("circle-" + diameter, circle, centerX, centerY);
     }
 
-    private Shape createLedFootPrint(double centerX, double centerY) {
+    private static Shape createLedFootPrint(ClockSpec spec) {
+        double ledPinWidth = spec.getLedPinWidth();
+        double ledPinHeight = spec.getLedPinHeight();
+        double ledPinDistanceX = spec.getLedPinDistanceX();
+        double ledPinDistanceY = spec.getLedPinDistanceY();
         Path2D.Double path = new Path2D.Double();
         path.append(new Rectangle2D.Double((ledPinDistanceX - ledPinWidth) / 2.0, (ledPinDistanceY - ledPinHeight) / 2.0, ledPinWidth, ledPinHeight), false);
         path.append(new Rectangle2D.Double((-ledPinDistanceX - ledPinWidth) / 2.0, (ledPinDistanceY - ledPinHeight) / 2.0, ledPinWidth, ledPinHeight), false);
         path.append(new Rectangle2D.Double((ledPinDistanceX - ledPinWidth) / 2.0, (-ledPinDistanceY - ledPinHeight) / 2.0, ledPinWidth, ledPinHeight), false);
         path.append(new Rectangle2D.Double((-ledPinDistanceX - ledPinWidth) / 2.0, (-ledPinDistanceY - ledPinHeight) / 2.0, ledPinWidth, ledPinHeight), false);
-        path.transform(getTranslateInstance(centerX, centerY));
         return path;
     }
 
-    private static double computeMaxGlyphHeight(Map<Character, Path2D> glyphOutlines) {
-        double result = 0.0;
-        for (Path2D glyphOutline : glyphOutlines.values()) {
-            result = max(result, glyphOutline.getBounds2D().getHeight());
-        }
-        return result;
-    }
-
-    private static double computeMaxGlyphWidth(Map<Character, Path2D> glyphOutlines) {
-        double result = 0.0;
-        for (Path2D glyphOutline : glyphOutlines.values()) {
-            result = max(result, glyphOutline.getBounds2D().getWidth());
-        }
-        return result;
-    }
-
-    private static Shape createHexagon(double centerX, double centerY, double incircleRadius) {
-        return createHexagonFraction(centerX, centerY, incircleRadius, new int[]{30, 90, 150, 210, 270, 330}, true);
+    private static Shape createHexagon(double incircleRadius) {
+        return createHexagonFraction(incircleRadius, new int[]{30, 90, 150, 210, 270, 330}, true);
     }
 
-    private static Shape createHexagonFraction(double centerX, double centerY, double incircleRadius, int[] angles) {
-        return createHexagonFraction(centerX, centerY, incircleRadius, angles, false);
+    static Shape createHexagonFraction(double incircleRadius, int[] angles) {
+        return createHexagonFraction(incircleRadius, angles, false);
     }
 
-    private static Shape createHexagonFraction(double centerX, double centerY, double incircleRadius, int[] angles,
-                                               boolean close) {
+    private static Shape createHexagonFraction(double incircleRadius, int[] angles, boolean close) {
         double radius = 2.0 * incircleRadius / sqrt(3.0);
         Path2D.Double path = new Path2D.Double();
         path.moveTo(radius * sin(toRadians(angles[0])), radius * cos(toRadians(angles[0])));
@@ -589,7 +1334,21 @@ public class Generator {
         if (close) {
             path.closePath();
         }
-        path.transform(getTranslateInstance(centerX, centerY));
         return path;
     }
+
+    /**
+     * A part of a panel, in panel coordinates.
+     */
+    static final class Tile {
+        private final int row;
+        private final int column;
+        private final Rectangle2D bounds;
+
+        private Tile(int row, int column, Rectangle2D bounds) {
+            this.row = row;
+            this.column = column;
+            this.bounds = bounds;
+        }
+    }
 }
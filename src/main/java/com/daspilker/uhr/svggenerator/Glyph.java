@@ -0,0 +1,41 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * The outline of a character, translated so that its left edge is at zero and its baseline is at zero. Glyphs are
+ * shared between threads, so neither the outline nor the bounds must be modified.
+ */
+public final class Glyph {
+    private final Path2D outline;
+    private final Rectangle2D bounds;
+
+    Glyph(Path2D outline) {
+        this.outline = outline;
+        this.bounds = outline.getBounds2D();
+    }
+
+    public Path2D getOutline() {
+        return outline;
+    }
+
+    public Rectangle2D getBounds() {
+        return bounds;
+    }
+}
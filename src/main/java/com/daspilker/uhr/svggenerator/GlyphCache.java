@@ -0,0 +1,350 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.awt.geom.AffineTransform.getTranslateInstance;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * A thread-safe cache for glyph outlines, keyed by font, font size and character. Fonts are either installed fonts
+ * read through AWT, which are keyed by the font which has actually been found for the name, or
+ * {@link FontFile font files}, which are keyed by their path and version. The least recently used
+ * glyphs are evicted when the cache is full. If a directory is given, glyphs are also stored on disk, so that another
+ * process can load them without extracting them from the font.
+ * <p>
+ * The {@link #getSharedInstance() shared instance} is used by all generators which have no cache of their own. Its
+ * disk tier is enabled by setting the {@code uhr.glyphCacheDirectory} system property.
+ */
+public class GlyphCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+
+    // equivalent to the default font render context of SVGGraphics2D
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    private static final int FILE_FORMAT_VERSION = 2;
+    private static final GlyphCache SHARED_INSTANCE = new GlyphCache(DEFAULT_MAXIMUM_SIZE, getDirectoryProperty());
+
+    private final int maximumSize;
+    private final File directory;
+    private final Map<Key, Glyph> glyphs;
+    private final ConcurrentMap<Key, Font> fonts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> fontIds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, FontFile> fontFiles = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public GlyphCache() {
+        this(DEFAULT_MAXIMUM_SIZE, null);
+    }
+
+    /**
+     * @param maximumSize the maximum number of glyphs kept in memory
+     * @param directory   the directory for the disk tier, or {@code null} to keep glyphs in memory only
+     */
+    public GlyphCache(int maximumSize, File directory) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.directory = directory;
+        this.glyphs = new LinkedHashMap<Key, Glyph>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Glyph> eldest) {
+                if (size() > GlyphCache.this.maximumSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static GlyphCache getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    public Glyph getGlyph(String fontName, float fontSize, char c) {
+        return getGlyph(new Key(getFontId(fontName), fontSize, c),
+                () -> createGlyphOutline(getFont(fontName, fontSize), c));
+    }
+
+    /**
+     * Returns the identifier of the installed font which is used for the font name. AWT silently falls back to a
+     * default font if no font has that name, so the name alone does not tell which outlines it gives. AWT has no font
+     * version, the number of glyphs stands in for it.
+     */
+    String getFontId(String fontName) {
+        return fontIds.computeIfAbsent(fontName, n -> {
+            Font font = Font.decode(n);
+            return "font:" + font.getPSName() + ':' + font.getNumGlyphs();
+        });
+    }
+
+    /**
+     * Returns a glyph from a TrueType or OpenType font file instead of an installed font.
+     */
+    public Glyph getGlyph(Path fontFile, float fontSize, char c) throws IOException {
+        return getGlyph(getFontFile(fontFile), fontSize, c);
+    }
+
+    Glyph getGlyph(FontFile fontFile, float fontSize, char c) {
+        return getGlyph(new Key(fontFile.getId(), fontSize, c), () -> translateToOrigin(fontFile.getOutline(c, fontSize)));
+    }
+
+    /**
+     * Returns the font file, which is only read again if it has been changed. A changed file replaces the version read
+     * before, whose glyphs are evicted from memory as they are no longer used. Different files can be read in parallel.
+     */
+    FontFile getFontFile(Path fontFile) throws IOException {
+        Path path = fontFile.toAbsolutePath();
+        FontFile result = fontFiles.get(path);
+        if (result == null || !result.getId().equals(FontFile.getId(path))) {
+            result = FontFile.open(path);
+            fontFiles.put(path, result);
+        }
+        return result;
+    }
+
+    private Glyph getGlyph(Key key, Supplier<Path2D> outlineSupplier) {
+        Glyph glyph;
+        synchronized (glyphs) {
+            glyph = glyphs.get(key);
+        }
+        if (glyph != null) {
+            hits.incrementAndGet();
+            return glyph;
+        }
+
+        // the glyph is loaded outside of the lock, concurrent misses for the same key may load it twice
+        misses.incrementAndGet();
+        glyph = readGlyph(key);
+        if (glyph == null) {
+            glyph = new Glyph(outlineSupplier.get());
+            writeGlyph(key, glyph);
+        } else {
+            diskHits.incrementAndGet();
+        }
+        synchronized (glyphs) {
+            glyphs.put(key, glyph);
+        }
+        return glyph;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of misses which have been served from the disk tier.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (glyphs) {
+            return glyphs.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format(ENGLISH, "glyph cache: %d hits, %d misses (%d from disk), %d evictions, %d of %d entries",
+                getHits(), getMisses(), getDiskHits(), getEvictions(), size(), maximumSize);
+    }
+
+    private Font getFont(String fontName, float fontSize) {
+        return fonts.computeIfAbsent(new Key(fontName, fontSize, '\u0000'), k -> Font.decode(fontName).deriveFont(fontSize));
+    }
+
+    private Glyph readGlyph(Key key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != FILE_FORMAT_VERSION || !in.readUTF().equals(key.fontId) ||
+                    in.readFloat() != key.fontSize || in.readChar() != key.c) {
+                return null;
+            }
+            Path2D.Float outline = new Path2D.Float(in.readByte());
+            float[] coords = new float[6];
+            for (int type = in.readByte(); type != -1; type = in.readByte()) {
+                for (int i = 0; i < getCoordinateCount(type); i += 1) {
+                    coords[i] = in.readFloat();
+                }
+                switch (type) {
+                    case PathIterator.SEG_MOVETO:
+                        outline.moveTo(coords[0], coords[1]);
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        outline.lineTo(coords[0], coords[1]);
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        outline.quadTo(coords[0], coords[1], coords[2], coords[3]);
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        outline.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                        break;
+                    default:
+                        outline.closePath();
+                        break;
+                }
+            }
+            return new Glyph(outline);
+        } catch (IOException | RuntimeException e) {
+            // a broken cache file is treated like a missing one and will be replaced
+            return null;
+        }
+    }
+
+    private void writeGlyph(Key key, Glyph glyph) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory.toPath());
+            Path tempFile = Files.createTempFile(directory.toPath(), "glyph", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    out.writeInt(FILE_FORMAT_VERSION);
+                    out.writeUTF(key.fontId);
+                    out.writeFloat(key.fontSize);
+                    out.writeChar(key.c);
+                    PathIterator iterator = glyph.getOutline().getPathIterator(null);
+                    out.writeByte(iterator.getWindingRule());
+                    float[] coords = new float[6];
+                    for (; !iterator.isDone(); iterator.next()) {
+                        int type = iterator.currentSegment(coords);
+                        out.writeByte(type);
+                        for (int i = 0; i < getCoordinateCount(type); i += 1) {
+                            out.writeFloat(coords[i]);
+                        }
+                    }
+                    out.writeByte(-1);
+                }
+                try {
+                    Files.move(tempFile, getFile(key).toPath(), ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, getFile(key).toPath(), REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            // the disk tier is only an optimization, the glyph is still cached in memory
+        }
+    }
+
+    private File getFile(Key key) {
+        String name = key.fontId + '\u0000' + key.fontSize + '\u0000' + key.c;
+        return new File(directory, UUID.nameUUIDFromBytes(name.getBytes(UTF_8)) + ".glyph");
+    }
+
+    private static int getCoordinateCount(int type) {
+        switch (type) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 2;
+            case PathIterator.SEG_QUADTO:
+                return 4;
+            case PathIterator.SEG_CUBICTO:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+
+    private static File getDirectoryProperty() {
+        String directory = System.getProperty("uhr.glyphCacheDirectory");
+        return directory == null ? null : new File(directory);
+    }
+
+    private static Path2D createGlyphOutline(Font font, char c) {
+        GlyphVector glyphVector = font.createGlyphVector(FONT_RENDER_CONTEXT, new char[]{c});
+        return translateToOrigin((Path2D) glyphVector.getGlyphOutline(0));
+    }
+
+    private static Path2D translateToOrigin(Path2D glyphOutline) {
+        glyphOutline.transform(getTranslateInstance(-glyphOutline.getBounds2D().getX(), 0.0));
+        return glyphOutline;
+    }
+
+    private static final class Key {
+        private final String fontId;
+        private final float fontSize;
+        private final char c;
+
+        private Key(String fontId, float fontSize, char c) {
+            this.fontId = fontId;
+            this.fontSize = fontSize;
+            this.c = c;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return c == other.c && Float.compare(fontSize, other.fontSize) == 0 && fontId.equals(other.fontId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fontId, fontSize, c);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+/**
+ * A uniform grid of lists covering a rectangular extent. The number of cells is roughly the expected number of values.
+ * Positions outside of the extent are clamped to the border cells.
+ */
+final class Grid<T> {
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+    private final List<T>[] cells;
+
+    @SuppressWarnings("unchecked")
+    Grid(Rectangle2D extent, int count) {
+        int cellCount = max(1, min(count, 1 << 20));
+        double aspect = max(extent.getWidth(), 1e-9) / max(extent.getHeight(), 1e-9);
+        columns = max(1, (int) ceil(sqrt(cellCount * aspect)));
+        rows = max(1, (int) ceil((double) cellCount / columns));
+        minX = extent.getMinX();
+        minY = extent.getMinY();
+        cellWidth = max(extent.getWidth(), 1e-9) / columns;
+        cellHeight = max(extent.getHeight(), 1e-9) / rows;
+        cells = (List<T>[]) new List<?>[columns * rows];
+    }
+
+    int getColumn(double x) {
+        return max(0, min(columns - 1, (int) floor((x - minX) / cellWidth)));
+    }
+
+    int getRow(double y) {
+        return max(0, min(rows - 1, (int) floor((y - minY) / cellHeight)));
+    }
+
+    void add(T value, double x, double y) {
+        getOrCreateCell(getRow(y), getColumn(x)).add(value);
+    }
+
+    void add(T value, Rectangle2D bounds) {
+        for (int i = getRow(bounds.getMinY()); i <= getRow(bounds.getMaxY()); i += 1) {
+            for (int j = getColumn(bounds.getMinX()); j <= getColumn(bounds.getMaxX()); j += 1) {
+                getOrCreateCell(i, j).add(value);
+            }
+        }
+    }
+
+    List<T> get(double x, double y) {
+        List<T> cell = cells[getRow(y) * columns + getColumn(x)];
+        return cell == null ? Collections.emptyList() : cell;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    double getCellWidth() {
+        return cellWidth;
+    }
+
+    double getCellHeight() {
+        return cellHeight;
+    }
+
+    /**
+     * Returns the values in the given cell, or {@code null} if the cell is empty.
+     */
+    List<T> getCell(int row, int column) {
+        return cells[row * columns + column];
+    }
+
+    private List<T> getOrCreateCell(int row, int column) {
+        List<T> cell = cells[row * columns + column];
+        if (cell == null) {
+            cell = new ArrayList<>(2);
+            cells[row * columns + column] = cell;
+        }
+        return cell;
+    }
+}
@@ -0,0 +1,513 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Long.bitCount;
+import static java.lang.Long.numberOfTrailingZeros;
+import static java.lang.Math.max;
+
+/**
+ * Searches letter grids on which every phrase of a {@link Language} can be read in order. The words are placed row by
+ * row, each word within one row. Words of the same phrase follow each other in reading order, separated by at least
+ * one cell if they are in the same row. Words which never appear in the same phrase may share letters, like
+ * {@code ZWEI} and {@code EINS} in {@code ZWEINS}. The remaining cells are filled with random letters.
+ * <p>
+ * The search is a branch and bound over the order and the position of the words, as limited discrepancy search. The
+ * first levels are split into fork-join tasks, the deeper levels are searched sequentially. Grids are scored by the
+ * number of cells up to the last letter of the last word, so that overlapping words are preferred and the last rows
+ * remain free. The search stops when all grids have been searched or the time budget is used up.
+ */
+public class GridSolver {
+    private static final int MAXIMUM_WORDS = Long.SIZE;
+    private static final int SPLIT_DEPTH = 6;
+    private static final int NODES_PER_DEADLINE_CHECK = 4096;
+    private static final int NO_FIT = 0;
+    private static final int FIT_FREE = 1;
+    private static final int FIT_OVERLAPPING = 2;
+
+    private final int columns;
+    private final int rows;
+    private final Language.Word[] words;
+    private final char[][] letters;
+    private final long[] predecessors;
+    private final boolean[][] together;
+    private final int[][] phrases;
+    private int solutions = 5;
+    private long timeBudget = 10000;
+    private String filler;
+    private long seed;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public GridSolver(Language language, int columns, int rows) {
+        if (columns < 2 || rows < 2) {
+            throw new IllegalArgumentException("grid must have at least 2 columns and 2 rows");
+        }
+        this.columns = columns;
+        this.rows = rows;
+
+        Map<Language.Word, Integer> indices = new HashMap<>();
+        for (List<Language.Word> phrase : language.getPhrases()) {
+            for (Language.Word word : phrase) {
+                if (!indices.containsKey(word)) {
+                    if (word.getText().length() > columns) {
+                        throw new IllegalArgumentException("word does not fit into a row: " + word);
+                    }
+                    indices.put(word, indices.size());
+                }
+            }
+        }
+        if (indices.size() > MAXIMUM_WORDS) {
+            throw new IllegalArgumentException("language has more than " + MAXIMUM_WORDS + " distinct words");
+        }
+        words = new Language.Word[indices.size()];
+        letters = new char[indices.size()][];
+        for (Map.Entry<Language.Word, Integer> entry : indices.entrySet()) {
+            words[entry.getValue()] = entry.getKey();
+            letters[entry.getValue()] = entry.getKey().getText().toCharArray();
+        }
+
+        predecessors = new long[words.length];
+        together = new boolean[words.length][words.length];
+        Set<List<Integer>> distinctPhrases = new LinkedHashSet<>();
+        for (List<Language.Word> phrase : language.getPhrases()) {
+            List<Integer> phraseIndices = new ArrayList<>();
+            long mask = 0L;
+            for (Language.Word word : phrase) {
+                int index = indices.get(word);
+                phraseIndices.add(index);
+                predecessors[index] |= mask;
+                for (int other = 0; other < words.length; other += 1) {
+                    if ((mask & 1L << other) != 0) {
+                        together[index][other] = true;
+                        together[other][index] = true;
+                    }
+                }
+                mask |= 1L << index;
+            }
+            distinctPhrases.add(phraseIndices);
+        }
+        phrases = new int[distinctPhrases.size()][];
+        int i = 0;
+        for (List<Integer> phrase : distinctPhrases) {
+            phrases[i] = phrase.stream().mapToInt(Integer::intValue).toArray();
+            i += 1;
+        }
+        checkOrder();
+
+        Set<Character> alphabet = new TreeSet<>();
+        for (char[] word : letters) {
+            for (char c : word) {
+                alphabet.add(c);
+            }
+        }
+        StringBuilder fillerLetters = new StringBuilder();
+        for (char c : alphabet) {
+            fillerLetters.append(c);
+        }
+        filler = fillerLetters.toString();
+    }
+
+    /**
+     * Sets the number of grids to return. The default is five.
+     */
+    public void setSolutions(int solutions) {
+        if (solutions < 1) {
+            throw new IllegalArgumentException("solutions must be positive");
+        }
+        this.solutions = solutions;
+    }
+
+    /**
+     * Sets the time in milliseconds for searching grids. The default is ten seconds.
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Sets the letters to fill the unused cells with. By default, all letters of the language are used.
+     */
+    public void setFiller(String filler) {
+        if (filler.isEmpty()) {
+            throw new IllegalArgumentException("filler must not be empty");
+        }
+        this.filler = filler;
+    }
+
+    /**
+     * Sets the seed for choosing the filler letters, so that the same grids are filled the same way.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the best grids found, best first. The list is empty if no grid has been found.
+     */
+    public List<Solution> solve() {
+        Search search = new Search(System.nanoTime() + timeBudget * 1000000L);
+        for (int discrepancies = 0; !search.stopped; discrepancies += 1) {
+            search.limited = false;
+            pool.invoke(new SearchTask(search, new State(), 0, discrepancies));
+            if (!search.limited) {
+                break;
+            }
+        }
+        List<Solution> result = new ArrayList<>();
+        synchronized (search.best) {
+            for (State state : search.best) {
+                result.add(new Solution(fill(state.cells, new Random(seed + result.size())), state.end));
+            }
+        }
+        return result;
+    }
+
+    private String[] fill(char[] cells, Random random) {
+        String[] result = new String[rows];
+        for (int i = 0; i < rows; i += 1) {
+            StringBuilder row = new StringBuilder();
+            for (int j = 0; j < columns; j += 1) {
+                char c = cells[i * columns + j];
+                row.append(c != 0 ? c : filler.charAt(random.nextInt(filler.length())));
+            }
+            result[i] = row.toString();
+        }
+        return result;
+    }
+
+    /**
+     * Rejects languages whose phrases order two words differently, as each word is placed only once.
+     */
+    private void checkOrder() {
+        long placed = 0L;
+        while (bitCount(placed) < words.length) {
+            long next = placed;
+            for (int i = 0; i < words.length; i += 1) {
+                if ((predecessors[i] & ~placed) == 0) {
+                    next |= 1L << i;
+                }
+            }
+            if (next == placed) {
+                List<Language.Word> cycle = new ArrayList<>();
+                for (int i = 0; i < words.length; i += 1) {
+                    if ((placed & 1L << i) == 0) {
+                        cycle.add(words[i]);
+                    }
+                }
+                throw new IllegalArgumentException("phrases contradict each other in the order of these words: " +
+                        cycle);
+            }
+            placed = next;
+        }
+    }
+
+    /**
+     * Returns the lowest possible score of all grids which complete the state, or {@link Integer#MAX_VALUE} if the
+     * state can not be completed. The words of each phrase which have not been placed yet are packed row by row after
+     * the last placed word, as they can not share letters with each other.
+     */
+    private int getLowerBound(State state) {
+        int result = state.end;
+        for (int[] phrase : phrases) {
+            int start = state.start;
+            int previousEnd = 0;
+            for (int word : phrase) {
+                int length = letters[word].length;
+                if ((state.placed & 1L << word) != 0) {
+                    previousEnd = state.starts[word] + length;
+                    continue;
+                }
+                start = max(start, previousEnd);
+                if (start == previousEnd && start % columns != 0) {
+                    start += 1;
+                }
+                if (start % columns + length > columns) {
+                    start += columns - start % columns;
+                }
+                previousEnd = start + length;
+            }
+            if (previousEnd > rows * columns) {
+                return Integer.MAX_VALUE;
+            }
+            result = max(result, previousEnd);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the possible moves of the state, as pairs of word and start cell. Each word is tried at every position
+     * where it shares letters with the words before it and at the first position where it does not. A word only
+     * starts a new row if it does not fit into the current one, as an earlier position never prevents a later word.
+     */
+    private List<int[]> getMoves(State state) {
+        List<int[]> result = new ArrayList<>();
+        int rowStart = state.start - state.start % columns;
+        for (int word = 0; word < words.length; word += 1) {
+            if ((state.placed & 1L << word) != 0 || (predecessors[word] & ~state.placed) != 0) {
+                continue;
+            }
+            boolean found = false;
+            for (int start = state.start; start + letters[word].length <= rowStart + columns; start += 1) {
+                int fit = getFit(state, word, start);
+                if (fit != NO_FIT) {
+                    result.add(new int[]{word, start});
+                    found = true;
+                    if (fit == FIT_FREE) {
+                        break;
+                    }
+                }
+            }
+            if (!found && rowStart + columns < rows * columns) {
+                int start = rowStart + columns;
+                if (getFit(state, word, start) != NO_FIT) {
+                    result.add(new int[]{word, start});
+                }
+            }
+        }
+        // overlapping and early positions first, longer words first, to find good grids early
+        result.sort((a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1]) :
+                Integer.compare(letters[b[0]].length, letters[a[0]].length));
+        return result;
+    }
+
+    private int getFit(State state, int word, int start) {
+        int row = start / columns;
+        for (long placed = state.placed; placed != 0; placed &= placed - 1) {
+            int other = numberOfTrailingZeros(placed);
+            if (together[word][other] && state.starts[other] / columns == row &&
+                    start < state.starts[other] + letters[other].length + 1) {
+                return NO_FIT;
+            }
+        }
+        boolean free = true;
+        for (int i = 0; i < letters[word].length; i += 1) {
+            char c = state.cells[start + i];
+            if (c != 0) {
+                if (c != letters[word][i]) {
+                    return NO_FIT;
+                }
+                free = false;
+            }
+        }
+        return free ? FIT_FREE : FIT_OVERLAPPING;
+    }
+
+    public static final class Solution {
+        private final String[] text;
+        private final int score;
+
+        private Solution(String[] text, int score) {
+            this.text = text;
+            this.score = score;
+        }
+
+        /**
+         * Returns the rows of the grid, ready for {@link Generator#setText(String[])}.
+         */
+        public String[] getText() {
+            return text.clone();
+        }
+
+        /**
+         * Returns the number of cells up to the last letter of the last word. Lower scores are better.
+         */
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * The state shared by all tasks of one search.
+     */
+    private final class Search {
+        private final long deadline;
+        private final List<State> best = new ArrayList<>();
+        private final AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+        private volatile boolean stopped;
+        // whether moves have been skipped because of the discrepancy limit, otherwise the search is complete
+        private volatile boolean limited;
+
+        private Search(long deadline) {
+            this.deadline = deadline;
+        }
+
+        private void addSolution(State state) {
+            synchronized (best) {
+                for (State other : best) {
+                    if (Arrays.equals(other.cells, state.cells)) {
+                        return;
+                    }
+                }
+                int i = 0;
+                while (i < best.size() && best.get(i).end <= state.end) {
+                    i += 1;
+                }
+                best.add(i, state.copy());
+                if (best.size() > solutions) {
+                    best.remove(best.size() - 1);
+                }
+                if (best.size() == solutions) {
+                    bound.set(best.get(best.size() - 1).end);
+                }
+            }
+        }
+    }
+
+    /**
+     * A partially filled grid. The words are placed in the order of their start cells.
+     */
+    private final class State {
+        private final char[] cells;
+        private final int[] starts;
+        private long placed;
+        // the start cell of the last placed word and the cell after the last letter
+        private int start;
+        private int end;
+
+        private State() {
+            cells = new char[rows * columns];
+            starts = new int[words.length];
+        }
+
+        private State(State other) {
+            cells = other.cells.clone();
+            starts = other.starts.clone();
+            placed = other.placed;
+            start = other.start;
+            end = other.end;
+        }
+
+        private State copy() {
+            return new State(this);
+        }
+    }
+
+    private final class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final State state;
+        private final int depth;
+        private final int discrepancies;
+        private int nodes;
+
+        private SearchTask(Search search, State state, int depth, int discrepancies) {
+            this.search = search;
+            this.state = state;
+            this.depth = depth;
+            this.discrepancies = discrepancies;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth < SPLIT_DEPTH && bitCount(state.placed) < words.length) {
+                if (search.stopped || getLowerBound(state) >= search.bound.get()) {
+                    return;
+                }
+                List<SearchTask> tasks = new ArrayList<>();
+                List<int[]> moves = getMoves(state);
+                for (int i = 0; i < moves.size(); i += 1) {
+                    int[] move = moves.get(i);
+                    if (i > 0 && discrepancies == 0) {
+                        search.limited = true;
+                        break;
+                    }
+                    State child = state.copy();
+                    place(child, move[0], move[1], new boolean[letters[move[0]].length]);
+                    tasks.add(new SearchTask(search, child, depth + 1, i > 0 ? discrepancies - 1 : discrepancies));
+                }
+                invokeAll(tasks);
+            } else {
+                search(state, discrepancies);
+            }
+        }
+
+        /**
+         * Searches the moves in the order of the heuristic, but deviates from it at most the given number of times.
+         * The limit is raised after each complete pass, so that good grids are found early in all parts of the
+         * search tree instead of only in the first one.
+         */
+        private void search(State state, int discrepancies) {
+            if (search.stopped) {
+                return;
+            }
+            nodes += 1;
+            if (nodes % NODES_PER_DEADLINE_CHECK == 0 && System.nanoTime() > search.deadline) {
+                search.stopped = true;
+                return;
+            }
+            if (bitCount(state.placed) == words.length) {
+                search.addSolution(state);
+                return;
+            }
+            if (getLowerBound(state) >= search.bound.get()) {
+                return;
+            }
+            List<int[]> moves = getMoves(state);
+            for (int m = 0; m < moves.size(); m += 1) {
+                if (m > 0 && discrepancies == 0) {
+                    search.limited = true;
+                    return;
+                }
+                int[] move = moves.get(m);
+                int word = move[0];
+                int previousStart = state.start;
+                int previousEnd = state.end;
+                boolean[] written = new boolean[letters[word].length];
+                place(state, word, move[1], written);
+                search(state, m > 0 ? discrepancies - 1 : discrepancies);
+                for (int i = 0; i < written.length; i += 1) {
+                    if (written[i]) {
+                        state.cells[move[1] + i] = 0;
+                    }
+                }
+                state.placed &= ~(1L << word);
+                state.start = previousStart;
+                state.end = previousEnd;
+            }
+        }
+
+        private void place(State state, int word, int start, boolean[] written) {
+            for (int i = 0; i < letters[word].length; i += 1) {
+                if (state.cells[start + i] == 0) {
+                    state.cells[start + i] = letters[word][i];
+                    written[i] = true;
+                }
+            }
+            state.starts[word] = start;
+            state.placed |= 1L << word;
+            state.start = start;
+            state.end = max(state.end, start + letters[word].length);
+        }
+    }
+}
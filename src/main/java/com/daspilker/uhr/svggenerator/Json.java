@@ -0,0 +1,194 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A minimal parser for flat JSON objects, as used for generator parameters. Strings, numbers and booleans are returned
+ * as their text, arrays of such values are joined with the {@link Parameters#TEXT_ROW_SEPARATOR text row separator},
+ * so that the rows of the text can be given as array. Nested objects are not supported. Reports are written by hand,
+ * using {@link #quote(String)} for strings.
+ */
+final class Json {
+    private final String json;
+    private int position;
+
+    private Json(String json) {
+        this.json = json;
+    }
+
+    static Map<String, String> parseObject(String json) {
+        Json parser = new Json(json);
+        Map<String, String> result = parser.readObject();
+        parser.skipWhitespace();
+        if (parser.position < json.length()) {
+            throw parser.error("end of input");
+        }
+        return result;
+    }
+
+    static String quote(String value) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i += 1) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private Map<String, String> readObject() {
+        Map<String, String> result = new LinkedHashMap<>();
+        expect('{');
+        if (peek() == '}') {
+            position += 1;
+            return result;
+        }
+        do {
+            String name = readString();
+            expect(':');
+            String value = readValue(true);
+            if (value != null) {
+                result.put(name, value);
+            }
+        } while (consume(','));
+        expect('}');
+        return result;
+    }
+
+    private String readValue(boolean arrayAllowed) {
+        char c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '[' && arrayAllowed) {
+            position += 1;
+            StringBuilder result = new StringBuilder();
+            if (peek() != ']') {
+                do {
+                    if (result.length() > 0) {
+                        result.append(Parameters.TEXT_ROW_SEPARATOR);
+                    }
+                    result.append(readValue(false));
+                } while (consume(','));
+            }
+            expect(']');
+            return result.toString();
+        }
+        int start = position;
+        while (position < json.length() && isLiteralChar(json.charAt(position))) {
+            position += 1;
+        }
+        String literal = json.substring(start, position);
+        if (literal.isEmpty()) {
+            throw error("value");
+        }
+        return literal.equals("null") ? null : literal;
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder result = new StringBuilder();
+        while (true) {
+            if (position >= json.length()) {
+                throw error("\"");
+            }
+            char c = json.charAt(position++);
+            if (c == '"') {
+                return result.toString();
+            }
+            if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            if (position >= json.length()) {
+                throw error("escape sequence");
+            }
+            c = json.charAt(position++);
+            switch (c) {
+                case 'b':
+                    result.append('\b');
+                    break;
+                case 'f':
+                    result.append('\f');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > json.length()) {
+                        throw error("unicode escape");
+                    }
+                    try {
+                        result.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("unicode escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    result.append(c);
+                    break;
+            }
+        }
+    }
+
+    private static boolean isLiteralChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.';
+    }
+
+    private char peek() {
+        skipWhitespace();
+        return position < json.length() ? json.charAt(position) : '\u0000';
+    }
+
+    private boolean consume(char c) {
+        if (peek() == c) {
+            position += 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw error("'" + c + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position += 1;
+        }
+    }
+
+    private IllegalArgumentException error(String expected) {
+        return new IllegalArgumentException("invalid JSON: expected " + expected + " at position " + position);
+    }
+}
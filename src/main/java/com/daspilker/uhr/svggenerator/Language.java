@@ -0,0 +1,195 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * The phrases a clock shows in a language. Each phrase is a template of words separated by spaces, in which
+ * {@code {0}} stands for the current hour and {@code {1}} for the next hour, e.g. {@code ES IST F\u00DCNF VOR {1}}.
+ * The hour words are distinct from the other words, so a clock which shows {@code F\u00DCNF NACH F\u00DCNF} needs two
+ * {@code F\u00DCNF}.
+ * <p>
+ * The templates are evenly spaced over the hour, so twelve templates show the time in steps of five minutes and sixty
+ * templates show every minute. A language can be read from a properties file in UTF-8, which lists the hour words
+ * starting with the twelfth hour and the template for each step, keyed by its minute:
+ *
+ * <pre>
+ * hours=ZW\u00D6LF,EINS,ZWEI,DREI,VIER,F\u00DCNF,SECHS,SIEBEN,ACHT,NEUN,ZEHN,ELF
+ * phrase.0=ES IST {0} UHR
+ * phrase.5=ES IST F\u00DCNF NACH {0}
+ * </pre>
+ */
+public final class Language {
+    public static final Language GERMAN = new Language(
+            asList("ZW\u00D6LF", "EINS", "ZWEI", "DREI", "VIER", "F\u00DCNF", "SECHS", "SIEBEN", "ACHT", "NEUN", "ZEHN",
+                    "ELF"),
+            asList("ES IST {0} UHR", "ES IST F\u00DCNF NACH {0}", "ES IST ZEHN NACH {0}", "ES IST VIERTEL NACH {0}",
+                    "ES IST ZWANZIG NACH {0}", "ES IST F\u00DCNF VOR HALB {1}", "ES IST HALB {1}",
+                    "ES IST F\u00DCNF NACH HALB {1}", "ES IST ZWANZIG VOR {1}", "ES IST VIERTEL VOR {1}",
+                    "ES IST ZEHN VOR {1}", "ES IST F\u00DCNF VOR {1}"));
+
+    private static final String HOURS_KEY = "hours";
+    private static final String PHRASE_KEY_PREFIX = "phrase.";
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private final int hours;
+    private final int minutesPerStep;
+    private final List<List<Word>> phrases;
+
+    /**
+     * @param hours     the hour words, starting with the twelfth hour
+     * @param templates the phrase templates, starting with the full hour
+     */
+    public Language(List<String> hours, List<String> templates) {
+        if (hours.isEmpty() || templates.isEmpty()) {
+            throw new IllegalArgumentException("hours and phrases must not be empty");
+        }
+        if (MINUTES_PER_HOUR % templates.size() != 0) {
+            throw new IllegalArgumentException("number of phrases must divide the hour into equal steps");
+        }
+        this.hours = hours.size();
+        this.minutesPerStep = MINUTES_PER_HOUR / templates.size();
+        List<List<Word>> result = new ArrayList<>();
+        for (int hour = 0; hour < hours.size(); hour += 1) {
+            for (String template : templates) {
+                List<Word> phrase = new ArrayList<>();
+                for (String word : template.trim().split(" +")) {
+                    if (word.equals("{0}")) {
+                        phrase.add(new Word(hours.get(hour), true));
+                    } else if (word.equals("{1}")) {
+                        phrase.add(new Word(hours.get((hour + 1) % hours.size()), true));
+                    } else {
+                        phrase.add(new Word(word, false));
+                    }
+                }
+                if (phrase.size() != new TreeSet<>(phrase).size()) {
+                    throw new IllegalArgumentException("word repeated in phrase: " + template);
+                }
+                result.add(Collections.unmodifiableList(phrase));
+            }
+        }
+        this.phrases = Collections.unmodifiableList(result);
+    }
+
+    public static Language read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+            properties.load(reader);
+        }
+        String hours = properties.getProperty(HOURS_KEY);
+        if (hours == null) {
+            throw new IOException(file + ": missing " + HOURS_KEY);
+        }
+        Map<Integer, String> templatesByMinute = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PHRASE_KEY_PREFIX)) {
+                try {
+                    templatesByMinute.put(Integer.parseInt(key.substring(PHRASE_KEY_PREFIX.length())),
+                            properties.getProperty(key));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ": invalid minute in " + key);
+                }
+            }
+        }
+        List<String> templates = new ArrayList<>();
+        for (Map.Entry<Integer, String> entry : templatesByMinute.entrySet()) {
+            if (entry.getKey() != templates.size() * MINUTES_PER_HOUR / templatesByMinute.size()) {
+                throw new IOException(file + ": phrases must be evenly spaced over the hour, starting with minute 0");
+            }
+            templates.add(entry.getValue());
+        }
+        List<String> hourWords = new ArrayList<>();
+        for (String hour : hours.split(",")) {
+            hourWords.add(hour.trim());
+        }
+        try {
+            return new Language(hourWords, templates);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the phrases of all steps of twelve hours, starting with the twelfth hour.
+     */
+    List<List<Word>> getPhrases() {
+        return phrases;
+    }
+
+    int getHours() {
+        return hours;
+    }
+
+    int getMinutesPerStep() {
+        return minutesPerStep;
+    }
+
+    /**
+     * A word of a phrase. Hour words and other words with the same letters are different words.
+     */
+    static final class Word implements Comparable<Word> {
+        private final String text;
+        private final boolean hour;
+
+        private Word(String text, boolean hour) {
+            if (text.isEmpty() || !text.chars().allMatch(Character::isLetter)) {
+                throw new IllegalArgumentException("invalid word: " + text);
+            }
+            this.text = text.toUpperCase(ENGLISH);
+            this.hour = hour;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        @Override
+        public int compareTo(Word o) {
+            int result = text.compareTo(o.text);
+            return result != 0 ? result : Boolean.compare(hour, o.hour);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Word && text.equals(((Word) o).text) && hour == ((Word) o).hour;
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode() * 2 + (hour ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return hour ? text + " (hour)" : text;
+        }
+    }
+}
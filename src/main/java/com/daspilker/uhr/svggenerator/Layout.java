@@ -0,0 +1,380 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+
+/**
+ * The positions derived from a {@link ClockSpec} and the glyphs of its font: the spacing of the letter grid, the
+ * centers of the cells and the positions of screws, connectors and wires. The layout is computed once and immutable,
+ * so all panels of a clock can be drawn from it in parallel.
+ * <p>
+ * Positions on the front panel are relative to its outer edge, all other positions are relative to the inner panels,
+ * which are smaller by the frame width on each side.
+ */
+final class Layout {
+    private final ClockSpec spec;
+    private final Map<Character, Glyph> glyphs;
+    private final int rows;
+    private final int columns;
+    private final double maxCharacterHeight;
+    private final double firstColumnWidth;
+    private final double lastColumnWidth;
+    private final double maxCharacterWidth;
+    private final double factorX;
+    private final double factorY;
+    private final double innerWidth;
+    private final double innerHeight;
+    private final double size;
+    private final double[] cellX;
+    private final double[] cellY;
+    private final double[][] glyphX;
+    private final double[] glyphY;
+    private final List<Point> screws;
+    private final List<Point> pcbScrews;
+    private final List<Point> anodeConnectors;
+    private final List<Point> anodeWires;
+    private final List<Point> cathodeConnectors;
+    private final List<Point> cathodeWires;
+    private final List<Point> anodeChannel;
+    private final List<Point> cathodeChannel;
+    private final double pcbNutChannelRadius;
+
+    /**
+     * @param glyphs the glyphs of all characters of the text
+     */
+    Layout(ClockSpec spec, Map<Character, Glyph> glyphs) {
+        this.spec = spec;
+        this.rows = spec.getRows();
+        this.columns = spec.getColumns();
+        Map<Character, Glyph> textGlyphs = new HashMap<>();
+        double firstWidth = 0.0;
+        double lastWidth = 0.0;
+        for (int i = 0; i < rows; i += 1) {
+            for (int j = 0; j < columns; j += 1) {
+                char c = spec.getCharacter(i, j);
+                Glyph glyph = glyphs.get(c);
+                if (glyph == null) {
+                    throw new IllegalArgumentException("missing glyph for " + c);
+                }
+                textGlyphs.put(c, glyph);
+            }
+            firstWidth = max(firstWidth, textGlyphs.get(spec.getCharacter(i, 0)).getBounds().getWidth());
+            lastWidth = max(lastWidth, textGlyphs.get(spec.getCharacter(i, columns - 1)).getBounds().getWidth());
+        }
+        double maxHeight = 0.0;
+        double maxWidth = 0.0;
+        for (Glyph glyph : textGlyphs.values()) {
+            maxHeight = max(maxHeight, glyph.getBounds().getHeight());
+            maxWidth = max(maxWidth, glyph.getBounds().getWidth());
+        }
+        this.glyphs = Collections.unmodifiableMap(textGlyphs);
+        this.maxCharacterHeight = maxHeight;
+        this.maxCharacterWidth = maxWidth;
+        this.firstColumnWidth = firstWidth;
+        this.lastColumnWidth = lastWidth;
+
+        double width = spec.getWidth();
+        double height = spec.getHeight();
+        double borderX = spec.getBorderX();
+        double borderY = spec.getBorderY();
+        double frameWidth = spec.getFrameWidth();
+        factorX = (width - 2.0 * borderX - firstColumnWidth / 2.0 - lastColumnWidth / 2.0) / (columns - 1.0);
+        factorY = maxCharacterHeight + (height - 2.0 * borderY - rows * maxCharacterHeight) / (rows - 1.0);
+        innerWidth = width - 2.0 * frameWidth;
+        innerHeight = height - 2.0 * frameWidth;
+        size = max(maxCharacterHeight, maxCharacterWidth) + spec.getLightShadeExtra();
+
+        double offsetX = borderX + firstColumnWidth / 2.0 - frameWidth;
+        double offsetY = borderY + maxCharacterHeight / 2.0 - frameWidth;
+        cellX = new double[columns];
+        for (int j = 0; j < columns; j += 1) {
+            cellX[j] = j * factorX + offsetX;
+        }
+        cellY = new double[rows];
+        for (int i = 0; i < rows; i += 1) {
+            cellY[i] = i * factorY + offsetY;
+        }
+
+        double frontOffsetX = borderX + firstColumnWidth / 2.0;
+        double frontOffsetY = borderY + maxCharacterHeight;
+        glyphX = new double[rows][columns];
+        glyphY = new double[rows];
+        for (int i = 0; i < rows; i += 1) {
+            glyphY[i] = i * factorY + frontOffsetY;
+            for (int j = 0; j < columns; j += 1) {
+                Rectangle2D bounds = getGlyph(i, j).getBounds();
+                glyphX[i][j] = j * factorX + frontOffsetX - bounds.getWidth() / 2.0;
+            }
+        }
+
+        // the screws sit between the cells, the outer ones half a cell and the inner ones several cells from the edge
+        double screwDistanceX1 = offsetX + 0.5 * factorX;
+        double screwDistanceY1 = offsetY + 0.5 * factorY;
+        double screwDistanceX2 = offsetX + 3.5 * factorX;
+        double screwDistanceY2 = offsetY + 2.5 * factorY;
+        List<Point> screwList = new ArrayList<>();
+        screwList.add(new Point(screwDistanceX1, screwDistanceY1));
+        screwList.add(new Point(innerWidth - screwDistanceX1, screwDistanceY1));
+        screwList.add(new Point(screwDistanceX1, innerHeight - screwDistanceY1));
+        screwList.add(new Point(innerWidth - screwDistanceX1, innerHeight - screwDistanceY1));
+        screwList.add(new Point(screwDistanceX2, screwDistanceY2));
+        screwList.add(new Point(innerWidth - screwDistanceX2, screwDistanceY2));
+        screwList.add(new Point(screwDistanceX2, innerHeight - screwDistanceY2));
+        screwList.add(new Point(innerWidth - screwDistanceX2, innerHeight - screwDistanceY2));
+        screws = Collections.unmodifiableList(screwList);
+
+        List<Point> pcbScrewList = new ArrayList<>();
+        pcbScrewList.add(new Point(spec.getPcbScrew1X(), innerHeight - spec.getPcbScrew1Y()));
+        pcbScrewList.add(new Point(spec.getPcbScrew2X(), innerHeight - spec.getPcbScrew2Y()));
+        pcbScrewList.add(new Point(spec.getPcbScrew3X(), innerHeight - spec.getPcbScrew3Y()));
+        pcbScrews = Collections.unmodifiableList(pcbScrewList);
+
+        // one anode per row and one cathode per column, each with a connector pin and a wire hole next to the LEDs
+        double connectorDistance = spec.getConnectorDistance();
+        List<Point> anodeConnectorList = new ArrayList<>();
+        List<Point> anodeWireList = new ArrayList<>();
+        for (int i = 0; i < rows; i += 1) {
+            double x = spec.getAnodesConnectorOffsetX() + connectorDistance * i;
+            anodeConnectorList.add(new Point(x, innerHeight - spec.getAnodesConnectorOffsetY()));
+            anodeWireList.add(new Point(x, cellY[i] + spec.getLedPinDistanceY() / 2.0));
+        }
+        anodeConnectors = Collections.unmodifiableList(anodeConnectorList);
+        anodeWires = Collections.unmodifiableList(anodeWireList);
+
+        double offsetXRight = borderX + lastColumnWidth / 2.0 - frameWidth;
+        List<Point> cathodeConnectorList = new ArrayList<>();
+        List<Point> cathodeWireList = new ArrayList<>();
+        for (int i = 0; i < columns; i += 1) {
+            double y = innerHeight - spec.getCathodesConnectorOffsetY() - connectorDistance * i;
+            cathodeConnectorList.add(new Point(spec.getCathodesConnectorOffsetX(), y));
+            cathodeWireList.add(new Point(innerWidth - offsetXRight - factorX * i + spec.getLedPinDistanceX() / 2.0, y));
+        }
+        cathodeConnectors = Collections.unmodifiableList(cathodeConnectorList);
+        cathodeWires = Collections.unmodifiableList(cathodeWireList);
+
+        // the first distance raster leaves room for the circuit board and for the wires from the LEDs to the
+        // connectors, in steps of one row or column
+        double extra = connectorDistance * 0.5;
+        double anodesConnectorOffsetX = spec.getAnodesConnectorOffsetX();
+        double anodesConnectorOffsetY = spec.getAnodesConnectorOffsetY();
+        double cathodesConnectorOffsetY = spec.getCathodesConnectorOffsetY();
+        double channelOffsetX = innerWidth - borderX + frameWidth +
+                (connectorDistance + spec.getLedPinDistanceX() - lastColumnWidth) / 2.0;
+        double channelOffsetY = borderY - frameWidth -
+                (connectorDistance - spec.getLedPinDistanceY() - maxCharacterHeight) / 2.0;
+        pcbNutChannelRadius = spec.getNutSize() / sqrt(3.0) + extra;
+        List<Point> anodeChannelList = new ArrayList<>();
+        anodeChannelList.add(new Point(0.0, channelOffsetY));
+        anodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * 0.5, channelOffsetY));
+        for (int i = 1; i < rows - 2; i += 1) {
+            anodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * (i - 0.5),
+                    channelOffsetY + factorY * i));
+            anodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * (i + 0.5),
+                    channelOffsetY + factorY * i));
+        }
+        anodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * (rows - 2.5),
+                innerHeight - anodesConnectorOffsetY - extra));
+        anodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra,
+                innerHeight - anodesConnectorOffsetY - extra));
+        anodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra,
+                innerHeight - spec.getPcbScrew2Y() - pcbNutChannelRadius));
+        anodeChannel = Collections.unmodifiableList(anodeChannelList);
+        List<Point> cathodeChannelList = new ArrayList<>();
+        cathodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra,
+                innerHeight - spec.getPcbScrew2Y() + pcbNutChannelRadius));
+        cathodeChannelList.add(new Point(anodesConnectorOffsetX + connectorDistance * (rows - 1) + extra,
+                innerHeight - cathodesConnectorOffsetY - connectorDistance * (columns - 0.5)));
+        for (int i = columns - 1; i > 0; i -= 1) {
+            cathodeChannelList.add(new Point(channelOffsetX - factorX * i,
+                    innerHeight - cathodesConnectorOffsetY - connectorDistance * (i + 0.5)));
+            cathodeChannelList.add(new Point(channelOffsetX - factorX * i,
+                    innerHeight - cathodesConnectorOffsetY - connectorDistance * (i - 0.5)));
+        }
+        cathodeChannelList.add(new Point(channelOffsetX,
+                innerHeight - cathodesConnectorOffsetY - connectorDistance * 0.5));
+        cathodeChannelList.add(new Point(channelOffsetX, innerHeight));
+        cathodeChannel = Collections.unmodifiableList(cathodeChannelList);
+    }
+
+    ClockSpec getSpec() {
+        return spec;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    Glyph getGlyph(int row, int column) {
+        return glyphs.get(spec.getCharacter(row, column));
+    }
+
+    double getMaxCharacterHeight() {
+        return maxCharacterHeight;
+    }
+
+    double getMaxCharacterWidth() {
+        return maxCharacterWidth;
+    }
+
+    double getFirstColumnWidth() {
+        return firstColumnWidth;
+    }
+
+    double getLastColumnWidth() {
+        return lastColumnWidth;
+    }
+
+    /**
+     * Returns the horizontal distance between the centers of two neighbouring cells.
+     */
+    double getFactorX() {
+        return factorX;
+    }
+
+    /**
+     * Returns the vertical distance between the centers of two neighbouring cells.
+     */
+    double getFactorY() {
+        return factorY;
+    }
+
+    double getInnerWidth() {
+        return innerWidth;
+    }
+
+    double getInnerHeight() {
+        return innerHeight;
+    }
+
+    /**
+     * Returns the incircle diameter of the light shade hexagons.
+     */
+    double getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the x coordinate of the center of the cells in the column on the inner panels.
+     */
+    double getCellX(int column) {
+        return cellX[column];
+    }
+
+    /**
+     * Returns the y coordinate of the center of the cells in the row on the inner panels.
+     */
+    double getCellY(int row) {
+        return cellY[row];
+    }
+
+    /**
+     * Returns the x coordinate of the left edge of the glyph in the cell on the front panel.
+     */
+    double getGlyphX(int row, int column) {
+        return glyphX[row][column];
+    }
+
+    /**
+     * Returns the y coordinate of the baseline of the row on the front panel.
+     */
+    double getGlyphY(int row) {
+        return glyphY[row];
+    }
+
+    /**
+     * Returns the positions of the screws which hold the inner panels together.
+     */
+    List<Point> getScrews() {
+        return screws;
+    }
+
+    /**
+     * Returns the positions of the screws which hold the circuit board.
+     */
+    List<Point> getPcbScrews() {
+        return pcbScrews;
+    }
+
+    List<Point> getAnodeConnectors() {
+        return anodeConnectors;
+    }
+
+    List<Point> getAnodeWires() {
+        return anodeWires;
+    }
+
+    List<Point> getCathodeConnectors() {
+        return cathodeConnectors;
+    }
+
+    List<Point> getCathodeWires() {
+        return cathodeWires;
+    }
+
+    /**
+     * Returns the corners of the cut-out of the first distance raster from its left edge to the channel around the
+     * nut of the second screw of the circuit board.
+     */
+    List<Point> getAnodeChannel() {
+        return anodeChannel;
+    }
+
+    /**
+     * Returns the corners of the cut-out of the first distance raster from the channel around the nut of the second
+     * screw of the circuit board to its bottom edge.
+     */
+    List<Point> getCathodeChannel() {
+        return cathodeChannel;
+    }
+
+    /**
+     * Returns the radius of the channel around the nut of the second screw of the circuit board.
+     */
+    double getPcbNutChannelRadius() {
+        return pcbNutChannelRadius;
+    }
+
+    static final class Point {
+        private final double x;
+        private final double y;
+
+        private Point(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        double getX() {
+            return x;
+        }
+
+        double getY() {
+            return y;
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.round;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.toRadians;
+
+/**
+ * Searches the font size, the borders and the extra size of the light shades of a clock for the largest letters or
+ * the thickest walls between the light shades which still leave room for the screws and the circuit board. Candidates
+ * are evaluated by the {@link Layout} alone, nothing is drawn.
+ * <p>
+ * A candidate is valid if the walls between the LED holes of the light shade raster and to its edges are at least the
+ * minimum wall width, if the holes around the LED holes keep the minimum clearance to them, and if neighbouring
+ * letters do not overlap. Each worker of the pool runs a pattern search from random starting points, halving its
+ * steps until they become too small to matter and then starting over, until the time budget is used up. Font sizes
+ * are rounded to tenths of a point, so that the glyphs of each size are only loaded once, and lengths to hundredths
+ * of a mm, so that the result can be written down as it has been evaluated.
+ */
+public class LayoutOptimizer {
+    private static final double FONT_SIZE_STEP = 0.1;
+    private static final double MINIMUM_STEP = 0.01;
+    private static final int FONT_SIZE = 0;
+    private static final int BORDER_X = 1;
+    private static final int BORDER_Y = 2;
+    private static final int LIGHT_SHADE_EXTRA = 3;
+    private static final int PARAMETERS = 4;
+    private static final double[] HEXAGON_SIN = new double[6];
+    private static final double[] HEXAGON_COS = new double[6];
+
+    static {
+        for (int i = 0; i < 6; i += 1) {
+            HEXAGON_SIN[i] = sin(toRadians(30 + i * 60));
+            HEXAGON_COS[i] = cos(toRadians(30 + i * 60));
+        }
+    }
+
+    private final Generator generator;
+    private final ClockSpec spec;
+    private final double[] minimum = new double[PARAMETERS];
+    private final double[] maximum = new double[PARAMETERS];
+    private final Map<Float, Map<Character, Glyph>> glyphs = new ConcurrentHashMap<>();
+    private Objective objective = Objective.FONT_SIZE;
+    private double minimumWallWidth = 1.0;
+    private double minimumClearance = 1.0;
+    private long timeBudget = 1000;
+    private long seed;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Optimizes the specification of the generator, using its fonts and glyph cache. The font size may range from
+     * half to twice its current value, the borders and the extra size of the light shades from zero to twice their
+     * current value.
+     */
+    public LayoutOptimizer(Generator generator) {
+        this.generator = generator;
+        this.spec = generator.getSpec();
+        setFontSizeRange(spec.getFontSize() / 2.0f, spec.getFontSize() * 2.0f);
+        setBorderXRange(0.0, spec.getBorderX() * 2.0);
+        setBorderYRange(0.0, spec.getBorderY() * 2.0);
+        setLightShadeExtraRange(0.0, spec.getLightShadeExtra() * 2.0);
+    }
+
+    public void setObjective(Objective objective) {
+        this.objective = objective;
+    }
+
+    public void setFontSizeRange(float minimum, float maximum) {
+        setRange(FONT_SIZE, "fontSize", minimum, maximum);
+    }
+
+    public void setBorderXRange(double minimum, double maximum) {
+        setRange(BORDER_X, "borderX", minimum, maximum);
+    }
+
+    public void setBorderYRange(double minimum, double maximum) {
+        setRange(BORDER_Y, "borderY", minimum, maximum);
+    }
+
+    public void setLightShadeExtraRange(double minimum, double maximum) {
+        setRange(LIGHT_SHADE_EXTRA, "lightShadeExtra", minimum, maximum);
+    }
+
+    /**
+     * Sets the minimum width in mm of the walls between the LED holes. The default is 1 mm.
+     */
+    public void setMinimumWallWidth(double minimumWallWidth) {
+        this.minimumWallWidth = minimumWallWidth;
+    }
+
+    /**
+     * Sets the minimum distance in mm between the LED holes and the holes around them. The default is 1 mm.
+     */
+    public void setMinimumClearance(double minimumClearance) {
+        this.minimumClearance = minimumClearance;
+    }
+
+    /**
+     * Sets the time in milliseconds for the search. The default is one second.
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Sets the seed for the random starting points of the search. Each worker of the pool draws its starting points
+     * from its own generator, seeded with this seed plus the number of the worker, so the same seed gives the same
+     * sequence of starting points. How many of them are searched depends on the time budget and the speed of the
+     * machine, so the result may still differ between runs. The default is zero.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the best valid specification found, or {@code null} if no candidate within the ranges is valid.
+     */
+    public Result optimize() throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + timeBudget * 1000000L;
+        List<Callable<Candidate>> tasks = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); i += 1) {
+            Random random = new Random(seed + i);
+            tasks.add(() -> search(random, deadline));
+        }
+        Candidate best = null;
+        long evaluations = 0;
+        for (Candidate candidate : Generator.awaitAll(pool, tasks)) {
+            evaluations += candidate.evaluations;
+            if (best == null || candidate.isBetterThan(best)) {
+                best = candidate;
+            }
+        }
+        if (best == null || best.violation > 0.0) {
+            return null;
+        }
+        return new Result(toSpec(best.values), best.wallWidth, best.clearance, evaluations,
+                System.nanoTime() - start);
+    }
+
+    private void setRange(int parameter, String name, double minimum, double maximum) {
+        if (minimum > maximum) {
+            throw new IllegalArgumentException("empty range for " + name);
+        }
+        this.minimum[parameter] = minimum;
+        this.maximum[parameter] = maximum;
+    }
+
+    private Candidate search(Random random, long deadline) throws IOException {
+        Candidate best = null;
+        long evaluations = 0;
+        while (System.nanoTime() < deadline) {
+            double[] values = new double[PARAMETERS];
+            for (int i = 0; i < PARAMETERS; i += 1) {
+                values[i] = minimum[i] + random.nextDouble() * (maximum[i] - minimum[i]);
+            }
+            Candidate current = evaluate(values);
+            evaluations += 1;
+            double[] steps = new double[PARAMETERS];
+            for (int i = 0; i < PARAMETERS; i += 1) {
+                steps[i] = (maximum[i] - minimum[i]) / 4.0;
+            }
+            boolean refine = true;
+            while (refine && System.nanoTime() < deadline) {
+                boolean improved = false;
+                for (int i = 0; i < PARAMETERS; i += 1) {
+                    for (int direction = -1; direction <= 1; direction += 2) {
+                        double[] next = current.values.clone();
+                        next[i] = max(minimum[i], min(maximum[i], next[i] + direction * steps[i]));
+                        if (next[i] == current.values[i]) {
+                            continue;
+                        }
+                        Candidate candidate = evaluate(next);
+                        evaluations += 1;
+                        if (candidate.isBetterThan(current)) {
+                            current = candidate;
+                            improved = true;
+                        }
+                    }
+                }
+                if (!improved) {
+                    refine = false;
+                    for (int i = 0; i < PARAMETERS; i += 1) {
+                        steps[i] /= 2.0;
+                        refine |= steps[i] >= (i == FONT_SIZE ? FONT_SIZE_STEP : MINIMUM_STEP);
+                    }
+                }
+            }
+            if (best == null || current.isBetterThan(best)) {
+                best = current;
+            }
+        }
+        if (best == null) {
+            best = evaluate(minimum.clone());
+        }
+        best.evaluations = evaluations;
+        return best;
+    }
+
+    private ClockSpec toSpec(double[] values) {
+        return spec.toBuilder()
+                .setFontSize((float) (round(values[FONT_SIZE] / FONT_SIZE_STEP) * FONT_SIZE_STEP))
+                .setBorderX(roundLength(values[BORDER_X]))
+                .setBorderY(roundLength(values[BORDER_Y]))
+                .setLightShadeExtra(roundLength(values[LIGHT_SHADE_EXTRA]))
+                .build();
+    }
+
+    /**
+     * Rounds a length to hundredths of a mm, the smallest step of the search.
+     */
+    private static double roundLength(double value) {
+        return round(value * 100.0) / 100.0;
+    }
+
+    private Candidate evaluate(double[] values) throws IOException {
+        ClockSpec candidate;
+        try {
+            candidate = toSpec(values);
+        } catch (IllegalArgumentException e) {
+            return new Candidate(values, 0.0, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                    Double.POSITIVE_INFINITY);
+        }
+        Map<Character, Glyph> candidateGlyphs = glyphs.get(candidate.getFontSize());
+        if (candidateGlyphs == null) {
+            candidateGlyphs = generator.getGlyphs(candidate);
+            glyphs.put(candidate.getFontSize(), candidateGlyphs);
+        }
+        Layout layout = new Layout(candidate, candidateGlyphs);
+
+        double wallWidth = getWallWidth(layout);
+        double clearance = getClearance(layout);
+        double glyphGap = min(layout.getFactorX() - layout.getMaxCharacterWidth(),
+                layout.getFactorY() - layout.getMaxCharacterHeight());
+        double violation = max(0.0, minimumWallWidth - wallWidth) + max(0.0, minimumClearance - clearance) +
+                max(0.0, -glyphGap);
+        double score = objective == Objective.FONT_SIZE ? candidate.getFontSize() : wallWidth;
+        return new Candidate(values, score, wallWidth, clearance, violation);
+    }
+
+    /**
+     * Returns the smallest distance between the LED hole of a cell and the holes of its neighbours or the edges of the
+     * panel, which is the width of the thinnest wall of the light shade raster.
+     */
+    private static double getWallWidth(Layout layout) {
+        double incircleRadius = layout.getSize() / 2.0;
+        double radius = 2.0 * incircleRadius / sqrt(3.0);
+        double[] hole = hexagon(0.0, 0.0, incircleRadius);
+        double factorX = layout.getFactorX();
+        double factorY = layout.getFactorY();
+        double result = min(min(getDistance(hole, hexagon(factorX, 0.0, incircleRadius)),
+                getDistance(hole, hexagon(0.0, factorY, incircleRadius))),
+                getDistance(hole, hexagon(factorX, factorY, incircleRadius)));
+        result = min(result, min(layout.getCellX(0) - radius,
+                layout.getInnerWidth() - layout.getCellX(layout.getColumns() - 1) - radius));
+        return min(result, min(layout.getCellY(0) - incircleRadius,
+                layout.getInnerHeight() - layout.getCellY(layout.getRows() - 1) - incircleRadius));
+    }
+
+    /**
+     * Returns the smallest distance between the holes around the LEDs and the cuts next to them: the screw holes and
+     * the channel for the connectors against the LED holes of the first distance raster, the nuts and the holes for
+     * the screws of the circuit board against the LED holes of the second distance raster and against each other, and
+     * the round holes of the LED carrier against the pins of the LEDs and against each other.
+     */
+    private static double getClearance(Layout layout) {
+        ClockSpec spec = layout.getSpec();
+        double screwRadius = spec.getScrewDiameter() / 2.0;
+        double smallHoleRadius = (layout.getSize() - spec.getLightShadeExtra()) / 2.0;
+        double holeRadius = layout.getSize() / 2.0;
+        double result = Double.POSITIVE_INFINITY;
+
+        for (Layout.Point screw : layout.getScrews()) {
+            result = getClearance(layout, smallHoleRadius, screw, screwRadius, result);
+        }
+        List<Layout.Point> channel = new ArrayList<>(layout.getAnodeChannel());
+        channel.addAll(layout.getCathodeChannel());
+        int arc = layout.getAnodeChannel().size() - 1;
+        double bound = 2.0 * smallHoleRadius / sqrt(3.0);
+        for (int i = 0; i < channel.size() - 1; i += 1) {
+            if (i != arc) {
+                Layout.Point a = channel.get(i);
+                Layout.Point b = channel.get(i + 1);
+                double[] segment = {a.getX(), a.getY(), b.getX(), b.getY()};
+                for (double[] cell : getCellsAround(layout, min(a.getX(), b.getX()), min(a.getY(), b.getY()),
+                        max(a.getX(), b.getX()), max(a.getY(), b.getY()))) {
+                    if (getDistanceToEdges(segment, cell[0], cell[1]) - bound < result) {
+                        result = min(result, getDistance(hexagon(cell[0], cell[1], smallHoleRadius), segment));
+                    }
+                }
+            }
+        }
+        // the channel goes around the right half of the nut of the second screw of the circuit board
+        Layout.Point pcbNut = layout.getPcbScrews().get(1);
+        for (double[] cell : getCellsAround(layout, pcbNut.getX(), pcbNut.getY(), pcbNut.getX(), pcbNut.getY())) {
+            if (cell[0] > pcbNut.getX()) {
+                result = min(result, getDistance(hexagon(cell[0], cell[1], smallHoleRadius), pcbNut.getX(),
+                        pcbNut.getY()) - layout.getPcbNutChannelRadius());
+            }
+        }
+
+        bound = 2.0 * (holeRadius + spec.getNutSize() / 2.0) / sqrt(3.0);
+        for (Layout.Point screw : layout.getScrews()) {
+            double[] nut = hexagon(screw.getX(), screw.getY(), spec.getNutSize() / 2.0);
+            for (double[] cell : getCellsAround(layout, screw.getX(), screw.getY(), screw.getX(), screw.getY())) {
+                if (getDistance(screw, cell[0], cell[1]) - bound < result) {
+                    result = min(result, getDistance(hexagon(cell[0], cell[1], holeRadius), nut));
+                }
+            }
+            for (Layout.Point pcbScrew : layout.getPcbScrews()) {
+                result = min(result, getDistance(nut, pcbScrew.getX(), pcbScrew.getY()) - screwRadius);
+            }
+        }
+        for (Layout.Point pcbScrew : layout.getPcbScrews()) {
+            result = getClearance(layout, holeRadius, pcbScrew, screwRadius, result);
+        }
+
+        List<Layout.Point> circles = new ArrayList<>();
+        List<Double> radii = new ArrayList<>();
+        addCircles(circles, radii, layout.getScrews(), screwRadius);
+        addCircles(circles, radii, layout.getPcbScrews(), screwRadius);
+        addCircles(circles, radii, layout.getAnodeConnectors(), spec.getConnectorDiameter() / 2.0);
+        addCircles(circles, radii, layout.getCathodeConnectors(), spec.getConnectorDiameter() / 2.0);
+        addCircles(circles, radii, layout.getAnodeWires(), spec.getWireDiameter() / 2.0);
+        addCircles(circles, radii, layout.getCathodeWires(), spec.getWireDiameter() / 2.0);
+        for (int i = 0; i < circles.size(); i += 1) {
+            Layout.Point a = circles.get(i);
+            result = min(result, getPinClearance(layout, a, radii.get(i)));
+            for (int j = i + 1; j < circles.size(); j += 1) {
+                Layout.Point b = circles.get(j);
+                result = min(result, getDistance(a, b.getX(), b.getY()) - radii.get(i) - radii.get(j));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the smaller of the given clearance and the distance between a round hole and the hexagonal holes of
+     * the cells around it. Cells which can not be closer are skipped.
+     */
+    private static double getClearance(Layout layout, double incircleRadius, Layout.Point hole, double radius,
+                                       double result) {
+        double bound = 2.0 * incircleRadius / sqrt(3.0) + radius;
+        for (double[] cell : getCellsAround(layout, hole.getX(), hole.getY(), hole.getX(), hole.getY())) {
+            if (getDistance(hole, cell[0], cell[1]) - bound < result) {
+                result = min(result, getDistance(hexagon(cell[0], cell[1], incircleRadius), hole.getX(),
+                        hole.getY()) - radius);
+            }
+        }
+        return result;
+    }
+
+    private static void addCircles(List<Layout.Point> circles, List<Double> radii, List<Layout.Point> centers,
+                                   double radius) {
+        for (Layout.Point center : centers) {
+            circles.add(center);
+            radii.add(radius);
+        }
+    }
+
+    /**
+     * Returns the smallest distance between a round hole of the LED carrier and the pins of the LEDs around it.
+     */
+    private static double getPinClearance(Layout layout, Layout.Point hole, double radius) {
+        ClockSpec spec = layout.getSpec();
+        double pinX = spec.getLedPinDistanceX() / 2.0;
+        double pinY = spec.getLedPinDistanceY() / 2.0;
+        double halfWidth = spec.getLedPinWidth() / 2.0;
+        double halfHeight = spec.getLedPinHeight() / 2.0;
+        double result = Double.POSITIVE_INFINITY;
+        for (double[] cell : getCellsAround(layout, hole.getX(), hole.getY(), hole.getX(), hole.getY())) {
+            for (int i = 0; i < 4; i += 1) {
+                double dx = abs(hole.getX() - cell[0] - (i % 2 == 0 ? -pinX : pinX)) - halfWidth;
+                double dy = abs(hole.getY() - cell[1] - (i < 2 ? -pinY : pinY)) - halfHeight;
+                double distance = dx > 0.0 || dy > 0.0 ? sqrt(max(dx, 0.0) * max(dx, 0.0) +
+                        max(dy, 0.0) * max(dy, 0.0)) : max(dx, dy);
+                result = min(result, distance - radius);
+            }
+        }
+        return result;
+    }
+
+    private static double getDistance(Layout.Point point, double x, double y) {
+        double dx = point.getX() - x;
+        double dy = point.getY() - y;
+        return sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns the centers of the cells around the box, up to one more cell in each direction, and at least the cells
+     * at the edge of the grid next to it.
+     */
+    private static List<double[]> getCellsAround(Layout layout, double minX, double minY, double maxX, double maxY) {
+        double cellX = layout.getCellX(0);
+        double cellY = layout.getCellY(0);
+        int columns = layout.getColumns();
+        int rows = layout.getRows();
+        int firstColumn = max(0, min(columns - 1, (int) floor((minX - cellX) / layout.getFactorX())));
+        int lastColumn = max(0, min(columns - 1, (int) floor((maxX - cellX) / layout.getFactorX()) + 1));
+        int firstRow = max(0, min(rows - 1, (int) floor((minY - cellY) / layout.getFactorY())));
+        int lastRow = max(0, min(rows - 1, (int) floor((maxY - cellY) / layout.getFactorY()) + 1));
+        List<double[]> result = new ArrayList<>();
+        for (int i = firstRow; i <= lastRow; i += 1) {
+            for (int j = firstColumn; j <= lastColumn; j += 1) {
+                result.add(new double[]{layout.getCellX(j), layout.getCellY(i)});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the corners of a hexagon as drawn by the generator, with corners to the left and to the right.
+     */
+    private static double[] hexagon(double centerX, double centerY, double incircleRadius) {
+        double radius = 2.0 * incircleRadius / sqrt(3.0);
+        double[] result = new double[12];
+        for (int i = 0; i < 6; i += 1) {
+            result[i * 2] = centerX + radius * HEXAGON_SIN[i];
+            result[i * 2 + 1] = centerY + radius * HEXAGON_COS[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distance between two convex polygons, or the negative depth of their overlap along the axis which
+     * separates them best if they overlap.
+     */
+    private static double getDistance(double[] a, double[] b) {
+        double separation = max(getSeparation(a, b), getSeparation(b, a));
+        if (separation <= 0.0) {
+            return separation;
+        }
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < a.length; i += 2) {
+            result = min(result, getDistanceToEdges(b, a[i], a[i + 1]));
+        }
+        for (int i = 0; i < b.length; i += 2) {
+            result = min(result, getDistanceToEdges(a, b[i], b[i + 1]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distance between a point and a convex polygon, or a negative number if the point is inside.
+     */
+    private static double getDistance(double[] polygon, double x, double y) {
+        double result = getDistanceToEdges(polygon, x, y);
+        return getSeparation(polygon, new double[]{x, y}) <= 0.0 ? -result : result;
+    }
+
+    /**
+     * Returns the largest gap between the polygons along the outward normals of the edges of the first polygon.
+     */
+    private static double getSeparation(double[] a, double[] b) {
+        double centerX = 0.0;
+        double centerY = 0.0;
+        for (int i = 0; i < a.length; i += 2) {
+            centerX += a[i] * 2.0 / a.length;
+            centerY += a[i + 1] * 2.0 / a.length;
+        }
+        double result = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < a.length; i += 2) {
+            double ax = a[i];
+            double ay = a[i + 1];
+            double nx = a[(i + 3) % a.length] - ay;
+            double ny = ax - a[(i + 2) % a.length];
+            double length = sqrt(nx * nx + ny * ny);
+            if ((ax - centerX) * nx + (ay - centerY) * ny < 0.0) {
+                length = -length;
+            }
+            double gap = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < b.length; j += 2) {
+                gap = min(gap, ((b[j] - ax) * nx + (b[j + 1] - ay) * ny) / length);
+            }
+            result = max(result, gap);
+        }
+        return result;
+    }
+
+    private static double getDistanceToEdges(double[] polygon, double x, double y) {
+        double result = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < polygon.length; i += 2) {
+            double ax = polygon[i];
+            double ay = polygon[i + 1];
+            double lx = polygon[(i + 2) % polygon.length] - ax;
+            double ly = polygon[(i + 3) % polygon.length] - ay;
+            double t = max(0.0, min(1.0, ((x - ax) * lx + (y - ay) * ly) / (lx * lx + ly * ly)));
+            double dx = ax + lx * t - x;
+            double dy = ay + ly * t - y;
+            result = min(result, dx * dx + dy * dy);
+        }
+        return sqrt(result);
+    }
+
+    public enum Objective {
+        /**
+         * Maximizes the font size, and so the size of the letters.
+         */
+        FONT_SIZE,
+        /**
+         * Maximizes the width of the walls between the light shades.
+         */
+        WALL_WIDTH
+    }
+
+    /**
+     * The best specification found and the measures of its layout.
+     */
+    public static final class Result {
+        private final ClockSpec spec;
+        private final double wallWidth;
+        private final double clearance;
+        private final long evaluations;
+        private final long nanos;
+
+        private Result(ClockSpec spec, double wallWidth, double clearance, long evaluations, long nanos) {
+            this.spec = spec;
+            this.wallWidth = wallWidth;
+            this.clearance = clearance;
+            this.evaluations = evaluations;
+            this.nanos = nanos;
+        }
+
+        public ClockSpec getSpec() {
+            return spec;
+        }
+
+        public double getWallWidth() {
+            return wallWidth;
+        }
+
+        public double getClearance() {
+            return clearance;
+        }
+
+        /**
+         * Returns the number of layouts which have been evaluated in all workers.
+         */
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    private static final class Candidate {
+        private final double[] values;
+        private final double score;
+        private final double wallWidth;
+        private final double clearance;
+        private final double violation;
+        private long evaluations;
+
+        private Candidate(double[] values, double score, double wallWidth, double clearance, double violation) {
+            this.values = values;
+            this.score = score;
+            this.wallWidth = wallWidth;
+            this.clearance = clearance;
+            this.violation = violation;
+        }
+
+        /**
+         * Valid candidates are better than invalid ones. Of two valid candidates, the one with the higher score and
+         * then with the thicker walls is better, of two invalid ones the one which violates the constraints less.
+         */
+        private boolean isBetterThan(Candidate other) {
+            if (violation > 0.0 || other.violation > 0.0) {
+                return violation < other.violation;
+            }
+            return score > other.score || score == other.score && wallWidth > other.wallWidth;
+        }
+    }
+}
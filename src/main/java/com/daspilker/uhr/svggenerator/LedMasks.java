@@ -0,0 +1,269 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * The LEDs which are lit at each step of twelve hours, as one bit mask per row. The anodes are wired per row and the
+ * cathodes per column, cathode 0 being the rightmost column, so bit {@code i} of a row mask drives cathode {@code i},
+ * which is column {@code columns - 1 - i}. The step of {@code h:mm} is
+ * {@code ((h % hours) * 60 + mm) / minutesPerStep}, where {@code hours} is the number of hour words of the language.
+ * <p>
+ * Each word of the language is lit at the same position in all phrases. The positions are searched so that every
+ * phrase is read in order, with at least one cell between two words in the same row.
+ * <p>
+ * The table is written as C header or as binary file. The binary file starts with the magic {@code UHRM} and a header
+ * of single bytes for the version, the rows, the columns and the bytes per mask, followed by the minutes per step and
+ * the number of steps as 16 bit integers. Then follow the masks, step by step and row by row. All integers are little
+ * endian.
+ */
+final class LedMasks {
+    private static final int MAXIMUM_COLUMNS = Long.SIZE;
+    private static final byte[] MAGIC = {'U', 'H', 'R', 'M'};
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final int MAXIMUM_ROWS = 255;
+
+    private final int rows;
+    private final int columns;
+    private final int hours;
+    private final int minutesPerStep;
+    private final List<List<Language.Word>> phrases;
+    private final long[][] masks;
+
+    LedMasks(Language language, ClockSpec spec) {
+        rows = spec.getRows();
+        columns = spec.getColumns();
+        if (columns > MAXIMUM_COLUMNS || rows > MAXIMUM_ROWS) {
+            throw new IllegalArgumentException(format(ENGLISH, "LED masks support at most %d columns and %d rows",
+                    MAXIMUM_COLUMNS, MAXIMUM_ROWS));
+        }
+        hours = language.getHours();
+        minutesPerStep = language.getMinutesPerStep();
+        phrases = language.getPhrases();
+
+        String[] text = new String[rows];
+        for (int i = 0; i < rows; i += 1) {
+            StringBuilder row = new StringBuilder();
+            for (int j = 0; j < columns; j += 1) {
+                row.append(spec.getCharacter(i, j));
+            }
+            text[i] = row.toString().toUpperCase(ENGLISH);
+        }
+        Map<Language.Word, int[]> positions = findPositions(text);
+
+        masks = new long[phrases.size()][rows];
+        for (int step = 0; step < phrases.size(); step += 1) {
+            for (Language.Word word : phrases.get(step)) {
+                int[] position = positions.get(word);
+                for (int j = position[1]; j < position[1] + word.getText().length(); j += 1) {
+                    masks[step][position[0]] |= 1L << (columns - 1 - j);
+                }
+            }
+        }
+    }
+
+    int getSteps() {
+        return masks.length;
+    }
+
+    int getMinutesPerStep() {
+        return minutesPerStep;
+    }
+
+    long getMask(int step, int row) {
+        return masks[step][row];
+    }
+
+    void writeHeader(Writer writer) throws IOException {
+        String type = "uint" + getBytesPerMask() * Byte.SIZE + "_t";
+        writer.write("/* generated by uhr-svg-generator, do not edit */\n");
+        writer.write("#ifndef UHR_LED_MASKS_H\n#define UHR_LED_MASKS_H\n\n#include <stdint.h>\n\n");
+        writer.write(format(ENGLISH, "#define UHR_ROWS %d\n#define UHR_COLUMNS %d\n#define UHR_HOURS %d\n" +
+                "#define UHR_MINUTES_PER_STEP %d\n#define UHR_STEPS %d\n\n", rows, columns, hours, minutesPerStep,
+                masks.length));
+        writer.write("/* uhr_led_masks[step][row], bit i drives cathode i, which is column UHR_COLUMNS - 1 - i */\n");
+        writer.write("#define UHR_STEP(hour, minute) \\\n" +
+                "    ((((hour) % UHR_HOURS) * 60 + (minute)) / UHR_MINUTES_PER_STEP)\n\n");
+        writer.write(format(ENGLISH, "static const %s uhr_led_masks[UHR_STEPS][UHR_ROWS] = {\n", type));
+        String suffix = getBytesPerMask() == Long.BYTES ? "ULL" : "";
+        for (int step = 0; step < masks.length; step += 1) {
+            writer.write("    {");
+            for (int i = 0; i < rows; i += 1) {
+                writer.write(i == 0 ? "0x" : ", 0x");
+                String hex = Long.toHexString(masks[step][i]);
+                for (int j = hex.length(); j < getBytesPerMask() * 2; j += 1) {
+                    writer.write('0');
+                }
+                writer.write(hex);
+                writer.write(suffix);
+            }
+            writer.write(step < masks.length - 1 ? "}, /* " : "}  /* ");
+            writer.write(getTime(step));
+            for (Language.Word word : phrases.get(step)) {
+                writer.write(' ');
+                writer.write(word.getText());
+            }
+            writer.write(" */\n");
+        }
+        writer.write("};\n\n#endif\n");
+        writer.flush();
+    }
+
+    void writeTable(OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + masks.length * rows * getBytesPerMask()).order(LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.put((byte) FILE_FORMAT_VERSION);
+        buffer.put((byte) rows);
+        buffer.put((byte) columns);
+        buffer.put((byte) getBytesPerMask());
+        buffer.putShort((short) minutesPerStep);
+        buffer.putShort((short) masks.length);
+        for (long[] step : masks) {
+            for (long mask : step) {
+                for (int i = 0; i < getBytesPerMask(); i += 1) {
+                    buffer.put((byte) (mask >>> (i * Byte.SIZE)));
+                }
+            }
+        }
+        out.write(buffer.array());
+    }
+
+    /**
+     * Returns the smallest of 1, 2, 4 or 8 bytes which hold the mask of a row.
+     */
+    private int getBytesPerMask() {
+        int result = 1;
+        while (result * Byte.SIZE < columns) {
+            result *= 2;
+        }
+        return result;
+    }
+
+    private String getTime(int step) {
+        int minutes = step * minutesPerStep;
+        int hour = minutes / 60 % hours;
+        return format(ENGLISH, "%2d:%02d", hour == 0 ? hours : hour, minutes % 60);
+    }
+
+    /**
+     * Searches a position for each word, as row and column, so that all phrases are read in order. The words are
+     * assigned in an order which respects the phrases, each trying its occurrences on the grid from top to bottom.
+     */
+    private Map<Language.Word, int[]> findPositions(String[] text) {
+        List<Language.Word> words = new ArrayList<>();
+        Map<Language.Word, Integer> indices = new HashMap<>();
+        for (List<Language.Word> phrase : phrases) {
+            for (Language.Word word : phrase) {
+                if (!indices.containsKey(word)) {
+                    indices.put(word, words.size());
+                    words.add(word);
+                }
+            }
+        }
+        boolean[][] before = new boolean[words.size()][words.size()];
+        for (List<Language.Word> phrase : phrases) {
+            for (int i = 0; i < phrase.size(); i += 1) {
+                for (int j = i + 1; j < phrase.size(); j += 1) {
+                    before[indices.get(phrase.get(i))][indices.get(phrase.get(j))] = true;
+                }
+            }
+        }
+
+        List<Integer> order = new ArrayList<>();
+        boolean[] ordered = new boolean[words.size()];
+        while (order.size() < words.size()) {
+            int next = -1;
+            for (int i = 0; i < words.size() && next < 0; i += 1) {
+                if (!ordered[i]) {
+                    next = i;
+                    for (int j = 0; j < words.size(); j += 1) {
+                        if (before[j][i] && !ordered[j]) {
+                            next = -1;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (next < 0) {
+                throw new IllegalArgumentException("phrases contradict each other in the order of their words");
+            }
+            ordered[next] = true;
+            order.add(next);
+        }
+
+        List<List<int[]>> candidates = new ArrayList<>();
+        for (Language.Word word : words) {
+            List<int[]> occurrences = new ArrayList<>();
+            for (int i = 0; i < rows; i += 1) {
+                for (int j = text[i].indexOf(word.getText()); j >= 0; j = text[i].indexOf(word.getText(), j + 1)) {
+                    occurrences.add(new int[]{i, j});
+                }
+            }
+            if (occurrences.isEmpty()) {
+                throw new IllegalArgumentException("word not found on the grid: " + word);
+            }
+            candidates.add(occurrences);
+        }
+
+        int[][] assigned = new int[words.size()][];
+        if (!assign(0, order, words, before, candidates, assigned)) {
+            throw new IllegalArgumentException("the phrases can not be read on the grid in order");
+        }
+        Map<Language.Word, int[]> result = new HashMap<>();
+        for (int i = 0; i < words.size(); i += 1) {
+            result.put(words.get(i), assigned[i]);
+        }
+        return result;
+    }
+
+    private static boolean assign(int index, List<Integer> order, List<Language.Word> words, boolean[][] before,
+                                  List<List<int[]>> candidates, int[][] assigned) {
+        if (index == order.size()) {
+            return true;
+        }
+        int word = order.get(index);
+        for (int[] candidate : candidates.get(word)) {
+            boolean fits = true;
+            for (int other = 0; other < words.size() && fits; other += 1) {
+                if (before[other][word] && assigned[other] != null) {
+                    int otherEnd = assigned[other][1] + words.get(other).getText().length();
+                    fits = candidate[0] > assigned[other][0] ||
+                            candidate[0] == assigned[other][0] && candidate[1] > otherEnd;
+                }
+            }
+            if (fits) {
+                assigned[word] = candidate;
+                if (assign(index + 1, order, words, before, candidates, assigned)) {
+                    return true;
+                }
+                assigned[word] = null;
+            }
+        }
+        return false;
+    }
+}
@@ -15,10 +15,51 @@
 */
 package com.daspilker.uhr.svggenerator;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
 
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Generates the design files of the default clock. The {@code uhr.output} system property selects where they are
+ * written: to a directory, which is the working directory by default, to a ZIP archive if it ends with {@code .zip},
+ * or as ZIP archive to stdout if it is {@code -}.
+ */
 public class Main {
     public static void main(String[] args) throws IOException {
+        Generator generator = new Generator();
+        configure(generator);
+        generator.setStreaming(true);
+        generator.setExecutor(ForkJoinPool.commonPool());
+        generator.setOutputCache(OutputCache.getSharedInstance());
+        generator.setMetricsReport(System.getProperty("uhr.metricsReport"));
+        generator.setLanguage(Language.GERMAN);
+        generator.setOutputFileNameLedMaskHeader("masks.h");
+        generator.setOutputFileNameLedMaskTable("masks.bin");
+        String output = System.getProperty("uhr.output", "");
+        if (output.equals("-")) {
+            try (ZipSink sink = new ZipSink(new FileOutputStream(FileDescriptor.out).getChannel())) {
+                generator.setOutputSink(sink);
+                generator.generate();
+            }
+        } else if (output.endsWith(".zip")) {
+            try (ZipSink sink = new ZipSink(FileChannel.open(Paths.get(output), CREATE, TRUNCATE_EXISTING, WRITE))) {
+                generator.setOutputSink(sink);
+                generator.generate();
+            }
+        } else {
+            generator.setOutputSink(new DirectorySink(Paths.get(output)));
+            generator.generate();
+        }
+    }
+
+    static void configure(Generator generator) {
         String[] text = {
                 "ESLISTEF\u00DCNF",
                 "VIERTELZEHN",
@@ -31,8 +72,8 @@ public class Main {
                 "ZEHNEUNDUHR"
         };
 
-        Generator generator = new Generator();
         generator.setFontName("DIN Schablonierschrift");
+        generator.setFontFile(System.getProperty("uhr.fontFile"));
         generator.setFontSize(16.0f);
         generator.setWidth(300.0);
         generator.setHeight(300.0);
@@ -68,6 +109,5 @@ public class Main {
         generator.setLedPinDistanceX(5.08);
         generator.setLedPinDistanceY(5.08);
         generator.setFill(false);
-        generator.generate();
     }
 }
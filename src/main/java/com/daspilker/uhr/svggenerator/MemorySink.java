@@ -0,0 +1,72 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the design files in memory, so that they can be served or uploaded without a round trip through the disk. A
+ * file is available once its stream has been closed. Writing a file again replaces it.
+ */
+public class MemorySink implements OutputSink {
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+    @Override
+    public OutputStream open(String fileName) {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    files.put(fileName, toByteArray());
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the content of the file, or {@code null} if no such file has been written.
+     */
+    public byte[] get(String fileName) {
+        return files.get(fileName);
+    }
+
+    /**
+     * Returns all files written so far, sorted by file name.
+     */
+    public Map<String, byte[]> getFiles() {
+        return Collections.unmodifiableMap(new TreeMap<>(files));
+    }
+
+    /**
+     * Writes all files to another sink, e.g. to a {@link ZipSink} once it is known that the generation has succeeded.
+     */
+    public void writeTo(OutputSink sink) throws IOException {
+        for (Map.Entry<String, byte[]> file : getFiles().entrySet()) {
+            try (OutputStream out = sink.open(file.getKey())) {
+                out.write(file.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the wall time, allocated bytes, shape and path segment counts and output size of each phase of a generation
+ * run. Each phase is also committed as {@link PhaseEvent flight recorder event}. Phases of different panels may be
+ * measured concurrently, but each phase must start and end on the same thread.
+ */
+final class Metrics {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_SUPPORTED = THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean &&
+            ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).isThreadAllocatedMemorySupported();
+
+    private final long start = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+    private long wallNanos;
+
+    Phase start(String name, Panel panel) {
+        return new Phase(name, panel);
+    }
+
+    /**
+     * Ends the run. All phases must have ended before.
+     */
+    void end() {
+        wallNanos = System.nanoTime() - start;
+    }
+
+    List<Phase> getPhases() {
+        synchronized (phases) {
+            return new ArrayList<>(phases);
+        }
+    }
+
+    String toJson() {
+        StringBuilder result = new StringBuilder();
+        result.append("{\n  \"wallNanos\": ").append(wallNanos).append(",\n  \"phases\": [");
+        List<Phase> phases = getPhases();
+        for (int i = 0; i < phases.size(); i += 1) {
+            Phase phase = phases.get(i);
+            result.append(i == 0 ? "\n" : ",\n");
+            result.append("    {\"phase\": ").append(Json.quote(phase.name));
+            result.append(", \"panel\": ").append(phase.panel == null ? "null" : Json.quote(phase.panel.name()));
+            result.append(", \"wallNanos\": ").append(phase.wallNanos);
+            result.append(", \"allocatedBytes\": ").append(phase.allocatedBytes);
+            result.append(", \"shapes\": ").append(phase.shapes);
+            result.append(", \"segments\": ").append(phase.segments);
+            result.append(", \"outputBytes\": ").append(phase.outputBytes).append('}');
+        }
+        result.append("\n  ]\n}\n");
+        return result.toString();
+    }
+
+    private static long getAllocatedBytes() {
+        if (!ALLOCATION_SUPPORTED) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    final class Phase {
+        private final String name;
+        private final Panel panel;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long startNanos;
+        private final long startAllocatedBytes;
+        private long wallNanos;
+        private long allocatedBytes;
+        private long shapes;
+        private long segments;
+        private long outputBytes;
+
+        private Phase(String name, Panel panel) {
+            this.name = name;
+            this.panel = panel;
+            event.begin();
+            startAllocatedBytes = getAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        void addShapes(long shapes) {
+            this.shapes += shapes;
+        }
+
+        void addSegments(long segments) {
+            this.segments += segments;
+        }
+
+        void addOutputBytes(long outputBytes) {
+            this.outputBytes += outputBytes;
+        }
+
+        void end() {
+            wallNanos = System.nanoTime() - startNanos;
+            allocatedBytes = getAllocatedBytes() - startAllocatedBytes;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.panel = panel == null ? null : panel.name();
+                event.allocatedBytes = allocatedBytes;
+                event.shapes = shapes;
+                event.segments = segments;
+                event.outputBytes = outputBytes;
+                event.commit();
+            }
+            synchronized (phases) {
+                phases.add(this);
+            }
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Panel getPanel() {
+            return panel;
+        }
+
+        long getWallNanos() {
+            return wallNanos;
+        }
+    }
+}
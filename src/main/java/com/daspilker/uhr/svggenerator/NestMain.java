@@ -0,0 +1,80 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Packs the panels of one or more clocks onto sheets of stock material and writes the sheets to the current
+ * directory. Without manifest, the panels of the default clock from {@link Main} are packed, otherwise those of each
+ * variant of a {@link BatchMain batch manifest}. The time for the search may be given in seconds with or without a
+ * manifest, an argument which is a number is taken as time, any other as manifest.
+ */
+public class NestMain {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3 || !args[0].matches("[0-9.]+x[0-9.]+")) {
+            exitWithUsage();
+        }
+        String manifest = null;
+        String seconds = null;
+        for (int i = 1; i < args.length; i += 1) {
+            // a manifest whose name is a number can be given with its directory, e.g. ./1
+            if (seconds == null && args[i].matches("[0-9.]+")) {
+                seconds = args[i];
+            } else if (manifest == null) {
+                manifest = args[i];
+            } else {
+                exitWithUsage();
+            }
+        }
+        String[] size = args[0].split("x");
+        Nester nester = new Nester(Double.parseDouble(size[0]), Double.parseDouble(size[1]));
+        if (seconds != null) {
+            nester.setTimeBudget((long) (Double.parseDouble(seconds) * 1000.0));
+        }
+
+        if (manifest != null) {
+            for (BatchMain.Variant variant : BatchMain.readManifest(manifest)) {
+                Generator generator = new Generator();
+                Main.configure(generator);
+                for (int i = 0; i < variant.names.size(); i += 1) {
+                    Parameters.apply(generator, variant.names.get(i), variant.values.get(i));
+                }
+                nester.add(variant.output, generator);
+            }
+        } else {
+            Generator generator = new Generator();
+            Main.configure(generator);
+            nester.add("clock", generator);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            nester.setExecutor(executor);
+            nester.nest(new DirectorySink(Paths.get("")));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void exitWithUsage() {
+        System.err.println("usage: NestMain <sheetWidth>x<sheetHeight> [manifest.csv] [seconds]");
+        System.exit(2);
+    }
+}
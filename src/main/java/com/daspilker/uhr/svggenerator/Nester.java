@@ -0,0 +1,393 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Packs the panels of one or more clocks onto sheets of stock material. Each panel is packed as its bounding box. The
+ * boxes are placed by the maximal rectangles algorithm, the order in which they are placed is searched for the packing
+ * with the fewest sheets and the least used last sheet, so that its rest can be used for the next order. The search
+ * runs on all threads of the executor until the time budget is used up.
+ * <p>
+ * Each sheet is written as SVG file, named {@code sheet-1.svg} and so on, together with a report of the utilization
+ * of each sheet and the position of each panel in {@code nesting.json}.
+ */
+public class Nester {
+    private static final Logger LOGGER = Logger.getLogger(Nester.class.getName());
+    private static final int STALE_ITERATIONS = 10000;
+
+    private final double sheetWidth;
+    private final double sheetHeight;
+    private final List<Item> items = new ArrayList<>();
+    private double spacing = 2.0;
+    private boolean rotation = true;
+    private long timeBudget = 2000;
+    private ExecutorService executor;
+
+    public Nester(double sheetWidth, double sheetHeight) {
+        this.sheetWidth = sheetWidth;
+        this.sheetHeight = sheetHeight;
+    }
+
+    /**
+     * Sets the minimum distance between panels and between panels and the edge of the sheet. The default is 2 mm.
+     */
+    public void setSpacing(double spacing) {
+        this.spacing = spacing;
+    }
+
+    /**
+     * Sets whether panels may be rotated by 90 degrees. Rotation is allowed by default.
+     */
+    public void setRotation(boolean rotation) {
+        this.rotation = rotation;
+    }
+
+    /**
+     * Sets the time in milliseconds for searching the best packing. The default is two seconds.
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Sets the executor to search on. Without executor, the search runs on the calling thread only.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adds all panels of a clock. The panels are named after the clock and the panel in the report.
+     */
+    public void add(String name, Generator generator) throws IOException {
+        for (Map.Entry<Panel, RecordingRenderer> entry : generator.record().entrySet()) {
+            Item item = new Item(name + "/" + entry.getKey().name().toLowerCase(ENGLISH), entry.getValue());
+            boolean fits = item.width + 2.0 * spacing <= sheetWidth && item.height + 2.0 * spacing <= sheetHeight;
+            boolean fitsRotated = item.height + 2.0 * spacing <= sheetWidth && item.width + 2.0 * spacing <= sheetHeight;
+            if (!fits && !(rotation && fitsRotated)) {
+                throw new IllegalArgumentException(format(ENGLISH, "%s (%.1f x %.1f mm) does not fit on the sheet",
+                        item.name, item.width, item.height));
+            }
+            items.add(item);
+        }
+    }
+
+    /**
+     * Searches the best packing and writes the sheets and the report to the sink.
+     */
+    public void nest(OutputSink sink) throws IOException {
+        long deadline = System.nanoTime() + timeBudget * 1000000L;
+        Packing best;
+        if (executor == null) {
+            best = search(0, deadline);
+        } else {
+            int threads = Runtime.getRuntime().availableProcessors();
+            List<Callable<Packing>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i += 1) {
+                int seed = i;
+                tasks.add(() -> search(seed, deadline));
+            }
+            best = null;
+            for (Packing packing : Generator.awaitAll(executor, tasks)) {
+                if (best == null || packing.score < best.score) {
+                    best = packing;
+                }
+            }
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(format(ENGLISH, "{\n  \"sheetWidth\": %s,\n  \"sheetHeight\": %s,\n  \"utilization\": %.4f,\n",
+                sheetWidth, sheetHeight, best.getUtilization()));
+        report.append("  \"sheets\": [");
+        for (int i = 0; i < best.sheets.size(); i += 1) {
+            Sheet sheet = best.sheets.get(i);
+            String fileName = "sheet-" + (i + 1) + ".svg";
+            writeSheet(sink, fileName, sheet);
+            report.append(i == 0 ? "\n" : ",\n");
+            report.append(format(ENGLISH, "    {\"file\": %s, \"utilization\": %.4f, \"panels\": [", Json.quote(fileName),
+                    sheet.getUtilization()));
+            for (int j = 0; j < sheet.placements.size(); j += 1) {
+                Placement placement = sheet.placements.get(j);
+                report.append(j == 0 ? "\n" : ",\n");
+                report.append(format(ENGLISH, "      {\"name\": %s, \"x\": %.3f, \"y\": %.3f, \"rotated\": %b}",
+                        Json.quote(placement.item.name), placement.x, placement.y, placement.rotated));
+            }
+            report.append("\n    ]}");
+        }
+        report.append("\n  ]\n}\n");
+        try (OutputStream out = sink.open("nesting.json")) {
+            out.write(report.toString().getBytes(UTF_8));
+        }
+        LOGGER.info(format(ENGLISH, "placed %d panels on %d sheets with %.1f %% utilization", items.size(),
+                best.sheets.size(), best.getUtilization() * 100.0));
+    }
+
+    private void writeSheet(OutputSink sink, String fileName, Sheet sheet) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(sink.open(fileName), UTF_8));
+        try (Renderer renderer = new SvgRenderer(writer, sheetWidth, sheetHeight,
+                Generator.STROKE_CUT.getLineWidth(), false, -1)) {
+            for (Placement placement : sheet.placements) {
+                Rectangle2D bounds = placement.item.bounds;
+                AffineTransform transform;
+                if (placement.rotated) {
+                    // rotated by 90 degrees clockwise, the bottom edge of the panel becomes its left edge
+                    transform = new AffineTransform(0.0, 1.0, -1.0, 0.0, placement.x + bounds.getMaxY(),
+                            placement.y - bounds.getMinX());
+                } else {
+                    transform = AffineTransform.getTranslateInstance(placement.x - bounds.getMinX(),
+                            placement.y - bounds.getMinY());
+                }
+                placement.item.recording.replay(renderer, transform);
+            }
+        }
+    }
+
+    /**
+     * Starts with the items ordered by decreasing area, or a random order for all but the first seed, and improves
+     * the order by swapping items until the deadline.
+     */
+    private Packing search(int seed, long deadline) {
+        Random random = new Random(seed);
+        List<Item> order = new ArrayList<>(items);
+        order.sort(Comparator.comparingDouble((Item item) -> item.width * item.height).reversed());
+        if (seed > 0) {
+            Collections.shuffle(order, random);
+        }
+        Packing best = place(order);
+        double lowerBound = ceil(getItemArea(items) / (sheetWidth * sheetHeight));
+        int stale = 0;
+        while (order.size() > 1 && System.nanoTime() < deadline &&
+                !(best.sheets.size() <= lowerBound && stale > STALE_ITERATIONS)) {
+            int i = random.nextInt(order.size());
+            int j = random.nextInt(order.size());
+            Collections.swap(order, i, j);
+            Packing packing = place(order);
+            if (packing.score <= best.score) {
+                stale = packing.score < best.score ? 0 : stale + 1;
+                best = packing;
+            } else {
+                Collections.swap(order, i, j);
+                stale += 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Places the items in the given order, each on the first sheet it fits on.
+     */
+    private Packing place(List<Item> order) {
+        Packing packing = new Packing();
+        for (Item item : order) {
+            Placement placement = null;
+            for (Sheet sheet : packing.sheets) {
+                placement = sheet.insert(item);
+                if (placement != null) {
+                    break;
+                }
+            }
+            if (placement == null) {
+                Sheet sheet = new Sheet();
+                packing.sheets.add(sheet);
+                sheet.insert(item);
+            }
+        }
+        Sheet last = packing.sheets.get(packing.sheets.size() - 1);
+        packing.score = (packing.sheets.size() - 1) * sheetWidth * sheetHeight + getItemArea(last.getItems());
+        return packing;
+    }
+
+    private static double getItemArea(List<Item> items) {
+        double result = 0.0;
+        for (Item item : items) {
+            result += item.width * item.height;
+        }
+        return result;
+    }
+
+    private static final class Item {
+        private final String name;
+        private final RecordingRenderer recording;
+        private final Rectangle2D bounds;
+        private final double width;
+        private final double height;
+
+        private Item(String name, RecordingRenderer recording) {
+            this.name = name;
+            this.recording = recording;
+            this.bounds = recording.getBounds();
+            this.width = bounds.getWidth();
+            this.height = bounds.getHeight();
+        }
+    }
+
+    private static final class Placement {
+        private final Item item;
+        private final double x;
+        private final double y;
+        private final boolean rotated;
+
+        private Placement(Item item, double x, double y, boolean rotated) {
+            this.item = item;
+            this.x = x;
+            this.y = y;
+            this.rotated = rotated;
+        }
+    }
+
+    /**
+     * The sheets for one order of the items. The score is the area of all sheets but the last plus the area of the
+     * items on the last sheet, so fewer sheets and a last sheet with less on it are better.
+     */
+    private final class Packing {
+        private final List<Sheet> sheets = new ArrayList<>();
+        private double score;
+
+        private double getUtilization() {
+            List<Item> placed = new ArrayList<>();
+            for (Sheet sheet : sheets) {
+                placed.addAll(sheet.getItems());
+            }
+            return getItemArea(placed) / (sheets.size() * sheetWidth * sheetHeight);
+        }
+    }
+
+    /**
+     * A sheet with the free space kept as maximal rectangles. Each item occupies its size plus the spacing, so the free
+     * space starts at the spacing and extends to the edge of the sheet.
+     */
+    private final class Sheet {
+        private final List<Rectangle2D> free = new ArrayList<>();
+        private final List<Placement> placements = new ArrayList<>();
+
+        private Sheet() {
+            free.add(new Rectangle2D.Double(spacing, spacing, sheetWidth - spacing, sheetHeight - spacing));
+        }
+
+        /**
+         * Places the item in the free rectangle which leaves the shortest side over, or returns {@code null} if it
+         * does not fit.
+         */
+        private Placement insert(Item item) {
+            double width = item.width + spacing;
+            double height = item.height + spacing;
+            Rectangle2D bestRectangle = null;
+            boolean bestRotated = false;
+            double bestFit = Double.MAX_VALUE;
+            for (Rectangle2D rectangle : free) {
+                if (width <= rectangle.getWidth() && height <= rectangle.getHeight()) {
+                    double fit = min(rectangle.getWidth() - width, rectangle.getHeight() - height);
+                    if (fit < bestFit) {
+                        bestRectangle = rectangle;
+                        bestRotated = false;
+                        bestFit = fit;
+                    }
+                }
+                if (rotation && height <= rectangle.getWidth() && width <= rectangle.getHeight()) {
+                    double fit = min(rectangle.getWidth() - height, rectangle.getHeight() - width);
+                    if (fit < bestFit) {
+                        bestRectangle = rectangle;
+                        bestRotated = true;
+                        bestFit = fit;
+                    }
+                }
+            }
+            if (bestRectangle == null) {
+                return null;
+            }
+
+            Rectangle2D used = new Rectangle2D.Double(bestRectangle.getX(), bestRectangle.getY(),
+                    bestRotated ? height : width, bestRotated ? width : height);
+            List<Rectangle2D> split = new ArrayList<>();
+            for (Iterator<Rectangle2D> iterator = free.iterator(); iterator.hasNext(); ) {
+                Rectangle2D rectangle = iterator.next();
+                if (!rectangle.intersects(used)) {
+                    continue;
+                }
+                iterator.remove();
+                if (used.getMinX() > rectangle.getMinX()) {
+                    split.add(new Rectangle2D.Double(rectangle.getMinX(), rectangle.getMinY(),
+                            used.getMinX() - rectangle.getMinX(), rectangle.getHeight()));
+                }
+                if (used.getMaxX() < rectangle.getMaxX()) {
+                    split.add(new Rectangle2D.Double(used.getMaxX(), rectangle.getMinY(),
+                            rectangle.getMaxX() - used.getMaxX(), rectangle.getHeight()));
+                }
+                if (used.getMinY() > rectangle.getMinY()) {
+                    split.add(new Rectangle2D.Double(rectangle.getMinX(), rectangle.getMinY(),
+                            rectangle.getWidth(), used.getMinY() - rectangle.getMinY()));
+                }
+                if (used.getMaxY() < rectangle.getMaxY()) {
+                    split.add(new Rectangle2D.Double(rectangle.getMinX(), used.getMaxY(),
+                            rectangle.getWidth(), rectangle.getMaxY() - used.getMaxY()));
+                }
+            }
+            for (Rectangle2D rectangle : split) {
+                if (!isContained(rectangle, split) && !isContained(rectangle, free)) {
+                    free.add(rectangle);
+                }
+            }
+            Placement placement = new Placement(item, used.getX(), used.getY(), bestRotated);
+            placements.add(placement);
+            return placement;
+        }
+
+        private boolean isContained(Rectangle2D rectangle, List<Rectangle2D> rectangles) {
+            for (Rectangle2D other : rectangles) {
+                if (other != rectangle && other.contains(rectangle) &&
+                        !(other.equals(rectangle) && rectangles.indexOf(other) > rectangles.indexOf(rectangle))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private List<Item> getItems() {
+            List<Item> result = new ArrayList<>();
+            for (Placement placement : placements) {
+                result.add(placement.item);
+            }
+            return result;
+        }
+
+        private double getUtilization() {
+            return getItemArea(getItems()) / (sheetWidth * sheetHeight);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+/**
+ * Formats numbers with a fixed number of decimal digits without creating garbage. Trailing zeros and the decimal
+ * point of integers are omitted, so {@code 1.5} with three digits is written as {@code 1.5}, not {@code 1.500}.
+ */
+final class Numbers {
+    static final int MAXIMUM_DIGITS = 9;
+
+    private static final long[] POWERS = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+    // above this, the scaled value is no longer exact in a double
+    private static final double MAXIMUM_UNITS = 1L << 53;
+
+    private Numbers() {
+    }
+
+    /**
+     * Returns the value in units of the last decimal digit, e.g. {@code 1235} for {@code 1.2345} with three digits.
+     */
+    static long toUnits(double value, int digits) {
+        return Math.round(value * POWERS[digits]);
+    }
+
+    /**
+     * Appends the value rounded to the given number of decimal digits. Values which are too large for the precision
+     * and values which are not finite are appended like {@link StringBuilder#append(double)} does.
+     */
+    static void append(StringBuilder buffer, double value, int digits) {
+        double units = value * POWERS[digits];
+        if (Double.isNaN(units) || Math.abs(units) >= MAXIMUM_UNITS) {
+            buffer.append(value);
+        } else {
+            appendUnits(buffer, Math.round(units), digits, true);
+        }
+    }
+
+    static String format(double value, int digits) {
+        StringBuilder buffer = new StringBuilder();
+        append(buffer, value, digits);
+        return buffer.toString();
+    }
+
+    /**
+     * Appends a value given in units of the last decimal digit. Without leading zero, {@code 0.5} is written as
+     * {@code .5}, which is valid in SVG path data.
+     */
+    static void appendUnits(StringBuilder buffer, long units, int digits, boolean leadingZero) {
+        if (units < 0) {
+            buffer.append('-');
+            units = -units;
+        }
+        long integer = units / POWERS[digits];
+        long fraction = units % POWERS[digits];
+        if (integer != 0 || fraction == 0 || leadingZero) {
+            buffer.append(integer);
+        }
+        if (fraction != 0) {
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits -= 1;
+            }
+            buffer.append('.');
+            for (int i = digits - 1; i > 0 && fraction < POWERS[i]; i -= 1) {
+                buffer.append('0');
+            }
+            buffer.append(fraction);
+        }
+    }
+
+    /**
+     * Returns whether {@link #appendUnits(StringBuilder, long, int, boolean)} appends a decimal point.
+     */
+    static boolean hasFraction(long units, int digits) {
+        return units % POWERS[digits] != 0;
+    }
+
+    /**
+     * Returns whether the absolute value is below one, so that it starts with the decimal point if written without
+     * leading zero.
+     */
+    static boolean isBelowOne(long units, int digits) {
+        return Math.abs(units) < POWERS[digits];
+    }
+}
@@ -0,0 +1,215 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * A thread-safe, content-addressed cache for design files. Each file is stored under a hash of all inputs of its panel,
+ * so a panel is only drawn again when one of its inputs has changed. The least recently used files are evicted when
+ * the cache exceeds its size. If a directory is given, files are also stored on disk, so that later runs can reuse
+ * them.
+ * <p>
+ * The {@link #getSharedInstance() shared instance} is used by the command line and server entry points. Its disk tier
+ * is enabled by setting the {@code uhr.outputCacheDirectory} system property.
+ */
+public class OutputCache {
+    public static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024L * 1024L;
+
+    private static final OutputCache SHARED_INSTANCE = new OutputCache(DEFAULT_MAXIMUM_BYTES, getDirectoryProperty());
+
+    private final long maximumBytes;
+    private final File directory;
+    private final LinkedHashMap<String, byte[]> files = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long bytes;
+
+    public OutputCache() {
+        this(DEFAULT_MAXIMUM_BYTES, null);
+    }
+
+    /**
+     * @param maximumBytes the maximum size of all files kept in memory
+     * @param directory    the directory for the disk tier, or {@code null} to keep files in memory only
+     */
+    public OutputCache(long maximumBytes, File directory) {
+        if (maximumBytes < 1) {
+            throw new IllegalArgumentException("maximumBytes must be positive");
+        }
+        this.maximumBytes = maximumBytes;
+        this.directory = directory;
+    }
+
+    public static OutputCache getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Returns the content of the file stored under the given key or {@code null} if there is none.
+     */
+    public byte[] get(String key) {
+        byte[] content;
+        synchronized (files) {
+            content = files.get(key);
+        }
+        if (content == null && directory != null) {
+            try {
+                content = Files.readAllBytes(getFile(key));
+                diskHits.incrementAndGet();
+                putInMemory(key, content);
+            } catch (NoSuchFileException e) {
+                // not cached on disk
+            } catch (IOException e) {
+                // the disk tier is only an optimization, the file is generated again
+            }
+        }
+        if (content == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return content;
+    }
+
+    /**
+     * Stores the content of a file under the given key. The content must not be modified afterwards.
+     */
+    public void put(String key, byte[] content) {
+        putInMemory(key, content);
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory.toPath());
+            Path tempFile = Files.createTempFile(directory.toPath(), "output", ".tmp");
+            try {
+                Files.write(tempFile, content);
+                try {
+                    Files.move(tempFile, getFile(key), ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, getFile(key), REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            // the disk tier is only an optimization, the file is still cached in memory
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of hits which have been served from the disk tier.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        long size;
+        synchronized (files) {
+            size = bytes;
+        }
+        return format(ENGLISH, "output cache: %d hits (%d from disk), %d misses, %d evictions, %d of %d bytes",
+                getHits(), getDiskHits(), getMisses(), getEvictions(), size, maximumBytes);
+    }
+
+    /**
+     * Computes a key from the given inputs. Inputs are converted by {@link String#valueOf(Object)}, arrays of strings
+     * are converted element by element.
+     */
+    static String computeKey(Object... inputs) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Object input : inputs) {
+            if (input instanceof String[]) {
+                for (String element : (String[]) input) {
+                    digest.update(element.getBytes(UTF_8));
+                    digest.update((byte) 0);
+                }
+            } else {
+                digest.update(String.valueOf(input).getBytes(UTF_8));
+            }
+            digest.update((byte) 0);
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    private void putInMemory(String key, byte[] content) {
+        synchronized (files) {
+            byte[] previous = files.put(key, content);
+            if (previous != null) {
+                bytes -= previous.length;
+            }
+            bytes += content.length;
+            Iterator<byte[]> iterator = files.values().iterator();
+            while (bytes > maximumBytes && iterator.hasNext()) {
+                byte[] eldest = iterator.next();
+                iterator.remove();
+                bytes -= eldest.length;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private Path getFile(String key) {
+        return new File(directory, key).toPath();
+    }
+
+    private static File getDirectoryProperty() {
+        String directory = System.getProperty("uhr.outputCacheDirectory");
+        return directory == null ? null : new File(directory);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Receives the design files written by the {@link Generator}. Sinks must support opening several files concurrently,
+ * because panels may be generated in parallel.
+ */
+public interface OutputSink {
+    /**
+     * Opens a design file for writing. The file is complete when the returned stream is closed.
+     *
+     * @param fileName the output file name of a panel, its extension selects the output format
+     */
+    OutputStream open(String fileName) throws IOException;
+
+    /**
+     * Discards a design file which could not be completed, instead of closing its stream. The default does nothing,
+     * which drops files that are buffered until their stream is closed.
+     *
+     * @param out the stream returned by {@link #open(String)}
+     */
+    default void discard(String fileName, OutputStream out) throws IOException {
+    }
+}
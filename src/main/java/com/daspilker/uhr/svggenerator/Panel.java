@@ -0,0 +1,28 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+/**
+ * The panels which make up a clock. Each panel is written to a design file of its own.
+ */
+public enum Panel {
+    FRONT,
+    LIGHT_SHADES,
+    LIGHT_SHADE_RASTER,
+    DISTANCE_RASTER_1,
+    DISTANCE_RASTER_2,
+    LED_CARRIER
+}
@@ -0,0 +1,205 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * Applies generator parameters given by name, e.g. from a manifest or a configuration file. The names are the
+ * property names of the {@link Generator} setters. The rows of the text are separated by {@code |}.
+ */
+final class Parameters {
+    static final String TEXT_ROW_SEPARATOR = "|";
+
+    private Parameters() {
+    }
+
+    static void apply(Generator generator, String name, String value) {
+        switch (name) {
+            case "fontName":
+                generator.setFontName(value);
+                break;
+            case "fontFile":
+                generator.setFontFile(value);
+                break;
+            case "fontSize":
+                generator.setFontSize(Float.parseFloat(value));
+                break;
+            case "text":
+                generator.setText(value.split("\\" + TEXT_ROW_SEPARATOR));
+                break;
+            case "width":
+                generator.setWidth(Double.parseDouble(value));
+                break;
+            case "height":
+                generator.setHeight(Double.parseDouble(value));
+                break;
+            case "borderX":
+                generator.setBorderX(Double.parseDouble(value));
+                break;
+            case "borderY":
+                generator.setBorderY(Double.parseDouble(value));
+                break;
+            case "lightShadeExtra":
+                generator.setLightShadeExtra(Double.parseDouble(value));
+                break;
+            case "frameWidth":
+                generator.setFrameWidth(Double.parseDouble(value));
+                break;
+            case "screwDiameter":
+                generator.setScrewDiameter(Double.parseDouble(value));
+                break;
+            case "connectorDiameter":
+                generator.setConnectorDiameter(Double.parseDouble(value));
+                break;
+            case "wireDiameter":
+                generator.setWireDiameter(Double.parseDouble(value));
+                break;
+            case "nutSize":
+                generator.setNutSize(Double.parseDouble(value));
+                break;
+            case "depth":
+                generator.setDepth(Double.parseDouble(value));
+                break;
+            case "connectorDistance":
+                generator.setConnectorDistance(Double.parseDouble(value));
+                break;
+            case "anodesConnectorOffsetX":
+                generator.setAnodesConnectorOffsetX(Double.parseDouble(value));
+                break;
+            case "anodesConnectorOffsetY":
+                generator.setAnodesConnectorOffsetY(Double.parseDouble(value));
+                break;
+            case "cathodesConnectorOffsetX":
+                generator.setCathodesConnectorOffsetX(Double.parseDouble(value));
+                break;
+            case "cathodesConnectorOffsetY":
+                generator.setCathodesConnectorOffsetY(Double.parseDouble(value));
+                break;
+            case "pcbScrew1X":
+                generator.setPcbScrew1X(Double.parseDouble(value));
+                break;
+            case "pcbScrew1Y":
+                generator.setPcbScrew1Y(Double.parseDouble(value));
+                break;
+            case "pcbScrew2X":
+                generator.setPcbScrew2X(Double.parseDouble(value));
+                break;
+            case "pcbScrew2Y":
+                generator.setPcbScrew2Y(Double.parseDouble(value));
+                break;
+            case "pcbScrew3X":
+                generator.setPcbScrew3X(Double.parseDouble(value));
+                break;
+            case "pcbScrew3Y":
+                generator.setPcbScrew3Y(Double.parseDouble(value));
+                break;
+            case "ledPinWidth":
+                generator.setLedPinWidth(Double.parseDouble(value));
+                break;
+            case "ledPinHeight":
+                generator.setLedPinHeight(Double.parseDouble(value));
+                break;
+            case "ledPinDistanceX":
+                generator.setLedPinDistanceX(Double.parseDouble(value));
+                break;
+            case "ledPinDistanceY":
+                generator.setLedPinDistanceY(Double.parseDouble(value));
+                break;
+            case "outputFileNameFront":
+                generator.setOutputFileNameFront(value);
+                break;
+            case "outputFileNameLightShades":
+                generator.setOutputFileNameLightShades(value);
+                break;
+            case "outputFileNameLightShadeRaster":
+                generator.setOutputFileNameLightShadeRaster(value);
+                break;
+            case "outputFileNameDistanceRaster1":
+                generator.setOutputFileNameDistanceRaster1(value);
+                break;
+            case "outputFileNameDistanceRaster2":
+                generator.setOutputFileNameDistanceRaster2(value);
+                break;
+            case "outputFileNameLedCarrier":
+                generator.setOutputFileNameLedCarrier(value);
+                break;
+            case "outputFileNameLedMaskHeader":
+                generator.setOutputFileNameLedMaskHeader(value);
+                break;
+            case "outputFileNameLedMaskTable":
+                generator.setOutputFileNameLedMaskTable(value);
+                break;
+            case "language":
+                try {
+                    generator.setLanguage(Language.read(Paths.get(value)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                break;
+            case "fill":
+                generator.setFill(Boolean.parseBoolean(value));
+                break;
+            case "laserFeed":
+                generator.setLaserFeed(Double.parseDouble(value));
+                break;
+            case "laserPower":
+                generator.setLaserPower(Integer.parseInt(value));
+                break;
+            case "laserPasses":
+                generator.setLaserPasses(Integer.parseInt(value));
+                break;
+            case "previewDpi":
+                generator.setPreviewDpi(Double.parseDouble(value));
+                break;
+            case "chordTolerance":
+                generator.setChordTolerance(Double.parseDouble(value));
+                break;
+            case "minimumCutDistance":
+                generator.setMinimumCutDistance(Double.parseDouble(value));
+                break;
+            case "failOnCollisions":
+                generator.setFailOnCollisions(Boolean.parseBoolean(value));
+                break;
+            case "tileSize":
+                String[] tileSize = value.split("x");
+                if (tileSize.length != 2) {
+                    throw new IllegalArgumentException("tileSize must be given as <width>x<height>: " + value);
+                }
+                generator.setTileSize(Double.parseDouble(tileSize[0]), Double.parseDouble(tileSize[1]));
+                break;
+            case "streaming":
+                generator.setStreaming(Boolean.parseBoolean(value));
+                break;
+            case "symbols":
+                generator.setSymbols(Boolean.parseBoolean(value));
+                break;
+            case "optimizeTravel":
+                generator.setOptimizeTravel(Boolean.parseBoolean(value));
+                break;
+            case "deduplicationTolerance":
+                generator.setDeduplicationTolerance(Double.parseDouble(value));
+                break;
+            case "precision":
+                generator.setPrecision(Integer.parseInt(value));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown parameter: " + name);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static java.awt.geom.PathIterator.SEG_CLOSE;
+import static java.awt.geom.PathIterator.SEG_CUBICTO;
+import static java.awt.geom.PathIterator.SEG_LINETO;
+import static java.awt.geom.PathIterator.SEG_MOVETO;
+import static java.awt.geom.PathIterator.SEG_QUADTO;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Removes the nodes of a path which are not needed to keep within a chord tolerance. Curves whose control points are
+ * within the tolerance of their chord become straight segments, and runs of straight segments are thinned out with the
+ * Douglas-Peucker algorithm. Half of the tolerance is spent on each step, so the result deviates at most by the
+ * tolerance from the original path. Curves which bend more are kept as they are, so no path gets more nodes.
+ * <p>
+ * A closed subpath of straight segments keeps at least three corners, so that small features like the dots of letters
+ * do not vanish.
+ */
+final class PathSimplifier {
+    private static final Map<Glyph, Map<Double, Glyph>> GLYPHS = new WeakHashMap<>();
+
+    private PathSimplifier() {
+    }
+
+    /**
+     * Returns the glyph with a simplified outline. Glyphs are simplified once per tolerance and shared, keyed by the
+     * original glyph, as long as that is in use.
+     */
+    static Glyph simplify(Glyph glyph, double tolerance) {
+        Glyph result;
+        synchronized (GLYPHS) {
+            result = GLYPHS.computeIfAbsent(glyph, g -> new HashMap<>()).get(tolerance);
+        }
+        if (result == null) {
+            result = new Glyph(simplify(glyph.getOutline(), tolerance));
+            synchronized (GLYPHS) {
+                GLYPHS.computeIfAbsent(glyph, g -> new HashMap<>()).put(tolerance, result);
+            }
+        }
+        return result;
+    }
+
+    static Path2D simplify(Shape shape, double tolerance) {
+        double half = tolerance / 2.0;
+        Path2D.Double result = new Path2D.Double();
+        PathIterator iterator = shape.getPathIterator(null);
+        result.setWindingRule(iterator.getWindingRule());
+        double[] coordinates = new double[6];
+        // the straight segments since the start of the subpath or the end of the last curve which has been kept
+        Run run = new Run();
+        boolean curved = false;
+        for (; !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coordinates);
+            if (type == SEG_MOVETO) {
+                run.flush(result, half, false);
+                run.start(coordinates[0], coordinates[1]);
+                result.moveTo(coordinates[0], coordinates[1]);
+                curved = false;
+            } else if (type == SEG_LINETO) {
+                run.add(coordinates[0], coordinates[1]);
+            } else if (type == SEG_QUADTO || type == SEG_CUBICTO) {
+                int end = type == SEG_QUADTO ? 2 : 4;
+                boolean flat = true;
+                for (int i = 0; i < end; i += 2) {
+                    flat &= getDistanceSquared(coordinates[i], coordinates[i + 1], run.getLastX(), run.getLastY(),
+                            coordinates[end], coordinates[end + 1]) <= half * half;
+                }
+                if (flat) {
+                    run.add(coordinates[end], coordinates[end + 1]);
+                } else {
+                    run.flush(result, half, false);
+                    if (type == SEG_QUADTO) {
+                        result.quadTo(coordinates[0], coordinates[1], coordinates[2], coordinates[3]);
+                    } else {
+                        result.curveTo(coordinates[0], coordinates[1], coordinates[2], coordinates[3],
+                                coordinates[4], coordinates[5]);
+                    }
+                    run.restart(coordinates[end], coordinates[end + 1]);
+                    curved = true;
+                }
+            } else if (type == SEG_CLOSE) {
+                run.flush(result, half, !curved);
+                result.closePath();
+                // a segment after the close starts at the start of the closed subpath
+                run.start(run.startX, run.startY);
+            }
+        }
+        run.flush(result, half, false);
+        return result;
+    }
+
+    /**
+     * Returns the number of segments of the shape, including moves and closes.
+     */
+    static int countNodes(Shape shape) {
+        int result = 0;
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            result += 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the squared distance between a point and a segment.
+     */
+    private static double getDistanceSquared(double x, double y, double ax, double ay, double bx, double by) {
+        double lx = bx - ax;
+        double ly = by - ay;
+        double length = lx * lx + ly * ly;
+        double t = length == 0.0 ? 0.0 : max(0.0, min(1.0, ((x - ax) * lx + (y - ay) * ly) / length));
+        double dx = ax + lx * t - x;
+        double dy = ay + ly * t - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * The corners of a run of straight segments. The first corner has already been written when the run is flushed.
+     */
+    private static final class Run {
+        private double[] points = new double[64];
+        private int size;
+        private double startX;
+        private double startY;
+
+        /**
+         * Starts the run of a new subpath.
+         */
+        private void start(double x, double y) {
+            startX = x;
+            startY = y;
+            restart(x, y);
+        }
+
+        /**
+         * Starts a run within the current subpath.
+         */
+        private void restart(double x, double y) {
+            size = 0;
+            add(x, y);
+        }
+
+        private void add(double x, double y) {
+            if (size == points.length) {
+                double[] grown = new double[size * 2];
+                System.arraycopy(points, 0, grown, 0, size);
+                points = grown;
+            }
+            points[size] = x;
+            points[size + 1] = y;
+            size += 2;
+        }
+
+        private double getLastX() {
+            return points[size - 2];
+        }
+
+        private double getLastY() {
+            return points[size - 1];
+        }
+
+        /**
+         * Writes the corners which are needed, except the first. A run which is a whole closed subpath is simplified
+         * as ring, otherwise both ends of the run are kept.
+         */
+        private void flush(Path2D path, double tolerance, boolean ring) {
+            int count = size / 2;
+            // the end of a closed subpath often repeats its start
+            if (ring && count > 1 && points[0] == points[size - 2] && points[1] == points[size - 1]) {
+                count -= 1;
+            }
+            if (count < 2) {
+                return;
+            }
+            boolean[] keep = new boolean[count];
+            keep[0] = true;
+            if (ring) {
+                // split the ring at the corner farthest from the first one, keeping at least one more corner
+                int farthest = 0;
+                double maximum = -1.0;
+                for (int i = 1; i < count; i += 1) {
+                    double dx = points[i * 2] - points[0];
+                    double dy = points[i * 2 + 1] - points[1];
+                    if (dx * dx + dy * dy > maximum) {
+                        maximum = dx * dx + dy * dy;
+                        farthest = i;
+                    }
+                }
+                keep[farthest] = true;
+                simplify(0, farthest, count, tolerance, keep, count > 2 && farthest > 1);
+                simplify(farthest, count, count, tolerance, keep, count > 2 && farthest == 1);
+            } else {
+                keep[count - 1] = true;
+                simplify(0, count - 1, count, tolerance, keep, false);
+            }
+            for (int i = 1; i < count; i += 1) {
+                if (keep[i]) {
+                    path.lineTo(points[i * 2], points[i * 2 + 1]);
+                }
+            }
+            size = 0;
+        }
+
+        /**
+         * Keeps the corner between the first and the last one which is farthest from the line between them, if it is
+         * farther than the tolerance or if it must be kept anyway, and continues with both halves. The last index may
+         * be the number of corners, which stands for the first corner of a ring.
+         */
+        private void simplify(int first, int last, int count, double tolerance, boolean[] keep, boolean force) {
+            if (last - first < 2) {
+                return;
+            }
+            double ax = points[first * 2];
+            double ay = points[first * 2 + 1];
+            double bx = points[(last % count) * 2];
+            double by = points[(last % count) * 2 + 1];
+            int farthest = -1;
+            double maximum = -1.0;
+            for (int i = first + 1; i < last; i += 1) {
+                double distance = getDistanceSquared(points[i * 2], points[i * 2 + 1], ax, ay, bx, by);
+                if (distance > maximum) {
+                    maximum = distance;
+                    farthest = i;
+                }
+            }
+            if (force || maximum > tolerance * tolerance) {
+                keep[farthest] = true;
+                simplify(first, farthest, count, tolerance, keep, false);
+                simplify(farthest, last, count, tolerance, keep, false);
+            }
+        }
+    }
+}
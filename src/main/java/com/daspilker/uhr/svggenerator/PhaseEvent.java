@@ -0,0 +1,55 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for a phase of a generation run. Panel phases name their panel, the phases which are shared
+ * by all panels do not.
+ */
+@Name("com.daspilker.uhr.GenerationPhase")
+@Label("Generation Phase")
+@Category("DAS.UHR")
+@StackTrace(false)
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Panel")
+    String panel;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the generating thread during the phase")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Shapes")
+    long shapes;
+
+    @Label("Path Segments")
+    long segments;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputBytes;
+}
@@ -0,0 +1,276 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.KEY_STROKE_CONTROL;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.RenderingHints.VALUE_STROKE_PURE;
+import static java.lang.Math.ceil;
+import static java.lang.Math.floor;
+import static java.lang.Math.round;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Rasterizes the panel into an image at the given resolution and writes it as PNG when the renderer is closed. This
+ * is meant for previews, so cuts are drawn one pixel wide regardless of the resolution, and the image is compressed
+ * for speed rather than size.
+ * <p>
+ * Shapes which are placed several times, e.g. the glyphs, are rasterized once into a stamp which is then copied to
+ * each placement. The placements are rounded to a quarter of a pixel, so there are at most sixteen stamps per shape.
+ * The stamps are shared by all renderers, keyed by the shape itself, so the glyph outlines of the shared
+ * {@link GlyphCache} are only rasterized once per character, size and resolution.
+ */
+class PngRenderer implements Renderer {
+    private static final int SUBPIXELS = 4;
+    private static final int PADDING = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // the image is held in memory with four bytes per pixel
+    private static final long MAXIMUM_PIXELS = 1L << 24;
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Map<Shape, Map<StampKey, Stamp>> STAMPS = new WeakHashMap<>();
+
+    private final OutputStream out;
+    private final double scale;
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+    private final Map<StampKey, Stamp> stamps = new HashMap<>();
+    private Color color = Color.BLACK;
+
+    /**
+     * @param dpi the resolution in dots per inch
+     */
+    PngRenderer(OutputStream out, double width, double height, double dpi) {
+        checkSize(width, height, dpi);
+        this.out = out;
+        this.scale = dpi / 25.4;
+        image = new BufferedImage(getPixels(width, dpi), getPixels(height, dpi), BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        configure(graphics, scale);
+    }
+
+    /**
+     * Throws an {@link IllegalArgumentException} if an image of the given size and resolution would exceed the
+     * maximum number of pixels.
+     */
+    static void checkSize(double width, double height, double dpi) {
+        long pixels = (long) getPixels(width, dpi) * getPixels(height, dpi);
+        if (pixels > MAXIMUM_PIXELS) {
+            throw new IllegalArgumentException(format("a preview of %s x %s mm at %s dpi exceeds %d pixels",
+                    width, height, dpi, MAXIMUM_PIXELS));
+        }
+    }
+
+    private static int getPixels(double length, double dpi) {
+        return (int) Math.max(1.0, Math.min(Integer.MAX_VALUE, ceil(length * dpi / 25.4)));
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.color = color;
+        graphics.setColor(color);
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        graphics.draw(shape);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        graphics.fill(shape);
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) {
+        place(key, shape, false, x, y);
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) {
+        place(key, shape, true, x, y);
+    }
+
+    @Override
+    public void close() throws IOException {
+        graphics.dispose();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream deflated = new DeflaterOutputStream(data, deflater, BUFFER_SIZE)) {
+            // each row is written with the sub filter, which stores the difference to the pixel on the left
+            byte[] row = new byte[1 + width * 3];
+            row[0] = 1;
+            for (int i = 0; i < height; i += 1) {
+                int left = 0;
+                for (int j = 0; j < width; j += 1) {
+                    int pixel = pixels[i * width + j];
+                    row[1 + j * 3] = (byte) ((pixel >> 16) - (left >> 16));
+                    row[2 + j * 3] = (byte) ((pixel >> 8) - (left >> 8));
+                    row[3 + j * 3] = (byte) (pixel - left);
+                    left = pixel;
+                }
+                deflated.write(row);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        try (DataOutputStream png = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE))) {
+            png.write(SIGNATURE);
+            ByteBuffer header = ByteBuffer.allocate(13);
+            header.putInt(width).putInt(height);
+            // 8 bits per channel, RGB, deflate, adaptive filtering, no interlace
+            header.put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk(png, "IHDR", header.array());
+            writeChunk(png, "IDAT", data.toByteArray());
+            writeChunk(png, "IEND", new byte[0]);
+        }
+    }
+
+    private static void writeChunk(DataOutputStream png, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        png.writeInt(data.length);
+        png.write(typeBytes);
+        png.write(data);
+        png.writeInt((int) crc.getValue());
+    }
+
+    private void place(String key, Shape shape, boolean fill, double x, double y) {
+        double px = x * scale;
+        double py = y * scale;
+        int ix = (int) floor(px);
+        int iy = (int) floor(py);
+        int fx = (int) round((px - ix) * SUBPIXELS);
+        int fy = (int) round((py - iy) * SUBPIXELS);
+        StampKey stampKey = new StampKey(key, fill, color.getRGB(), scale, fx, fy);
+        Stamp stamp = stamps.get(stampKey);
+        if (stamp == null) {
+            synchronized (STAMPS) {
+                stamp = STAMPS.computeIfAbsent(shape, s -> new HashMap<>()).get(stampKey);
+            }
+            if (stamp == null) {
+                stamp = new Stamp(shape, fill, color, scale, (double) fx / SUBPIXELS, (double) fy / SUBPIXELS);
+                synchronized (STAMPS) {
+                    STAMPS.computeIfAbsent(shape, s -> new HashMap<>()).put(stampKey, stamp);
+                }
+            }
+            stamps.put(stampKey, stamp);
+        }
+        AffineTransform transform = graphics.getTransform();
+        graphics.setTransform(new AffineTransform());
+        graphics.drawImage(stamp.image, ix + stamp.x, iy + stamp.y, null);
+        graphics.setTransform(transform);
+    }
+
+    private static void configure(Graphics2D g, double scale) {
+        g.setRenderingHint(KEY_ANTIALIASING, VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(KEY_STROKE_CONTROL, VALUE_STROKE_PURE);
+        g.scale(scale, scale);
+        g.setStroke(new BasicStroke((float) (1.0 / scale)));
+    }
+
+    /**
+     * A shape rasterized at a fraction of a pixel, with the offset of the image from the placement in pixels.
+     */
+    private static final class Stamp {
+        private final BufferedImage image;
+        private final int x;
+        private final int y;
+
+        private Stamp(Shape shape, boolean fill, Color color, double scale, double fx, double fy) {
+            Rectangle2D bounds = shape.getBounds2D();
+            x = (int) floor(bounds.getMinX() * scale + fx) - PADDING;
+            y = (int) floor(bounds.getMinY() * scale + fy) - PADDING;
+            int width = (int) ceil(bounds.getMaxX() * scale + fx) + PADDING - x;
+            int height = (int) ceil(bounds.getMaxY() * scale + fy) + PADDING - y;
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = image.createGraphics();
+            g.translate(fx - x, fy - y);
+            configure(g, scale);
+            g.setColor(color);
+            if (fill) {
+                g.fill(shape);
+            } else {
+                g.draw(shape);
+            }
+            g.dispose();
+        }
+    }
+
+    private static final class StampKey {
+        private final String key;
+        private final boolean fill;
+        private final int color;
+        private final double scale;
+        private final int fx;
+        private final int fy;
+
+        private StampKey(String key, boolean fill, int color, double scale, int fx, int fy) {
+            this.key = key;
+            this.fill = fill;
+            this.color = color;
+            this.scale = scale;
+            this.fx = fx;
+            this.fy = fy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StampKey)) {
+                return false;
+            }
+            StampKey other = (StampKey) o;
+            return key.equals(other.key) && fill == other.fill && color == other.color && scale == other.scale &&
+                    fx == other.fx && fy == other.fy;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, fill, color, scale, fx, fy);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records everything drawn or filled, so that it can be replayed onto another renderer at a different position, e.g.
+ * to place a panel on a sheet. The bounds of the recording are measured while recording.
+ */
+class RecordingRenderer implements Renderer {
+    private final List<Operation> operations = new ArrayList<>();
+    private final BoundsRenderer boundsRenderer = new BoundsRenderer();
+
+    @Override
+    public void setColor(Color color) {
+        operations.add(new Operation(color, null, null, false, 0.0, 0.0));
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        operations.add(new Operation(null, null, shape, false, 0.0, 0.0));
+        boundsRenderer.draw(shape);
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        operations.add(new Operation(null, null, shape, true, 0.0, 0.0));
+        boundsRenderer.fill(shape);
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) {
+        operations.add(new Operation(null, key, shape, false, x, y));
+        boundsRenderer.draw(key, shape, x, y);
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) {
+        operations.add(new Operation(null, key, shape, true, x, y));
+        boundsRenderer.fill(key, shape, x, y);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Returns the bounds of the recording, or an empty rectangle if nothing has been recorded.
+     */
+    Rectangle2D getBounds() {
+        Rectangle2D bounds = boundsRenderer.getBounds();
+        return bounds == null ? new Rectangle2D.Double() : bounds;
+    }
+
+    /**
+     * Replays the recording onto the renderer. Instanced shapes stay instanced as long as the transform is a
+     * translation.
+     */
+    void replay(Renderer renderer, AffineTransform transform) throws IOException {
+        boolean translation = transform.getType() == AffineTransform.TYPE_TRANSLATION ||
+                transform.getType() == AffineTransform.TYPE_IDENTITY;
+        double tx = transform.getTranslateX();
+        double ty = transform.getTranslateY();
+        for (Operation operation : operations) {
+            if (operation.color != null) {
+                renderer.setColor(operation.color);
+            } else if (operation.key != null && translation) {
+                if (operation.fill) {
+                    renderer.fill(operation.key, operation.shape, operation.x + tx, operation.y + ty);
+                } else {
+                    renderer.draw(operation.key, operation.shape, operation.x + tx, operation.y + ty);
+                }
+            } else {
+                Shape shape = operation.key == null ? operation.shape :
+                        Shapes.translate(operation.shape, operation.x, operation.y);
+                shape = translation ? Shapes.translate(shape, tx, ty) : transform.createTransformedShape(shape);
+                if (operation.fill) {
+                    renderer.fill(shape);
+                } else {
+                    renderer.draw(shape);
+                }
+            }
+        }
+    }
+
+    private static final class Operation {
+        private final Color color;
+        private final String key;
+        private final Shape shape;
+        private final boolean fill;
+        private final double x;
+        private final double y;
+
+        private Operation(Color color, String key, Shape shape, boolean fill, double x, double y) {
+            this.color = color;
+            this.key = key;
+            this.shape = shape;
+            this.fill = fill;
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the shapes of a panel while it is drawn. Shapes which are drawn are cut, shapes which are filled are
+ * engraved. Closing the renderer completes the output.
+ */
+interface Renderer extends Closeable {
+    void setColor(Color color) throws IOException;
+
+    void draw(Shape shape) throws IOException;
+
+    void fill(Shape shape) throws IOException;
+
+    /**
+     * Draws a shape which is placed several times, translated by the given offsets. All shapes drawn or filled with
+     * the same key must be equal, so that a renderer can define the shape once and reference it for each placement.
+     */
+    default void draw(String key, Shape shape, double x, double y) throws IOException {
+        draw(Shapes.translate(shape, x, y));
+    }
+
+    /**
+     * Fills a shape which is placed several times, see {@link #draw(String, Shape, double, double)}.
+     */
+    default void fill(String key, Shape shape, double x, double y) throws IOException {
+        fill(Shapes.translate(shape, x, y));
+    }
+}
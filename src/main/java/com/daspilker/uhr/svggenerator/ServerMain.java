@@ -0,0 +1,342 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Serves design files over HTTP, so that the JVM, the fonts and the glyph cache stay warm between requests. Generator
+ * parameters are posted as JSON object to {@code /generate}, using the same names as in a {@link BatchMain batch
+ * manifest}, and override the defaults from {@link Main}. The rows of the text may be given as array.
+ * <p>
+ * By default, all panels are returned as ZIP archive. The {@code panel} query parameter selects a single panel, e.g.
+ * {@code /generate?panel=front}, which is returned as it is, or as ZIP archive of its tiles if {@code tileSize} is
+ * set. The {@code format} query parameter selects the output format by file extension, {@code svg} being the default,
+ * {@code svgz} compressed SVG which is sent with gzip content encoding and {@code png} a quick preview. Panels are
+ * served from the shared output cache if they have been generated before. ZIP archives are streamed while the panels
+ * are written, so they are never held in memory as a whole. If a panel fails after the first entries have been sent,
+ * the connection is dropped before the end of the chunked body, so clients must check that the transfer completed, as
+ * e.g. curl does, before using the archive. Files and responses are limited to 64 MB. The statistics of the caches are
+ * available at {@code /stats}.
+ *
+ * <pre>
+ * curl -d '{"fontSize": 14, "fill": true}' http://localhost:8080/generate?panel=front
+ * </pre>
+ */
+public class ServerMain {
+    private static final Logger LOGGER = Logger.getLogger(ServerMain.class.getName());
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAXIMUM_REQUEST_SIZE = 64 * 1024;
+    private static final int MAXIMUM_TEXT_LENGTH = 4096;
+    // each file is held in memory while it is written, so the size of the response is limited as well
+    private static final int MAXIMUM_RESPONSE_SIZE = 64 * 1024 * 1024;
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("svgz", "image/svg+xml");
+        CONTENT_TYPES.put("dxf", "application/dxf");
+        CONTENT_TYPES.put("gcode", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("nc", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("ngc", "text/plain; charset=utf-8");
+        CONTENT_TYPES.put("png", "image/png");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 2) {
+            System.err.println("usage: ServerMain [port] [threads]");
+            System.exit(2);
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        warmUp();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/generate", ServerMain::handle);
+        server.createContext("/stats", ServerMain::handleStats);
+        server.start();
+        LOGGER.info(format("listening on port %d using %d threads", port, threads));
+    }
+
+    /**
+     * Generates the default clock once, so that fonts, glyphs and classes are loaded before the first request.
+     */
+    private static void warmUp() throws IOException {
+        long start = System.nanoTime();
+        Generator generator = new Generator();
+        Main.configure(generator);
+        generator.setStreaming(true);
+        generator.setOutputSink(new MemorySink());
+        generator.generate();
+        LOGGER.info(format(ENGLISH, "warmed up in %.1f ms", (System.nanoTime() - start) / 1e6));
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = generate(exchange, start);
+        } catch (RequestException e) {
+            status = e.status;
+            sendError(exchange, status, e.getMessage(), start);
+        } catch (CollisionException e) {
+            status = 422;
+            sendError(exchange, status, e.getMessage(), start);
+        } catch (IllegalArgumentException e) {
+            // limits which depend on the layout, e.g. the number of tiles, are only checked when generating
+            status = 400;
+            sendError(exchange, status, e.getMessage(), start);
+        } catch (IOException | RuntimeException e) {
+            status = 500;
+            sendError(exchange, status, e.toString(), start);
+        } catch (OutOfMemoryError e) {
+            // the buffers of the failed request can be collected, so that the other requests can go on
+            status = 503;
+            sendError(exchange, status, e.toString(), start);
+        }
+        // if the handler fails, the server drops the connection without closing the exchange
+        exchange.close();
+        LOGGER.info(format(ENGLISH, "%s %s %d %.1f ms", exchange.getRequestMethod(), exchange.getRequestURI(), status,
+                (System.nanoTime() - start) / 1e6));
+    }
+
+    private static void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            String stats = GlyphCache.getSharedInstance() + "\n" + OutputCache.getSharedInstance() + "\n";
+            sendResponse(exchange, 200, "text/plain; charset=utf-8", stats.getBytes(UTF_8), System.nanoTime());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static int generate(HttpExchange exchange, long start) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            throw new RequestException(405, "method not allowed");
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String extension = query.getOrDefault("format", "svg").toLowerCase(ENGLISH);
+        String contentType = CONTENT_TYPES.get(extension);
+        if (contentType == null) {
+            throw new RequestException(400, "unknown format: " + extension);
+        }
+        Panel panel = null;
+        if (query.containsKey("panel")) {
+            try {
+                panel = Panel.valueOf(query.get("panel").toUpperCase(ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new RequestException(400, "unknown panel: " + query.get("panel"));
+            }
+        }
+
+        Generator generator = new Generator();
+        Main.configure(generator);
+        generator.setStreaming(true);
+        generator.setOutputCache(OutputCache.getSharedInstance());
+        generator.setMaximumFileSize(MAXIMUM_RESPONSE_SIZE);
+        generator.setOutputFileNameFront("front." + extension);
+        generator.setOutputFileNameLightShades("shades." + extension);
+        generator.setOutputFileNameLightShadeRaster("raster." + extension);
+        generator.setOutputFileNameDistanceRaster1("distance1." + extension);
+        generator.setOutputFileNameDistanceRaster2("distance2." + extension);
+        generator.setOutputFileNameLedCarrier("led." + extension);
+        try {
+            for (Map.Entry<String, String> parameter : Json.parseObject(readBody(exchange)).entrySet()) {
+                // file names would give access to the file system of the server
+                if (parameter.getKey().startsWith("outputFileName") || parameter.getKey().equals("fontFile") ||
+                        parameter.getKey().equals("language")) {
+                    throw new IllegalArgumentException("parameter not allowed: " + parameter.getKey());
+                }
+                if (parameter.getKey().equals("text") && parameter.getValue().length() > MAXIMUM_TEXT_LENGTH) {
+                    throw new IllegalArgumentException("text exceeds " + MAXIMUM_TEXT_LENGTH + " characters");
+                }
+                Parameters.apply(generator, parameter.getKey(), parameter.getValue());
+            }
+            // an invalid specification is a bad request, not a failure of the generator
+            generator.getSpec();
+        } catch (IllegalArgumentException e) {
+            throw new RequestException(400, e.getMessage());
+        }
+
+        // the sinks are only closed on success, as closing them ends the response
+        Map<String, String> headers = new HashMap<>();
+        OutputStream body = new CountingOutputStream(new ResponseStream(exchange, headers, start),
+                MAXIMUM_RESPONSE_SIZE);
+        // the tiles of a single panel are several files, which are returned as ZIP archive as well
+        if (panel == null || generator.isTiled()) {
+            headers.put("Content-Type", "application/zip");
+            headers.put("Content-Disposition", "attachment; filename=\"clock.zip\"");
+            ZipSink zipSink = new ZipSink(body);
+            generator.setOutputSink(zipSink);
+            generator.generate(panel == null ? EnumSet.allOf(Panel.class) : EnumSet.of(panel));
+            zipSink.close();
+        } else {
+            headers.put("Content-Type", contentType);
+            if (extension.equals("svgz")) {
+                headers.put("Content-Encoding", "gzip");
+            }
+            ChannelSink channelSink = new ChannelSink(Channels.newChannel(body));
+            generator.setOutputSink(channelSink);
+            generator.generate(EnumSet.of(panel));
+            channelSink.close();
+        }
+        return 200;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                body.write(buffer, 0, n);
+                if (body.size() > MAXIMUM_REQUEST_SIZE) {
+                    throw new RequestException(413, "request exceeds " + MAXIMUM_REQUEST_SIZE + " bytes");
+                }
+            }
+        }
+        return new String(body.toByteArray(), UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0) {
+                    result.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends an error message. If the response has already been started, the error can no longer be sent, and an
+     * exception is thrown instead, so that the server drops the connection before the last chunk. Closing the exchange
+     * would end the body as if it was complete.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message, long start) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            LOGGER.warning(format("%s %s failed after the response was started: %s", exchange.getRequestMethod(),
+                    exchange.getRequestURI(), message));
+            throw new IOException("response aborted: " + message);
+        }
+        sendResponse(exchange, status, "text/plain; charset=utf-8", (message + "\n").getBytes(UTF_8), start);
+    }
+
+    private static void sendResponse(HttpExchange exchange, int status, String contentType, byte[] body,
+                                     long start) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        sendHeaders(exchange, status, body.length, start);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @param length the length of the body, or zero to send it in chunks
+     */
+    private static void sendHeaders(HttpExchange exchange, int status, long length, long start) throws IOException {
+        exchange.getResponseHeaders().set("Server-Timing",
+                format(ENGLISH, "generate;dur=%.1f", (System.nanoTime() - start) / 1e6));
+        exchange.sendResponseHeaders(status, length);
+    }
+
+    /**
+     * Streams the body of a response. The headers are sent with the first byte, so that errors which occur before
+     * anything is written, like collisions, can still be answered with an error status. A single panel is only written
+     * when it is complete, so it is either sent as a whole or not at all.
+     */
+    private static final class ResponseStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final Map<String, String> headers;
+        private final long start;
+        private OutputStream out;
+
+        private ResponseStream(HttpExchange exchange, Map<String, String> headers, long start) {
+            this.exchange = exchange;
+            this.headers = headers;
+            this.start = start;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            open().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            open().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            open().close();
+        }
+
+        private OutputStream open() throws IOException {
+            if (out == null) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+                }
+                sendHeaders(exchange, 200, 0, start);
+                out = exchange.getResponseBody();
+            }
+            return out;
+        }
+    }
+
+    private static class RequestException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
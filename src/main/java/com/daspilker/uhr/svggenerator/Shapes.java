@@ -0,0 +1,47 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+
+import static java.awt.geom.AffineTransform.getTranslateInstance;
+
+/**
+ * Geometry helpers for the shapes of a panel.
+ */
+final class Shapes {
+    private Shapes() {
+    }
+
+    /**
+     * Returns a translated copy of the shape. Ellipses and rectangles keep their type and paths keep their precision.
+     */
+    static Shape translate(Shape shape, double x, double y) {
+        if (shape instanceof Ellipse2D) {
+            Ellipse2D ellipse = (Ellipse2D) shape;
+            return new Ellipse2D.Double(ellipse.getX() + x, ellipse.getY() + y, ellipse.getWidth(), ellipse.getHeight());
+        } else if (shape instanceof Rectangle2D) {
+            Rectangle2D rectangle = (Rectangle2D) shape;
+            return new Rectangle2D.Double(rectangle.getX() + x, rectangle.getY() + y, rectangle.getWidth(), rectangle.getHeight());
+        } else if (shape instanceof Path2D) {
+            return ((Path2D) shape).createTransformedShape(getTranslateInstance(x, y));
+        }
+        return getTranslateInstance(x, y).createTransformedShape(shape);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.lang.String.join;
+
+/**
+ * Searches letter grids for a language and prints the best ones. Without language file, the German phrases of the
+ * default clock are used. Each grid is printed row by row and as value of the {@code text} parameter, so that it can
+ * be pasted into a {@link BatchMain batch manifest}.
+ */
+public class SolverMain {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3 || !args[0].matches("[0-9]+x[0-9]+")) {
+            System.err.println("usage: SolverMain <columns>x<rows> [language.properties] [seconds]");
+            System.exit(2);
+        }
+        String[] size = args[0].split("x");
+        Language language = args.length > 1 ? Language.read(Paths.get(args[1])) : Language.GERMAN;
+        GridSolver solver = new GridSolver(language, Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        if (args.length > 2) {
+            solver.setTimeBudget((long) (Double.parseDouble(args[2]) * 1000.0));
+        }
+
+        List<GridSolver.Solution> solutions = solver.solve();
+        if (solutions.isEmpty()) {
+            System.err.println("no grid found");
+            System.exit(1);
+        }
+        for (GridSolver.Solution solution : solutions) {
+            System.out.println(format("score %d", solution.getScore()));
+            for (String row : solution.getText()) {
+                System.out.println(row);
+            }
+            System.out.println("text=" + join(Parameters.TEXT_ROW_SEPARATOR, solution.getText()));
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the panel as SVG while it is drawn. Each shape is written as an element as soon as it is drawn, so that the
+ * document never has to be held in memory.
+ * <p>
+ * If symbols are enabled, shapes which are placed several times are defined once and each placement is written as a
+ * {@code use} element. Otherwise each placement is written as a plain path, for laser software which does not support
+ * {@code use} elements.
+ * <p>
+ * If a precision is given, all numbers are rounded to that many decimal digits and path data is written with relative
+ * commands, implicit command repetition and without redundant separators. The relative coordinates are computed from
+ * the rounded absolute coordinates, so rounding errors do not accumulate along a path.
+ */
+class SvgRenderer implements Renderer {
+    // values below round to zero with the finest precision, see Numbers.MAXIMUM_DIGITS
+    private static final double ZERO_TOLERANCE = 0.5e-9;
+
+    private final Writer writer;
+    private final String strokeWidth;
+    private final boolean symbols;
+    private final int precision;
+    private final Map<String, String> ids = new HashMap<>();
+    private final StringBuilder buffer = new StringBuilder();
+    private final double[] coords = new double[6];
+    private String color = "#000000";
+    private char command;
+    private boolean afterNumber;
+    private boolean afterFraction;
+
+    /**
+     * @param precision the number of decimal digits, or a negative number to write numbers in their shortest
+     *                  representation
+     */
+    SvgRenderer(Writer writer, double width, double height, float strokeWidth, boolean symbols, int precision)
+            throws IOException {
+        this.writer = writer;
+        this.strokeWidth = Float.toString(strokeWidth);
+        this.symbols = symbols;
+        this.precision = precision;
+
+        buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        buffer.append("<svg xmlns=\"http://www.w3.org/2000/svg\"");
+        if (symbols) {
+            buffer.append(" xmlns:xlink=\"http://www.w3.org/1999/xlink\"");
+        }
+        buffer.append(" width=\"");
+        appendNumber(width);
+        buffer.append("mm\" height=\"");
+        appendNumber(height);
+        buffer.append("mm\" viewBox=\"0 0 ");
+        appendNumber(width);
+        buffer.append(' ');
+        appendNumber(height);
+        buffer.append("\">\n");
+        flush();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.color = String.format("#%06x", color.getRGB() & 0xFFFFFF);
+    }
+
+    @Override
+    public void draw(Shape shape) throws IOException {
+        appendShape(shape, null);
+        appendStroke();
+        flush();
+    }
+
+    @Override
+    public void fill(Shape shape) throws IOException {
+        appendShape(shape, null);
+        appendFill(shape);
+        flush();
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) throws IOException {
+        if (symbols) {
+            appendUse(key, shape, x, y);
+            appendStroke();
+            flush();
+        } else {
+            draw(Shapes.translate(shape, x, y));
+        }
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) throws IOException {
+        if (symbols) {
+            appendUse(key, shape, x, y);
+            appendFill(shape);
+            flush();
+        } else {
+            fill(Shapes.translate(shape, x, y));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.append("</svg>\n");
+            flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void appendUse(String key, Shape shape, double x, double y) {
+        String id = ids.get(key);
+        if (id == null) {
+            id = "s" + ids.size();
+            ids.put(key, id);
+            buffer.append("<defs>");
+            appendShape(shape, id);
+            buffer.append("/></defs>\n");
+        }
+        buffer.append("<use xlink:href=\"#").append(id);
+        buffer.append("\" x=\"");
+        appendNumber(x);
+        buffer.append("\" y=\"");
+        appendNumber(y);
+        buffer.append('"');
+    }
+
+    private void appendStroke() {
+        buffer.append(" fill=\"none\" stroke=\"").append(color).append("\" stroke-width=\"").append(strokeWidth);
+        buffer.append("\"/>\n");
+    }
+
+    private void appendFill(Shape shape) {
+        if (!(shape instanceof Ellipse2D) && shape.getPathIterator(null).getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+            buffer.append(" fill-rule=\"evenodd\"");
+        }
+        buffer.append(" fill=\"").append(color).append("\"/>\n");
+    }
+
+    /**
+     * Appends the start of a circle or path element, the element is completed by the caller.
+     */
+    private void appendShape(Shape shape, String id) {
+        if (shape instanceof Ellipse2D && ((Ellipse2D) shape).getWidth() == ((Ellipse2D) shape).getHeight()) {
+            Ellipse2D ellipse = (Ellipse2D) shape;
+            buffer.append("<circle");
+            appendId(id);
+            buffer.append(" cx=\"");
+            appendNumber(ellipse.getCenterX());
+            buffer.append("\" cy=\"");
+            appendNumber(ellipse.getCenterY());
+            buffer.append("\" r=\"");
+            appendNumber(ellipse.getWidth() / 2.0);
+            buffer.append('"');
+            return;
+        }
+
+        buffer.append("<path");
+        appendId(id);
+        buffer.append(" d=\"");
+        if (precision >= 0) {
+            appendCompactPath(shape);
+            buffer.append('"');
+            return;
+        }
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            switch (iterator.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                    appendCommand('M', 2);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    appendCommand('L', 2);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    appendCommand('Q', 4);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    appendCommand('C', 6);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    buffer.append('Z');
+                    break;
+            }
+        }
+        buffer.append('"');
+    }
+
+    private void appendCompactPath(Shape shape) {
+        long x = 0;
+        long y = 0;
+        long startX = 0;
+        long startY = 0;
+        command = 0;
+        afterNumber = false;
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            if (type == PathIterator.SEG_CLOSE) {
+                appendCompactCommand('z');
+                x = startX;
+                y = startY;
+                continue;
+            }
+            int count = type == PathIterator.SEG_QUADTO ? 4 : type == PathIterator.SEG_CUBICTO ? 6 : 2;
+            long endX = Numbers.toUnits(coords[count - 2], precision);
+            long endY = Numbers.toUnits(coords[count - 1], precision);
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    if (command == 0) {
+                        appendCompactCommand('M');
+                        appendUnits(endX);
+                        appendUnits(endY);
+                    } else {
+                        appendCompactCommand('m');
+                        appendUnits(endX - x);
+                        appendUnits(endY - y);
+                        // further coordinate pairs after a moveto are implicit linetos
+                        command = 'l';
+                    }
+                    startX = endX;
+                    startY = endY;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    if (endX == x && endY == y) {
+                        continue;
+                    } else if (endY == y) {
+                        appendCompactCommand('h');
+                        appendUnits(endX - x);
+                    } else if (endX == x) {
+                        appendCompactCommand('v');
+                        appendUnits(endY - y);
+                    } else {
+                        appendCompactCommand('l');
+                        appendUnits(endX - x);
+                        appendUnits(endY - y);
+                    }
+                    break;
+                default:
+                    appendCompactCommand(type == PathIterator.SEG_QUADTO ? 'q' : 'c');
+                    for (int i = 0; i < count; i += 2) {
+                        appendUnits(Numbers.toUnits(coords[i], precision) - x);
+                        appendUnits(Numbers.toUnits(coords[i + 1], precision) - y);
+                    }
+                    break;
+            }
+            x = endX;
+            y = endY;
+        }
+    }
+
+    /**
+     * Appends the command unless it repeats the previous one.
+     */
+    private void appendCompactCommand(char command) {
+        if (command != this.command || command == 'z') {
+            buffer.append(command);
+            this.command = command;
+            afterNumber = false;
+        }
+    }
+
+    /**
+     * Appends a number of path data, separated from the previous number only if the sign or the decimal point does not
+     * separate them already.
+     */
+    private void appendUnits(long units) {
+        boolean fraction = Numbers.hasFraction(units, precision);
+        boolean startsWithPoint = fraction && Numbers.isBelowOne(units, precision);
+        if (afterNumber && units >= 0 && !(startsWithPoint && afterFraction)) {
+            buffer.append(' ');
+        }
+        Numbers.appendUnits(buffer, units, precision, false);
+        afterNumber = true;
+        afterFraction = fraction;
+    }
+
+    private void appendNumber(double value) {
+        if (precision >= 0) {
+            Numbers.append(buffer, value, precision);
+        } else {
+            buffer.append(formatNumber(value));
+        }
+    }
+
+    private void appendId(String id) {
+        if (id != null) {
+            buffer.append(" id=\"").append(id).append('"');
+        }
+    }
+
+    private void appendCommand(char command, int count) {
+        buffer.append(command);
+        for (int i = 0; i < count; i += 1) {
+            if (i > 0) {
+                buffer.append(' ');
+            }
+            buffer.append(formatNumber(coords[i]));
+        }
+    }
+
+    private void flush() throws IOException {
+        writer.append(buffer);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Returns the shortest representation of the number in plain decimal notation. Values closer to zero than the
+     * finest precision are rounding errors, e.g. of the sine of 180 degrees, and are written as zero.
+     */
+    static String formatNumber(double value) {
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        if (Math.abs(value) < ZERO_TOLERANCE) {
+            return "0";
+        }
+        // coordinates from glyph outlines are floats, which have a shorter representation
+        String result = value == (float) value ? Float.toString((float) value) : Double.toString(value);
+        // SVG allows exponents, but not all laser software reads them
+        return result.indexOf('E') < 0 ? result : new BigDecimal(result).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,518 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Math.hypot;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Reorders the cuts of a panel to reduce the distance the laser head travels without cutting. All cuts are collected
+ * until the renderer is closed, split into their contours and then passed on in optimized order. Contours which lie
+ * within a closed contour are always cut before the enclosing contour, so that parts do not drop out before their
+ * inner features have been cut. Open contours may be cut in reverse direction.
+ * <p>
+ * The order is built by a nearest neighbour heuristic and then improved by 2-opt moves. Filled shapes are engraved
+ * before all cuts in their original order.
+ */
+class TravelOptimizer implements Renderer {
+    private static final int TWO_OPT_WINDOW = 100;
+    private static final int TWO_OPT_MAX_PASSES = 20;
+    private static final String REVERSED_KEY_SUFFIX = "/reversed";
+
+    private final Renderer renderer;
+    private final List<Fill> fills = new ArrayList<>();
+    private final List<Contour> contours = new ArrayList<>();
+    private final Map<String, List<Path2D>> splitShapes = new HashMap<>();
+    private final Map<String, Path2D> reversedShapes = new HashMap<>();
+    private Color color;
+    private double travelBefore;
+    private double travelAfter;
+
+    TravelOptimizer(Renderer renderer) {
+        this.renderer = renderer;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    @Override
+    public void draw(Shape shape) {
+        for (Path2D contour : split(shape)) {
+            contours.add(new Contour(null, contour, 0.0, 0.0, color));
+        }
+    }
+
+    @Override
+    public void fill(Shape shape) {
+        fills.add(new Fill(null, shape, 0.0, 0.0, color));
+    }
+
+    @Override
+    public void draw(String key, Shape shape, double x, double y) {
+        List<Path2D> split = splitShapes.computeIfAbsent(key, k -> split(shape));
+        for (int i = 0; i < split.size(); i += 1) {
+            contours.add(new Contour(split.size() == 1 ? key : key + "/" + i, split.get(i), x, y, color));
+        }
+    }
+
+    @Override
+    public void fill(String key, Shape shape, double x, double y) {
+        fills.add(new Fill(key, shape, x, y, color));
+    }
+
+    /**
+     * Returns the estimated travel distance of the cuts in the order in which they have been drawn.
+     */
+    double getTravelBefore() {
+        return travelBefore;
+    }
+
+    /**
+     * Returns the estimated travel distance of the cuts in optimized order.
+     */
+    double getTravelAfter() {
+        return travelAfter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Fill fill : fills) {
+                renderer.setColor(fill.color);
+                if (fill.key == null) {
+                    renderer.fill(fill.shape);
+                } else {
+                    renderer.fill(fill.key, fill.shape, fill.x, fill.y);
+                }
+            }
+
+            travelBefore = computeTravel(contours);
+            List<Contour> order = optimize();
+            travelAfter = computeTravel(order);
+
+            Color currentColor = null;
+            for (Contour contour : order) {
+                if (!contour.color.equals(currentColor)) {
+                    currentColor = contour.color;
+                    renderer.setColor(currentColor);
+                }
+                Path2D shape = contour.reversed ? getReversedShape(contour) : contour.shape;
+                if (contour.key == null) {
+                    renderer.draw(shape);
+                } else {
+                    String key = contour.reversed ? contour.key + REVERSED_KEY_SUFFIX : contour.key;
+                    renderer.draw(key, shape, contour.x, contour.y);
+                }
+            }
+        } finally {
+            renderer.close();
+        }
+    }
+
+    private List<Contour> optimize() {
+        int count = contours.size();
+        if (count == 0) {
+            return contours;
+        }
+        findContainers();
+
+        Rectangle2D extent = contours.get(0).bounds.getBounds2D();
+        for (Contour contour : contours) {
+            extent.add(contour.bounds);
+        }
+        extent.add(0.0, 0.0);
+        EndPointIndex index = new EndPointIndex(extent, count);
+        for (Contour contour : contours) {
+            if (contour.pending == 0) {
+                index.add(contour);
+            }
+        }
+
+        List<Contour> result = new ArrayList<>(count);
+        double x = 0.0;
+        double y = 0.0;
+        while (result.size() < count) {
+            Contour next = index.removeNearest(x, y);
+            result.add(next);
+            x = next.getEndX();
+            y = next.getEndY();
+            for (Contour container : next.containers) {
+                container.pending -= 1;
+                if (container.pending == 0) {
+                    index.add(container);
+                }
+            }
+        }
+
+        improve(result);
+        return result;
+    }
+
+    /**
+     * Determines for each contour the closed contours which enclose it.
+     */
+    private void findContainers() {
+        List<Contour> closed = new ArrayList<>();
+        for (Contour contour : contours) {
+            if (contour.closed) {
+                closed.add(contour);
+            }
+        }
+        if (closed.isEmpty()) {
+            return;
+        }
+
+        Rectangle2D extent = closed.get(0).bounds.getBounds2D();
+        for (Contour contour : closed) {
+            extent.add(contour.bounds);
+        }
+        Grid<Contour> grid = new Grid<>(extent, closed.size());
+        for (Contour contour : closed) {
+            grid.add(contour, contour.bounds);
+        }
+        for (Contour contour : contours) {
+            for (Contour candidate : grid.get(contour.startX, contour.startY)) {
+                if (candidate != contour && candidate.bounds.contains(contour.bounds) &&
+                        !contour.bounds.equals(candidate.bounds) &&
+                        candidate.shape.contains(contour.startX - candidate.x, contour.startY - candidate.y)) {
+                    contour.containers.add(candidate);
+                    candidate.pending += 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Improves the order by reversing subsequences. A subsequence is only reversed if it does not contain both a
+     * contour and one of its containers.
+     */
+    private static void improve(List<Contour> order) {
+        int count = order.size();
+        for (int pass = 0; pass < TWO_OPT_MAX_PASSES; pass += 1) {
+            boolean improved = false;
+            for (int i = 0; i < count - 1; i += 1) {
+                Contour previous = i == 0 ? null : order.get(i - 1);
+                double previousX = previous == null ? 0.0 : previous.getEndX();
+                double previousY = previous == null ? 0.0 : previous.getEndY();
+                for (int j = i + 1; j < min(count, i + TWO_OPT_WINDOW); j += 1) {
+                    Contour first = order.get(i);
+                    Contour last = order.get(j);
+                    Contour next = j + 1 < count ? order.get(j + 1) : null;
+                    double delta = hypot(last.getEndX() - previousX, last.getEndY() - previousY) -
+                            hypot(first.getStartX() - previousX, first.getStartY() - previousY);
+                    if (next != null) {
+                        delta += hypot(next.getStartX() - first.getStartX(), next.getStartY() - first.getStartY()) -
+                                hypot(next.getStartX() - last.getEndX(), next.getStartY() - last.getEndY());
+                    }
+                    if (delta < -1e-9 && canReverse(order, i, j)) {
+                        Collections.reverse(order.subList(i, j + 1));
+                        for (int k = i; k <= j; k += 1) {
+                            Contour contour = order.get(k);
+                            contour.reversed = !contour.closed && !contour.reversed;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+            if (!improved) {
+                break;
+            }
+        }
+    }
+
+    private static boolean canReverse(List<Contour> order, int from, int to) {
+        for (int i = from; i <= to; i += 1) {
+            for (Contour container : order.get(i).containers) {
+                int position = order.subList(i + 1, to + 1).indexOf(container);
+                if (position >= 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static double computeTravel(List<Contour> order) {
+        double result = 0.0;
+        double x = 0.0;
+        double y = 0.0;
+        for (Contour contour : order) {
+            result += hypot(contour.getStartX() - x, contour.getStartY() - y);
+            x = contour.getEndX();
+            y = contour.getEndY();
+        }
+        return result;
+    }
+
+    private Path2D getReversedShape(Contour contour) {
+        if (contour.key == null) {
+            return reverse(contour.shape);
+        }
+        return reversedShapes.computeIfAbsent(contour.key, k -> reverse(contour.shape));
+    }
+
+    /**
+     * Splits a shape into its subpaths.
+     */
+    static List<Path2D> split(Shape shape) {
+        List<Path2D> result = new ArrayList<>();
+        Path2D current = null;
+        double[] coords = new double[6];
+        for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            if (type == PathIterator.SEG_MOVETO || current == null) {
+                current = new Path2D.Double(iterator.getWindingRule());
+                result.add(current);
+                if (type != PathIterator.SEG_MOVETO) {
+                    current.moveTo(0.0, 0.0);
+                }
+            }
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    current.moveTo(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    current.lineTo(coords[0], coords[1]);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    current.quadTo(coords[0], coords[1], coords[2], coords[3]);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    current.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    current.closePath();
+                    break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reverses the direction of an open contour.
+     */
+    static Path2D reverse(Path2D contour) {
+        List<double[]> segments = new ArrayList<>();
+        double[] coords = new double[6];
+        for (PathIterator iterator = contour.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            int type = iterator.currentSegment(coords);
+            int length = type == PathIterator.SEG_QUADTO ? 4 : type == PathIterator.SEG_CUBICTO ? 6 : 2;
+            if (type != PathIterator.SEG_CLOSE) {
+                double[] segment = new double[length];
+                System.arraycopy(coords, 0, segment, 0, length);
+                segments.add(segment);
+            }
+        }
+
+        Path2D result = new Path2D.Double(contour.getWindingRule());
+        double[] last = segments.get(segments.size() - 1);
+        result.moveTo(last[last.length - 2], last[last.length - 1]);
+        for (int i = segments.size() - 1; i > 0; i -= 1) {
+            double[] segment = segments.get(i);
+            double[] previous = segments.get(i - 1);
+            double x = previous[previous.length - 2];
+            double y = previous[previous.length - 1];
+            if (segment.length == 4) {
+                result.quadTo(segment[0], segment[1], x, y);
+            } else if (segment.length == 6) {
+                result.curveTo(segment[2], segment[3], segment[0], segment[1], x, y);
+            } else {
+                result.lineTo(x, y);
+            }
+        }
+        return result;
+    }
+
+    private static final class Fill {
+        private final String key;
+        private final Shape shape;
+        private final double x;
+        private final double y;
+        private final Color color;
+
+        private Fill(String key, Shape shape, double x, double y, Color color) {
+            this.key = key;
+            this.shape = shape;
+            this.x = x;
+            this.y = y;
+            this.color = color;
+        }
+    }
+
+    private static final class Contour {
+        private final String key;
+        private final Path2D shape;
+        private final double x;
+        private final double y;
+        private final Color color;
+        private final boolean closed;
+        private final double startX;
+        private final double startY;
+        private final double endX;
+        private final double endY;
+        private final Rectangle2D bounds;
+        private final List<Contour> containers = new ArrayList<>(0);
+        private int pending;
+        private boolean reversed;
+
+        private Contour(String key, Path2D shape, double x, double y, Color color) {
+            this.key = key;
+            this.shape = shape;
+            this.x = x;
+            this.y = y;
+            this.color = color;
+
+            double[] coords = new double[6];
+            double firstX = 0.0;
+            double firstY = 0.0;
+            double lastX = 0.0;
+            double lastY = 0.0;
+            boolean isClosed = false;
+            for (PathIterator iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+                int type = iterator.currentSegment(coords);
+                if (type == PathIterator.SEG_MOVETO) {
+                    firstX = coords[0];
+                    firstY = coords[1];
+                    lastX = firstX;
+                    lastY = firstY;
+                } else if (type == PathIterator.SEG_CLOSE) {
+                    isClosed = true;
+                    lastX = firstX;
+                    lastY = firstY;
+                } else {
+                    int length = type == PathIterator.SEG_QUADTO ? 4 : type == PathIterator.SEG_CUBICTO ? 6 : 2;
+                    lastX = coords[length - 2];
+                    lastY = coords[length - 1];
+                }
+            }
+            this.closed = isClosed;
+            this.startX = firstX + x;
+            this.startY = firstY + y;
+            this.endX = lastX + x;
+            this.endY = lastY + y;
+            Rectangle2D shapeBounds = shape.getBounds2D();
+            this.bounds = new Rectangle2D.Double(shapeBounds.getX() + x, shapeBounds.getY() + y,
+                    shapeBounds.getWidth(), shapeBounds.getHeight());
+        }
+
+        private double getStartX() {
+            return reversed ? endX : startX;
+        }
+
+        private double getStartY() {
+            return reversed ? endY : startY;
+        }
+
+        private double getEndX() {
+            return reversed ? startX : endX;
+        }
+
+        private double getEndY() {
+            return reversed ? startY : endY;
+        }
+    }
+
+    /**
+     * Finds the nearest available contour end point. Open contours are indexed by both of their end points, entering
+     * an open contour at its end reverses it.
+     */
+    private static final class EndPointIndex {
+        private final Grid<Contour> grid;
+        private int size;
+
+        private EndPointIndex(Rectangle2D extent, int count) {
+            grid = new Grid<>(extent, count);
+        }
+
+        private void add(Contour contour) {
+            grid.add(contour, contour.startX, contour.startY);
+            if (!contour.closed) {
+                grid.add(contour, contour.endX, contour.endY);
+            }
+            size += 1;
+        }
+
+        private Contour removeNearest(double x, double y) {
+            if (size == 0) {
+                throw new IllegalStateException("no contour available");
+            }
+            int column = grid.getColumn(x);
+            int row = grid.getRow(y);
+            Contour best = null;
+            boolean bestReversed = false;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int radius = 0; radius <= max(grid.getColumns(), grid.getRows()); radius += 1) {
+                if (best != null && (radius - 1) * min(grid.getCellWidth(), grid.getCellHeight()) > bestDistance) {
+                    break;
+                }
+                for (int i = row - radius; i <= row + radius; i += 1) {
+                    // only the cells on the border of the square at the current radius
+                    int step = i == row - radius || i == row + radius ? 1 : max(1, 2 * radius);
+                    for (int j = column - radius; j <= column + radius; j += step) {
+                        if (i < 0 || j < 0 || i >= grid.getRows() || j >= grid.getColumns()) {
+                            continue;
+                        }
+                        List<Contour> cell = grid.getCell(i, j);
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (int k = cell.size() - 1; k >= 0; k -= 1) {
+                            Contour contour = cell.get(k);
+                            if (contour.pending < 0) {
+                                // removed contours are marked and dropped lazily
+                                cell.remove(k);
+                                continue;
+                            }
+                            double distance = hypot(contour.startX - x, contour.startY - y);
+                            if (distance < bestDistance) {
+                                best = contour;
+                                bestReversed = false;
+                                bestDistance = distance;
+                            }
+                            if (!contour.closed) {
+                                distance = hypot(contour.endX - x, contour.endY - y);
+                                if (distance < bestDistance) {
+                                    best = contour;
+                                    bestReversed = true;
+                                    bestDistance = distance;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            best.reversed = bestReversed;
+            best.pending = -1;
+            size -= 1;
+            return best;
+        }
+    }
+}
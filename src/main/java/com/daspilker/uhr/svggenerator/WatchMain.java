@@ -0,0 +1,170 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Regenerates the design files whenever a configuration file changes, in the same JVM, so that fonts, glyphs and the
+ * panels which did not change stay in memory. The configuration is a properties file of {@link Parameters generator
+ * parameters} which override the defaults from {@link Main}, e.g.
+ *
+ * <pre>
+ * fontSize=14
+ * borderX=30
+ * fill=true
+ * </pre>
+ * <p>
+ * Panels whose inputs did not change are served from the output cache, and only files whose content changed are
+ * written, so that viewers which reload changed files only reload what is new. The time from noticing the change to
+ * the last file written is printed for each iteration. An invalid configuration is reported and the previous files
+ * are kept.
+ */
+public class WatchMain {
+    // editors often write a file in several steps, which are collected into one iteration
+    private static final long SETTLE_MILLIS = 20;
+
+    private final Path config;
+    private final ChangedFilesSink sink;
+
+    private WatchMain(Path config, Path output) {
+        this.config = config;
+        this.sink = new ChangedFilesSink(new DirectorySink(output));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: WatchMain <config.properties> [output directory]");
+            System.exit(2);
+        }
+        Path config = Paths.get(args[0]).toAbsolutePath();
+        Path output = Paths.get(args.length > 1 ? args[1] : "");
+        new WatchMain(config, output).watch();
+    }
+
+    private void watch() throws IOException, InterruptedException {
+        regenerate(System.nanoTime());
+        try (WatchService watchService = config.getFileSystem().newWatchService()) {
+            config.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            System.out.println(format("watching %s", config));
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (ClosedWatchServiceException e) {
+                    return;
+                }
+                long start = System.nanoTime();
+                boolean changed = false;
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= config.getFileName().equals(event.context());
+                    }
+                    key.reset();
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    regenerate(start);
+                }
+            }
+        }
+    }
+
+    private void regenerate(long start) {
+        Generator generator = new Generator();
+        Main.configure(generator);
+        generator.setStreaming(true);
+        generator.setExecutor(ForkJoinPool.commonPool());
+        generator.setOutputCache(OutputCache.getSharedInstance());
+        generator.setOutputSink(sink);
+        sink.written.set(0);
+        try {
+            Properties properties = new Properties();
+            if (Files.exists(config)) {
+                try (Reader reader = Files.newBufferedReader(config, UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+            for (String name : properties.stringPropertyNames()) {
+                Parameters.apply(generator, name, properties.getProperty(name).trim());
+            }
+            generator.generate();
+            System.out.println(format(ENGLISH, "%d files written in %.1f ms", sink.written.get(),
+                    (System.nanoTime() - start) / 1e6));
+        } catch (IOException | RuntimeException e) {
+            System.out.println(format(ENGLISH, "generation failed after %.1f ms: %s", (System.nanoTime() - start) / 1e6,
+                    e));
+        }
+    }
+
+    /**
+     * Writes a file to the underlying sink only if its content differs from what has been written before.
+     */
+    private static class ChangedFilesSink implements OutputSink {
+        private final OutputSink sink;
+        private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+        private final AtomicInteger written = new AtomicInteger();
+
+        private ChangedFilesSink(OutputSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public OutputStream open(String fileName) {
+            return new ByteArrayOutputStream() {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (!closed) {
+                        closed = true;
+                        byte[] content = toByteArray();
+                        if (!Arrays.equals(content, contents.get(fileName))) {
+                            try (OutputStream out = sink.open(fileName)) {
+                                out.write(content);
+                            }
+                            contents.put(fileName, content);
+                            written.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
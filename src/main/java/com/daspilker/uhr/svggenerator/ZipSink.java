@@ -0,0 +1,74 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes design files as entries of a ZIP archive. Each file is buffered in memory until it is closed, so that panels
+ * can be generated in parallel while the entries are written one after the other. The archive is streamed, so it can
+ * be written to a socket as it is produced, and it is finished when the sink is closed. Entry names are encoded in
+ * UTF-8.
+ */
+public class ZipSink implements OutputSink, Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream zipOutputStream;
+
+    public ZipSink(OutputStream out) {
+        zipOutputStream = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), UTF_8);
+    }
+
+    public ZipSink(WritableByteChannel channel) {
+        this(Channels.newOutputStream(channel));
+    }
+
+    @Override
+    public OutputStream open(String fileName) {
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    writeEntry(fileName, this);
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        zipOutputStream.close();
+    }
+
+    private synchronized void writeEntry(String fileName, ByteArrayOutputStream content) throws IOException {
+        zipOutputStream.putNextEntry(new ZipEntry(fileName));
+        content.writeTo(zipOutputStream);
+        zipOutputStream.closeEntry();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import org.junit.Test;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.PathIterator;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares outlines with the ones from AWT. The test fonts are small hand-made fonts: {@code glyf.ttf} has a simple
+ * glyph with off-curve start points and repeated flags and a composite glyph with offset and scale, {@code cff.otf}
+ * uses subroutines, hints and all curve and flex operators. AWT rounds coordinates to 1/64 pixel.
+ */
+public class FontFileTest {
+    private static final float FONT_SIZE = 16;
+    private static final double TOLERANCE = 1.0 / 64;
+    private static final String CHARACTERS = "ABZ";
+
+    @Test
+    public void glyfOutlinesMatchAwt() throws Exception {
+        assertOutlinesMatchAwt("glyf.ttf");
+    }
+
+    @Test
+    public void cffOutlinesMatchAwt() throws Exception {
+        assertOutlinesMatchAwt("cff.otf");
+    }
+
+    @Test
+    public void missingCharacterHasEmptyOutline() throws Exception {
+        FontFile fontFile = FontFile.open(getFont("glyf.ttf"));
+        assertTrue(fontFile.getOutline('Z', FONT_SIZE).getPathIterator(null).isDone());
+        assertFalse(fontFile.getOutline('A', FONT_SIZE).getPathIterator(null).isDone());
+    }
+
+    private void assertOutlinesMatchAwt(String fileName) throws Exception {
+        Path path = getFont(fileName);
+        Font font = Font.createFont(Font.TRUETYPE_FONT, path.toFile()).deriveFont(FONT_SIZE);
+        FontRenderContext context = new FontRenderContext(null, true, true);
+        FontFile fontFile = FontFile.open(path);
+        for (char c : CHARACTERS.toCharArray()) {
+            Shape expected = font.createGlyphVector(context, new char[]{c}).getGlyphOutline(0);
+            assertSegmentsEqual(fileName + " '" + c + "'", expected, fontFile.getOutline(c, FONT_SIZE));
+        }
+    }
+
+    private static void assertSegmentsEqual(String message, Shape expected, Shape actual) {
+        PathIterator expectedIterator = expected.getPathIterator(null);
+        PathIterator actualIterator = actual.getPathIterator(null);
+        double[] expectedCoordinates = new double[6];
+        double[] actualCoordinates = new double[6];
+        for (int i = 0; !expectedIterator.isDone(); i += 1) {
+            assertFalse(message + ", segment " + i + " missing", actualIterator.isDone());
+            int type = expectedIterator.currentSegment(expectedCoordinates);
+            assertEquals(message + ", segment " + i, type, actualIterator.currentSegment(actualCoordinates));
+            assertArrayEquals(message + ", segment " + i, expectedCoordinates, actualCoordinates, TOLERANCE);
+            expectedIterator.next();
+            actualIterator.next();
+        }
+        assertTrue(message + ", too many segments", actualIterator.isDone());
+    }
+
+    private Path getFont(String fileName) throws Exception {
+        return Paths.get(getClass().getResource(fileName).toURI());
+    }
+}
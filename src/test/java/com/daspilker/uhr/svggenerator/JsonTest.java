@@ -0,0 +1,85 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static com.daspilker.uhr.svggenerator.Json.parseObject;
+import static com.daspilker.uhr.svggenerator.Json.quote;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+
+public class JsonTest {
+    @Test
+    public void parsesValuesAsStrings() {
+        Map<String, String> result = parseObject(" { \"fontSize\" : 13.5, \"mirror\":true, \"name\":\"a\" } ");
+        assertEquals("13.5", result.get("fontSize"));
+        assertEquals("true", result.get("mirror"));
+        assertEquals("a", result.get("name"));
+        assertEquals(3, result.size());
+    }
+
+    @Test
+    public void parsesEscapes() {
+        assertEquals("a\"b\\c/d\b\f\n\r\te\u00e4",
+                parseObject("{\"x\":\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\te\\u00E4\"}").get("x"));
+    }
+
+    @Test
+    public void quotesEscapesAndControlCharacters() {
+        assertEquals("\"a\\\"b\\\\c\\u000ad\\u0001\"", quote("a\"b\\c\nd\u0001"));
+    }
+
+    @Test
+    public void quotedStringsParseBack() {
+        String value = "\"quoted\" \\ line\nbreak \u0000 \u00fc";
+        assertEquals(singletonMap("x", value), parseObject("{" + quote("x") + ":" + quote(value) + "}"));
+    }
+
+    @Test
+    public void joinsArraysWithRowSeparator() {
+        Map<String, String> result = parseObject("{\"text\":[\"AB\",\"CD\"],\"empty\":[]}");
+        assertEquals("AB" + Parameters.TEXT_ROW_SEPARATOR + "CD", result.get("text"));
+        assertEquals("", result.get("empty"));
+    }
+
+    @Test
+    public void skipsNullValues() {
+        assertEquals(singletonMap("b", "1"), parseObject("{\"a\":null,\"b\":1}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnterminatedString() {
+        parseObject("{\"a\":\"b}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidUnicodeEscape() {
+        parseObject("{\"a\":\"\\u12G4\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNestedArrays() {
+        parseObject("{\"a\":[[1]]}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTrailingInput() {
+        parseObject("{} x");
+    }
+}
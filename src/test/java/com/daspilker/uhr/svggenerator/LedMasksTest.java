@@ -0,0 +1,78 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LedMasksTest {
+    private static final Language LANGUAGE = new Language(asList("EINS", "ZWEI"), asList("ES {0}"));
+
+    @Test
+    public void setsBitsFromTheRightmostColumn() {
+        LedMasks masks = new LedMasks(LANGUAGE, createSpec("ESQQQ", "EINSQ", "QZWEI"));
+        assertEquals(2, masks.getSteps());
+        assertEquals(60, masks.getMinutesPerStep());
+        assertEquals(0b11000, masks.getMask(0, 0));
+        assertEquals(0b11110, masks.getMask(0, 1));
+        assertEquals(0, masks.getMask(0, 2));
+        assertEquals(0b11000, masks.getMask(1, 0));
+        assertEquals(0, masks.getMask(1, 1));
+        assertEquals(0b01111, masks.getMask(1, 2));
+    }
+
+    @Test
+    public void writesTable() throws IOException {
+        LedMasks masks = new LedMasks(LANGUAGE, createSpec("ESQQQ", "EINSQ", "QZWEI"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        masks.writeTable(out);
+        assertArrayEquals(new byte[]{
+                'U', 'H', 'R', 'M', 1, 3, 5, 1, 60, 0, 2, 0,
+                0x18, 0x1E, 0x00,
+                0x18, 0x00, 0x0F
+        }, out.toByteArray());
+    }
+
+    @Test
+    public void writesWideMasksLittleEndian() throws IOException {
+        LedMasks masks = new LedMasks(LANGUAGE, createSpec("ESQQQQQQQQ", "QQQQQQEINS", "QQQQQQZWEI"));
+        assertEquals(0b1100000000, masks.getMask(0, 0));
+        assertEquals(0b0000001111, masks.getMask(0, 1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        masks.writeTable(out);
+        assertArrayEquals(new byte[]{
+                'U', 'H', 'R', 'M', 1, 3, 10, 2, 60, 0, 2, 0,
+                0x00, 0x03, 0x0F, 0x00, 0x00, 0x00,
+                0x00, 0x03, 0x00, 0x00, 0x0F, 0x00
+        }, out.toByteArray());
+    }
+
+    private static ClockSpec createSpec(String... text) {
+        return ClockSpec.builder()
+                .setFontName("Dialog")
+                .setFontSize(10)
+                .setWidth(100)
+                .setHeight(100)
+                .setText(text)
+                .build();
+    }
+}
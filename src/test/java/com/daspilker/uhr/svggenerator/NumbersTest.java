@@ -0,0 +1,79 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import org.junit.Test;
+
+import static com.daspilker.uhr.svggenerator.Numbers.appendUnits;
+import static com.daspilker.uhr.svggenerator.Numbers.format;
+import static com.daspilker.uhr.svggenerator.Numbers.toUnits;
+import static org.junit.Assert.assertEquals;
+
+public class NumbersTest {
+    @Test
+    public void omitsTrailingZeros() {
+        assertEquals("1.5", format(1.5, 3));
+        assertEquals("2", format(2, 3));
+        assertEquals("0.05", format(0.05, 3));
+        assertEquals("0.001", format(0.001, 3));
+        assertEquals("12.34", format(12.34, 2));
+    }
+
+    @Test
+    public void roundsNearZeroToUnsignedZero() {
+        assertEquals("0", format(-0.0004, 3));
+        assertEquals("0", format(0.0004, 3));
+        assertEquals("0", format(-0.0, 3));
+        assertEquals("-0.001", format(-0.0006, 3));
+    }
+
+    @Test
+    public void carriesRoundingIntoInteger() {
+        assertEquals("1", format(0.99996, 3));
+        assertEquals("10", format(9.9996, 3));
+        assertEquals("-2", format(-1.99999, 3));
+        assertEquals("0.1", format(0.0996, 2));
+    }
+
+    @Test
+    public void roundsHalfUp() {
+        assertEquals(1235, toUnits(1.2345, 3));
+        assertEquals("1.235", format(1.2345, 3));
+        assertEquals("3", format(2.5, 0));
+    }
+
+    @Test
+    public void omitsLeadingZero() {
+        assertEquals(".5", appendUnits(500, 3, false));
+        assertEquals("-.05", appendUnits(-50, 3, false));
+        assertEquals("1.5", appendUnits(1500, 3, false));
+        assertEquals("0", appendUnits(0, 3, false));
+        assertEquals("0.5", appendUnits(500, 3, true));
+    }
+
+    @Test
+    public void appendsOutOfRangeValuesLikeStringBuilder() {
+        assertEquals("NaN", format(Double.NaN, 3));
+        assertEquals("Infinity", format(Double.POSITIVE_INFINITY, 3));
+        assertEquals("1.0E20", format(1e20, 3));
+    }
+
+    private static String appendUnits(long units, int digits, boolean leadingZero) {
+        StringBuilder buffer = new StringBuilder();
+        Numbers.appendUnits(buffer, units, digits, leadingZero);
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+   Copyright 2012 Daniel A. Spilker
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.daspilker.uhr.svggenerator;
+
+import org.junit.Test;
+
+import static com.daspilker.uhr.svggenerator.SvgRenderer.formatNumber;
+import static org.junit.Assert.assertEquals;
+
+public class SvgRendererTest {
+    @Test
+    public void formatsNumbersInPlainNotation() {
+        assertEquals("3", formatNumber(3));
+        assertEquals("-1.5", formatNumber(-1.5));
+        assertEquals("0.0000001", formatNumber(1e-7));
+        assertEquals("1500000000000000000000", formatNumber(1.5e21));
+    }
+
+    @Test
+    public void formatsRoundingErrorsAsZero() {
+        assertEquals("0", formatNumber(1e-10));
+        assertEquals("0", formatNumber(Math.sin(Math.PI)));
+    }
+
+    @Test
+    public void prefersShortFloatRepresentation() {
+        assertEquals("0.1", formatNumber(0.1f));
+    }
+}